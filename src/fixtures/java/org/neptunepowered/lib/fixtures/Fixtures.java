@@ -0,0 +1,155 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.fixtures;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Defaults;
+import com.google.common.net.InetAddresses;
+import net.canarymod.api.PlayerReference;
+import net.canarymod.bansystem.Ban;
+import net.canarymod.bansystem.BanType;
+import org.neptunepowered.lib.service.ban.MemoryBanStore;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.util.UUID;
+
+/**
+ * Generates the bans and players the benchmarks and the load test work with.
+ */
+public final class Fixtures {
+
+    /**
+     * Far enough in the future that no ban expires during a run.
+     */
+    public static final long EXPIRATION = System.currentTimeMillis() + 365L * 24 * 60 * 60 * 1000;
+
+    private Fixtures() {
+    }
+
+    /**
+     * Fills a store with the given number of bans, three quarters of them on
+     * players and the rest on addresses.
+     *
+     * @param store The store
+     * @param size The number of bans
+     */
+    public static void populate(MemoryBanStore store, int size) {
+        int addresses = size / 4;
+        for (int i = 0; i < size - addresses; i++) {
+            store.issueBan(canaryPlayerBan(playerName(i)));
+        }
+        for (int i = 0; i < addresses; i++) {
+            store.issueBan(canaryIpBan(address(i)));
+        }
+    }
+
+    public static String playerName(int i) {
+        return "player" + i;
+    }
+
+    public static InetAddress address(int i) {
+        return InetAddresses.fromInteger(0x0a000000 + i);
+    }
+
+    /**
+     * Gets the name of a client, which none of the bans made by
+     * {@link #populate} are on.
+     *
+     * @param i The number of the client
+     * @return The name
+     */
+    public static String clientName(int i) {
+        return "client" + i;
+    }
+
+    /**
+     * Gets the address of a client, which none of the bans made by
+     * {@link #populate} cover.
+     *
+     * @param i The number of the client
+     * @return The address
+     */
+    public static InetAddress clientAddress(int i) {
+        return InetAddresses.fromInteger(0xac100000 + i);
+    }
+
+    public static Ban canaryPlayerBan(String name) {
+        Ban ban = new Ban();
+        ban.setSubject(name);
+        ban.setUUID(offlineUniqueId(name).toString());
+        ban.setBanType(BanType.UUID);
+        ban.setReason("Fixture");
+        ban.setIssuedDate(System.currentTimeMillis());
+        ban.setExpiration(EXPIRATION);
+        return ban;
+    }
+
+    public static Ban canaryIpBan(InetAddress address) {
+        Ban ban = new Ban();
+        ban.setIp(InetAddresses.toAddrString(address));
+        ban.setBanType(BanType.IP);
+        ban.setReason("Fixture");
+        ban.setIssuedDate(System.currentTimeMillis());
+        ban.setExpiration(EXPIRATION);
+        return ban;
+    }
+
+    public static UUID offlineUniqueId(String name) {
+        return UUID.nameUUIDFromBytes(("OfflinePlayer:" + name).getBytes(Charsets.UTF_8));
+    }
+
+    /**
+     * Creates an offline player, without a server to look them up on.
+     *
+     * @param name The name of the player
+     * @return The player
+     */
+    public static PlayerReference player(final String name) {
+        final UUID uuid = offlineUniqueId(name);
+        return (PlayerReference) Proxy.newProxyInstance(PlayerReference.class.getClassLoader(),
+                new Class<?>[] {PlayerReference.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String methodName = method.getName();
+                        if (methodName.equals("getName")) {
+                            return name;
+                        } else if (methodName.equals("getUUID")) {
+                            return uuid;
+                        } else if (methodName.equals("getUUIDString")) {
+                            return uuid.toString();
+                        } else if (methodName.equals("hashCode")) {
+                            return name.hashCode();
+                        } else if (methodName.equals("equals")) {
+                            return proxy == args[0];
+                        } else if (methodName.equals("toString")) {
+                            return name;
+                        }
+                        return Defaults.defaultValue(method.getReturnType());
+                    }
+                });
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.benchmark;
+
+import net.canarymod.api.PlayerReference;
+import org.neptunepowered.lib.ban.Ban;
+import org.neptunepowered.lib.ban.BanType;
+import org.neptunepowered.lib.factory.BanFactory;
+import org.neptunepowered.lib.fixtures.Fixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.InetAddress;
+import java.util.Date;
+
+/**
+ * Measures building bans and mapping ban types, which happen for every ban
+ * issued. Run with {@code -prof gc} to see the allocation rate.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BanBuilderBenchmark {
+
+    private BanFactory factory;
+    private PlayerReference player;
+    private InetAddress address;
+    private Date startDate;
+    private Date expirationDate;
+    private net.canarymod.bansystem.BanType canaryType;
+
+    @Setup
+    public void setup() {
+        factory = new BanFactory();
+        player = Fixtures.player("builder");
+        address = Fixtures.address(0);
+        startDate = new Date();
+        expirationDate = new Date(Fixtures.EXPIRATION);
+        canaryType = net.canarymod.bansystem.BanType.IP;
+    }
+
+    @Benchmark
+    public Ban buildPlayerBan() {
+        return factory.builder().type(BanType.PLAYER).user(player).reason("Builder")
+                .startDate(startDate).expirationDate(expirationDate).build();
+    }
+
+    @Benchmark
+    public Ban buildIpBan() {
+        return factory.builder().type(BanType.IP).address(address).reason("Builder")
+                .startDate(startDate).expirationDate(expirationDate).build();
+    }
+
+    @Benchmark
+    public BanType fromCanaryType() {
+        return BanType.fromCanaryType(canaryType);
+    }
+}
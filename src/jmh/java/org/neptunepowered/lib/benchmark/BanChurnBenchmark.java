@@ -0,0 +1,97 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.benchmark;
+
+import org.neptunepowered.lib.ban.Ban;
+import org.neptunepowered.lib.ban.BanType;
+import org.neptunepowered.lib.factory.BanFactory;
+import org.neptunepowered.lib.fixtures.Fixtures;
+import org.neptunepowered.lib.service.BanService;
+import org.neptunepowered.lib.service.ban.BanResult;
+import org.neptunepowered.lib.service.ban.MemoryBanStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Measures banning and pardoning players on top of an existing set of bans,
+ * one at a time and in bulk.
+ */
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BanChurnBenchmark {
+
+    private static final int BULK = 100;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private BanService banService;
+    private Ban ban;
+    private List<Ban> bans;
+
+    @Setup
+    public void setup() {
+        MemoryBanStore store = new MemoryBanStore();
+        Fixtures.populate(store, size);
+        banService = new BanService();
+        banService.setStore(store);
+        banService.reload();
+
+        BanFactory factory = new BanFactory();
+        Date expiration = new Date(Fixtures.EXPIRATION);
+        ban = factory.builder().type(BanType.PLAYER).user(Fixtures.player("churn")).reason("Churn")
+                .startDate(new Date()).expirationDate(expiration).build();
+        bans = new ArrayList<Ban>(BULK);
+        for (int i = 0; i < BULK; i++) {
+            bans.add(factory.builder().type(BanType.PLAYER).user(Fixtures.player("churn" + i)).reason("Churn")
+                    .startDate(new Date()).expirationDate(expiration).build());
+        }
+    }
+
+    @Benchmark
+    public void banAndPardon() {
+        banService.ban(ban);
+        banService.pardon(ban);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK)
+    public List<BanResult> banAllAndPardonAll() {
+        banService.banAll(bans);
+        return banService.pardonAll(bans);
+    }
+}
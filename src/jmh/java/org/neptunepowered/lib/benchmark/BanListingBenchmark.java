@@ -0,0 +1,92 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.benchmark;
+
+import org.neptunepowered.lib.ban.Ban;
+import org.neptunepowered.lib.fixtures.Fixtures;
+import org.neptunepowered.lib.service.BanPage;
+import org.neptunepowered.lib.service.BanService;
+import org.neptunepowered.lib.service.ban.MemoryBanStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures listing every ban, which wraps each of the backend's bans.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BanListingBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private BanService banService;
+
+    @Setup
+    public void setup() {
+        MemoryBanStore store = new MemoryBanStore();
+        Fixtures.populate(store, size);
+        banService = new BanService();
+        banService.setStore(store);
+    }
+
+    @Benchmark
+    public Collection<Ban> getBans() {
+        return banService.getBans();
+    }
+
+    @Benchmark
+    public void iterateQuery(Blackhole blackhole) {
+        for (Ban ban : banService.query()) {
+            blackhole.consume(ban);
+        }
+    }
+
+    @Benchmark
+    public int countQuery() {
+        return banService.query().count();
+    }
+
+    @Benchmark
+    public BanPage firstPage() {
+        return banService.query().limit(100).page();
+    }
+}
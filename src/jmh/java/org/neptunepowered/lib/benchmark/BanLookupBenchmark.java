@@ -0,0 +1,100 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.benchmark;
+
+import net.canarymod.api.PlayerReference;
+import org.neptunepowered.lib.fixtures.Fixtures;
+import org.neptunepowered.lib.service.BanService;
+import org.neptunepowered.lib.service.ban.MemoryBanStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.InetAddress;
+
+/**
+ * Measures ban checks, against bans that exist and bans that do not.
+ */
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BanLookupBenchmark {
+
+    private static final int SAMPLES = 1024;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private BanService banService;
+    private final PlayerReference[] bannedPlayers = new PlayerReference[SAMPLES];
+    private final PlayerReference[] unbannedPlayers = new PlayerReference[SAMPLES];
+    private final InetAddress[] bannedAddresses = new InetAddress[SAMPLES];
+    private final InetAddress[] unbannedAddresses = new InetAddress[SAMPLES];
+    private int next;
+
+    @Setup
+    public void setup() {
+        MemoryBanStore store = new MemoryBanStore();
+        Fixtures.populate(store, size);
+        banService = new BanService();
+        banService.setStore(store);
+        banService.reload();
+
+        int players = size - size / 4;
+        int addresses = size / 4;
+        for (int i = 0; i < SAMPLES; i++) {
+            // Spread over the whole index, rather than the first few entries
+            bannedPlayers[i] = Fixtures.player(Fixtures.playerName((int) ((long) i * players / SAMPLES)));
+            unbannedPlayers[i] = Fixtures.player("unbanned" + i);
+            bannedAddresses[i] = Fixtures.address((int) ((long) i * addresses / SAMPLES));
+            unbannedAddresses[i] = Fixtures.address(addresses + i);
+        }
+    }
+
+    @Benchmark
+    public boolean playerHit() {
+        return banService.isBanned(bannedPlayers[next++ & (SAMPLES - 1)]);
+    }
+
+    @Benchmark
+    public boolean playerMiss() {
+        return banService.isBanned(unbannedPlayers[next++ & (SAMPLES - 1)]);
+    }
+
+    @Benchmark
+    public boolean addressHit() {
+        return banService.isBanned(bannedAddresses[next++ & (SAMPLES - 1)]);
+    }
+
+    @Benchmark
+    public boolean addressMiss() {
+        return banService.isBanned(unbannedAddresses[next++ & (SAMPLES - 1)]);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.loadtest;
+
+import net.canarymod.api.PlayerReference;
+import net.canarymod.bansystem.Ban;
+import net.canarymod.bansystem.BanType;
+import org.neptunepowered.lib.service.ban.BanCursor;
+import org.neptunepowered.lib.service.ban.MemoryBanStore;
+
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A backend that keeps its bans in memory, but takes as long as a database
+ * would to answer. Every call waits for the latency, plus up to the jitter,
+ * before going to the bans.
+ */
+final class LatencyBanStore extends MemoryBanStore {
+
+    private final Random random = new Random();
+    private volatile long latencyNanos = 0;
+    private volatile long jitterNanos = 0;
+
+    /**
+     * Sets how long each call takes.
+     *
+     * @param latencyMicros The time every call takes
+     * @param jitterMicros The most a call takes on top of that
+     */
+    void setLatency(long latencyMicros, long jitterMicros) {
+        this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+        this.jitterNanos = TimeUnit.MICROSECONDS.toNanos(jitterMicros);
+    }
+
+    @Override
+    public Ban[] getAllBans(BanType type) {
+        delay();
+        return super.getAllBans(type);
+    }
+
+    @Override
+    public BanCursor openCursor(BanType type, int position) {
+        delay();
+        return super.openCursor(type, position);
+    }
+
+    @Override
+    public void issueBan(Ban ban) {
+        delay();
+        super.issueBan(ban);
+    }
+
+    @Override
+    public void issueBans(Collection<Ban> bans) {
+        delay();
+        super.issueBans(bans);
+    }
+
+    @Override
+    public void unban(PlayerReference player) {
+        delay();
+        super.unban(player);
+    }
+
+    @Override
+    public void unban(String subject) {
+        delay();
+        super.unban(subject);
+    }
+
+    @Override
+    public void unbanAll(Collection<String> subjects) {
+        delay();
+        super.unbanAll(subjects);
+    }
+
+    private void delay() {
+        long nanos = latencyNanos;
+        long jitter = jitterNanos;
+        if (jitter > 0) {
+            synchronized (random) {
+                nanos += (long) (random.nextDouble() * jitter);
+            }
+        }
+        if (nanos <= 0) {
+            return;
+        }
+        long deadline = System.nanoTime() + nanos;
+        // Parking can return early
+        for (long remaining = nanos; remaining > 0; remaining = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
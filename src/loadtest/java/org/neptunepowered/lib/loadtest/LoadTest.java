@@ -0,0 +1,377 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.loadtest;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.gson.stream.JsonWriter;
+import net.canarymod.api.PlayerReference;
+import org.neptunepowered.lib.ban.Ban;
+import org.neptunepowered.lib.ban.ImmutableBan;
+import org.neptunepowered.lib.fixtures.Fixtures;
+import org.neptunepowered.lib.service.BanService;
+import org.neptunepowered.lib.service.metrics.LatencyHistogram;
+import org.neptunepowered.lib.service.metrics.LatencySnapshot;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives a {@link BanService} the way a server does when thousands of
+ * clients reconnect at once, such as after a proxy restart.
+ *
+ * <p>Every client thread starts at the same moment, and keeps logging in
+ * random clients, each login checking both the player and their address.
+ * Some of the operations are bans and pardons instead, written through to a
+ * {@link LatencyBanStore}. After a warm-up, the latency of each operation
+ * and the memory allocated by the client threads are recorded.</p>
+ *
+ * <p>Runs every default {@link Scenario}, or those named with
+ * {@code --scenario}, with any other options applied to each of them. The
+ * results are printed, and written as JSON to the file given with
+ * {@code --report}.</p>
+ */
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<Scenario> scenarios = new ArrayList<Scenario>(Scenario.defaults());
+        File report = null;
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("Expected --option value, but got " + args[i]);
+            }
+            String option = args[i].substring(2);
+            if (option.equals("scenario")) {
+                List<Scenario> named = new ArrayList<Scenario>();
+                for (String name : Splitter.on(',').trimResults().omitEmptyStrings().split(args[i + 1])) {
+                    named.add(find(scenarios, name));
+                }
+                scenarios = named;
+            } else if (option.equals("report")) {
+                report = new File(args[i + 1]);
+            } else {
+                for (Scenario scenario : scenarios) {
+                    scenario.set(option, args[i + 1]);
+                }
+            }
+        }
+
+        List<Result> results = new ArrayList<Result>();
+        for (Scenario scenario : scenarios) {
+            System.out.println("Running " + scenario);
+            Result result = run(scenario);
+            System.out.println(result);
+            results.add(result);
+        }
+        if (report != null) {
+            write(report, results);
+            System.out.println("Results written to " + report);
+        }
+    }
+
+    private static Scenario find(List<Scenario> scenarios, String name) {
+        for (Scenario scenario : scenarios) {
+            if (scenario.name.equals(name)) {
+                return scenario;
+            }
+        }
+        Scenario scenario = new Scenario(name);
+        System.out.println("Unknown scenario " + name + ", running it with the default settings");
+        return scenario;
+    }
+
+    private static Result run(final Scenario scenario) throws InterruptedException {
+        LatencyBanStore store = new LatencyBanStore();
+        Fixtures.populate(store, scenario.bans);
+        final PlayerReference[] players = new PlayerReference[scenario.clients];
+        final InetAddress[] addresses = new InetAddress[scenario.clients];
+        final Ban[] bans = new Ban[scenario.clients];
+        int banned = (int) (scenario.clients * scenario.bannedFraction);
+        for (int i = 0; i < scenario.clients; i++) {
+            String name = Fixtures.clientName(i);
+            players[i] = Fixtures.player(name);
+            addresses[i] = Fixtures.clientAddress(i);
+            bans[i] = ImmutableBan.player(name, Fixtures.offlineUniqueId(name), "Load test", "LoadTest",
+                    System.currentTimeMillis(), Fixtures.EXPIRATION);
+            if (i < banned) {
+                store.issueBan(Fixtures.canaryPlayerBan(name));
+            }
+        }
+        final BanService banService = new BanService();
+        banService.setStore(store);
+        banService.reload();
+        store.setLatency(scenario.latencyMicros, scenario.jitterMicros);
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final Worker[] workers = new Worker[scenario.threads];
+        Thread[] threads = new Thread[scenario.threads];
+        for (int t = 0; t < workers.length; t++) {
+            final Worker worker = new Worker(t);
+            workers[t] = worker;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    worker.run(scenario, banService, players, addresses, bans);
+                }
+            }, "Load Test Client #" + t);
+            threads[t].start();
+        }
+
+        long gcCount = gcCount();
+        long gcMillis = gcMillis();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Result result = new Result(scenario);
+        for (Worker worker : workers) {
+            result.logins = result.logins.merge(worker.logins.snapshot());
+            result.writes = result.writes.merge(worker.writes.snapshot());
+            result.allocatedBytes += worker.allocatedBytes;
+            result.errors += worker.errors;
+        }
+        // Collections during the warm-up are counted too, as the clients cause them as well
+        result.gcCount = gcCount() - gcCount;
+        result.gcMillis = gcMillis() - gcMillis;
+        return result;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, bean.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, bean.getCollectionTime());
+        }
+        return millis;
+    }
+
+    /**
+     * Gets the bytes allocated by the current thread so far, or -1 if the JVM
+     * does not count them.
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static void write(File file, List<Result> results) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create directory " + directory);
+        }
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(new FileOutputStream(file), Charsets.UTF_8));
+        try {
+            writer.setIndent("  ");
+            writer.beginArray();
+            for (Result result : results) {
+                result.write(writer);
+            }
+            writer.endArray();
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * A client thread, with what it recorded.
+     */
+    private static final class Worker {
+
+        private final Random random;
+        // One each, so the client threads do not contend on the counters
+        private final LatencyHistogram logins = new LatencyHistogram();
+        private final LatencyHistogram writes = new LatencyHistogram();
+        private long allocatedBytes = 0;
+        private long errors = 0;
+        // Keeps the checks from being optimised away
+        private int refused = 0;
+
+        private Worker(int id) {
+            this.random = new Random(id);
+        }
+
+        private void run(Scenario scenario, BanService banService, PlayerReference[] players, InetAddress[] addresses,
+                Ban[] bans) {
+            long now = System.nanoTime();
+            long recordFrom = now + TimeUnit.SECONDS.toNanos(scenario.warmupSeconds);
+            long end = recordFrom + TimeUnit.SECONDS.toNanos(scenario.durationSeconds);
+            boolean recording = false;
+            long allocatedFrom = 0;
+            while (now < end) {
+                if (!recording && now >= recordFrom) {
+                    recording = true;
+                    logins.reset();
+                    writes.reset();
+                    errors = 0;
+                    allocatedFrom = allocatedBytes();
+                }
+                int client = random.nextInt(players.length);
+                if (scenario.writeFraction > 0 && random.nextDouble() < scenario.writeFraction) {
+                    try {
+                        if (random.nextBoolean()) {
+                            banService.ban(bans[client]);
+                        } else {
+                            banService.pardon(players[client]);
+                        }
+                    } catch (RuntimeException e) {
+                        errors++;
+                    }
+                    long finished = System.nanoTime();
+                    writes.record(finished - now);
+                    now = finished;
+                } else {
+                    if (banService.isBanned(players[client]) | banService.isBanned(addresses[client])) {
+                        refused++;
+                    }
+                    long finished = System.nanoTime();
+                    logins.record(finished - now);
+                    now = finished;
+                }
+            }
+            long allocatedTo = allocatedBytes();
+            allocatedBytes = allocatedFrom < 0 || allocatedTo < 0 ? -1 : allocatedTo - allocatedFrom;
+        }
+    }
+
+    /**
+     * The results of a scenario, across all its client threads.
+     */
+    private static final class Result {
+
+        private final Scenario scenario;
+        private LatencySnapshot logins = new LatencyHistogram().snapshot();
+        private LatencySnapshot writes = new LatencyHistogram().snapshot();
+        private long allocatedBytes = 0;
+        private long errors = 0;
+        private long gcCount;
+        private long gcMillis;
+
+        private Result(Scenario scenario) {
+            this.scenario = scenario;
+        }
+
+        private long getOperations() {
+            return logins.getCount() + writes.getCount();
+        }
+
+        private double getThroughput() {
+            return getOperations() / (double) scenario.durationSeconds;
+        }
+
+        private double getAllocationRate() {
+            return allocatedBytes < 0 ? -1 : allocatedBytes / (double) scenario.durationSeconds;
+        }
+
+        private void write(JsonWriter writer) throws IOException {
+            writer.beginObject();
+            writer.name("scenario").value(scenario.name);
+            writer.name("clients").value(scenario.clients);
+            writer.name("threads").value(scenario.threads);
+            writer.name("bans").value(scenario.bans);
+            writer.name("bannedFraction").value(scenario.bannedFraction);
+            writer.name("writeFraction").value(scenario.writeFraction);
+            writer.name("latencyMicros").value(scenario.latencyMicros);
+            writer.name("jitterMicros").value(scenario.jitterMicros);
+            writer.name("durationSeconds").value(scenario.durationSeconds);
+            writer.name("operations").value(getOperations());
+            writer.name("throughput").value(getThroughput());
+            writer.name("errors").value(errors);
+            writeLatency(writer, "login", logins);
+            writeLatency(writer, "write", writes);
+            writer.name("allocatedBytesPerSecond").value(getAllocationRate());
+            writer.name("allocatedBytesPerOperation").value(allocatedBytes < 0 ? -1 : allocatedBytes / (double) Math.max(1, getOperations()));
+            writer.name("gcCount").value(gcCount);
+            writer.name("gcMillis").value(gcMillis);
+            writer.endObject();
+        }
+
+        private static void writeLatency(JsonWriter writer, String name, LatencySnapshot latencies) throws IOException {
+            writer.name(name).beginObject();
+            writer.name("count").value(latencies.getCount());
+            writer.name("p50").value(latencies.getPercentile(50, TimeUnit.MICROSECONDS));
+            writer.name("p99").value(latencies.getPercentile(99, TimeUnit.MICROSECONDS));
+            writer.name("p999").value(latencies.getPercentile(99.9, TimeUnit.MICROSECONDS));
+            writer.name("max").value(latencies.getMax(TimeUnit.MICROSECONDS));
+            writer.endObject();
+        }
+
+        private static String latency(LatencySnapshot latencies) {
+            if (latencies.getCount() == 0) {
+                return "none";
+            }
+            return String.format(Locale.ENGLISH, "%d, p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us", latencies.getCount(),
+                    latencies.getPercentile(50, TimeUnit.MICROSECONDS), latencies.getPercentile(99, TimeUnit.MICROSECONDS),
+                    latencies.getPercentile(99.9, TimeUnit.MICROSECONDS), latencies.getMax(TimeUnit.MICROSECONDS));
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append(String.format(Locale.ENGLISH, "  throughput: %.0f ops/s%n", getThroughput()));
+            builder.append("  logins: ").append(latency(logins)).append(String.format("%n"));
+            builder.append("  writes: ").append(latency(writes));
+            if (errors > 0) {
+                builder.append(", ").append(errors).append(" failed");
+            }
+            builder.append(String.format("%n"));
+            if (allocatedBytes >= 0) {
+                builder.append(String.format(Locale.ENGLISH, "  allocation: %.1f MB/s, %.0f bytes/op%n", getAllocationRate() / 1e6,
+                        allocatedBytes / (double) Math.max(1, getOperations())));
+            }
+            builder.append(String.format(Locale.ENGLISH, "  gc: %d collections, %d ms", gcCount, gcMillis));
+            return builder.toString();
+        }
+    }
+}
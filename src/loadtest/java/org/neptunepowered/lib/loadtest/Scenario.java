@@ -0,0 +1,114 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.loadtest;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * The settings of one run of the load test.
+ */
+final class Scenario {
+
+    final String name;
+    int clients = 5000;
+    int threads = 64;
+    int bans = 100000;
+    double bannedFraction = 0.05;
+    double writeFraction = 0;
+    long latencyMicros = 0;
+    long jitterMicros = 0;
+    int warmupSeconds = 5;
+    int durationSeconds = 10;
+
+    Scenario(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets the scenarios run by default: a storm of logins alone, then with
+     * bans and pardons being written to a backend of increasing latency.
+     *
+     * @return The scenarios
+     */
+    static List<Scenario> defaults() {
+        Scenario storm = new Scenario("storm");
+
+        Scenario writes = new Scenario("storm-with-writes");
+        writes.writeFraction = 0.01;
+        writes.latencyMicros = 2000;
+        writes.jitterMicros = 1000;
+
+        Scenario slowBackend = new Scenario("storm-slow-backend");
+        slowBackend.writeFraction = 0.05;
+        slowBackend.latencyMicros = 20000;
+        slowBackend.jitterMicros = 10000;
+
+        return ImmutableList.of(storm, writes, slowBackend);
+    }
+
+    /**
+     * Applies an option given on the command line.
+     *
+     * @param option The option, without the leading dashes
+     * @param value The value
+     */
+    void set(String option, String value) {
+        if (option.equals("clients")) {
+            clients = Integer.parseInt(value);
+        } else if (option.equals("threads")) {
+            threads = Integer.parseInt(value);
+        } else if (option.equals("bans")) {
+            bans = Integer.parseInt(value);
+        } else if (option.equals("banned")) {
+            bannedFraction = Double.parseDouble(value);
+        } else if (option.equals("writes")) {
+            writeFraction = Double.parseDouble(value);
+        } else if (option.equals("latency-ms")) {
+            latencyMicros = (long) (Double.parseDouble(value) * 1000);
+        } else if (option.equals("jitter-ms")) {
+            jitterMicros = (long) (Double.parseDouble(value) * 1000);
+        } else if (option.equals("warmup-s")) {
+            warmupSeconds = Integer.parseInt(value);
+        } else if (option.equals("duration-s")) {
+            durationSeconds = Integer.parseInt(value);
+        } else {
+            throw new IllegalArgumentException("Unknown option --" + option);
+        }
+        checkArgument(clients > 0 && threads > 0 && bans >= 0 && durationSeconds > 0 && warmupSeconds >= 0,
+                "Invalid value for --%s: %s", option, value);
+        checkArgument(bannedFraction >= 0 && bannedFraction <= 1 && writeFraction >= 0 && writeFraction <= 1,
+                "Invalid value for --%s: %s", option, value);
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + clients + " clients on " + threads + " threads, " + bans + " bans, "
+                + Math.round(bannedFraction * 100) + "% of clients banned, " + Math.round(writeFraction * 1000) / 10.0
+                + "% writes, backend latency " + latencyMicros / 1000.0 + " ms (+" + jitterMicros / 1000.0 + " ms)";
+    }
+}
@@ -23,15 +23,60 @@
  */
 package org.neptunepowered.lib;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.base.Splitter;
+import com.google.common.net.InetAddresses;
+import net.canarymod.Canary;
+import net.canarymod.config.Configuration;
 import net.canarymod.plugin.Plugin;
+import net.visualillusionsent.utils.PropertiesFile;
 import org.neptunepowered.lib.factory.Factory;
+import org.neptunepowered.lib.service.AsyncBanService;
+import org.neptunepowered.lib.service.BanService;
+import org.neptunepowered.lib.service.ReadinessPolicy;
 import org.neptunepowered.lib.service.Service;
+import org.neptunepowered.lib.service.ServiceRegistry;
+import org.neptunepowered.lib.service.ban.BanArena;
+import org.neptunepowered.lib.service.ban.BanIndex;
+import org.neptunepowered.lib.service.ban.BanStore;
+import org.neptunepowered.lib.service.ban.CanaryBanStore;
+import org.neptunepowered.lib.service.ban.FileBanStore;
+import org.neptunepowered.lib.service.ban.MemoryBanStore;
+import org.neptunepowered.lib.service.ban.PlayerCacheListener;
+import org.neptunepowered.lib.service.ban.PlayerReferenceCache;
+import org.neptunepowered.lib.service.flood.FloodDetector;
+import org.neptunepowered.lib.service.replication.BanReplicator;
+import org.neptunepowered.lib.service.replication.ReplicationTransport;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class Neptune extends Plugin {
 
     private static Factory factory = new Factory();
     private static Service service = new Service();
 
+    private ExecutorService startup;
+    private ListeningExecutorService banExecutor;
+    private ScheduledExecutorService maintenanceExecutor;
+    private File snapshotFile;
+    private BanReplicator replicator;
+
     public static Factory getFactory() {
         return factory;
     }
@@ -42,11 +87,290 @@ public class Neptune extends Plugin {
 
     @Override
     public boolean enable() {
+        final PropertiesFile config = Configuration.getPluginConfig(this);
+        final BanService banService = service.getBanService();
+        banService.getMetrics().setEnabled(config.getBoolean("ban-metrics", true));
+        if (config.getBoolean("ban-metrics-jmx", false)) {
+            banService.getMetrics().registerMBean();
+        }
+        banService.getIndex().setFalsePositiveRate(config.getDouble("ban-filter-fpp", 0.01));
+        if (config.getBoolean("ban-off-heap", false)) {
+            banService.getIndex().setArena(new BanArena(Math.max(1, config.getInt("ban-off-heap-chunk-records", 16384))));
+        }
+        banService.setBatchLimits(config.getInt("ban-batch-size", 500), config.getLong("ban-batch-delay-ms", 5));
+        banService.getIndex().setChangeFeedCapacity(Math.max(1, config.getInt("ban-change-feed-size", 16384)));
+        banService.setPlayerCache(new PlayerReferenceCache(Math.max(0, config.getLong("ban-player-cache-size", 10000)),
+                Math.max(1, config.getLong("ban-player-cache-ttl-s", 600)), TimeUnit.SECONDS));
+        File dataDirectory = new File("config", getName());
+        String storeType = config.getString("ban-store", "canary");
+        if (storeType.equalsIgnoreCase("memory")) {
+            banService.setStore(new MemoryBanStore());
+        } else if (storeType.equalsIgnoreCase("file")) {
+            File storeFile = new File(dataDirectory, config.getString("ban-store-file", "bans.store"));
+            try {
+                banService.setStore(FileBanStore.open(storeFile));
+            } catch (IOException e) {
+                getLogman().error("Failed to open the ban store " + storeFile, e);
+                return false;
+            }
+        } else {
+            if (!storeType.equalsIgnoreCase("canary")) {
+                getLogman().warn("Unknown ban store " + storeType + ", using Canary's");
+            }
+            banService.setStore(new CanaryBanStore());
+        }
+        snapshotFile = new File(dataDirectory, config.getString("ban-snapshot-file", "bans.snapshot"));
+        final File journalFile = config.getBoolean("ban-journal", true)
+                ? new File(dataDirectory, config.getString("ban-journal-file", "bans.journal")) : null;
+        final long journalCompactBytes = config.getLong("ban-journal-compact-bytes", 64L * 1024 * 1024);
+        banService.getEvents().start(config.getInt("ban-events-capacity", 8192), config.getInt("ban-events-batch-size", 256),
+                config.getLong("ban-events-block-ms", 0));
+        banService.startExpiry(config.getLong("ban-expiry-tick-ms", 1000), config.getInt("ban-expiry-wheel-size", 4096));
+
+        int threads = Math.max(1, config.getInt("ban-io-threads", 2));
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(Math.max(1, config.getInt("ban-io-queue-size", 1024))),
+                new ThreadFactoryBuilder().setNameFormat("Neptune Ban I/O #%d").setDaemon(true).build());
+        executor.allowCoreThreadTimeOut(true);
+        banExecutor = MoreExecutors.listeningDecorator(executor);
+        AsyncBanService asyncBanService = new AsyncBanService(banService, banExecutor);
+        service.setAsyncBanService(asyncBanService);
+        if (config.getBoolean("ban-flood", false)) {
+            service.setFloodDetector(createFloodDetector(config, asyncBanService));
+        }
+
+        maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("Neptune Ban Maintenance").setDaemon(true).build());
+        final ScheduledExecutorService maintenanceExecutor = this.maintenanceExecutor;
+        service.getRegistry().register(BanIndex.class, new Callable<BanIndex>() {
+            @Override
+            public BanIndex call() {
+                return warmUp(banService, journalFile, maintenanceExecutor);
+            }
+        });
+        startServices(config);
+        long snapshotInterval = config.getLong("ban-snapshot-interval-s", 300);
+        if (snapshotInterval > 0) {
+            maintenanceExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    saveSnapshot();
+                }
+            }, snapshotInterval, snapshotInterval, TimeUnit.SECONDS);
+        }
+        if (config.getBoolean("ban-replication", false)) {
+            final boolean writeThrough = !storeType.equalsIgnoreCase("canary");
+            // Changes from peers must not be applied before the bans they change have been loaded
+            service.getReadiness().addListener(new Runnable() {
+                @Override
+                public void run() {
+                    startReplication(config, banService, writeThrough);
+                }
+            }, maintenanceExecutor);
+        }
+        if (journalCompactBytes > 0) {
+            maintenanceExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    if (banService.getJournalSize() > journalCompactBytes) {
+                        saveSnapshot();
+                    }
+                }
+            }, 10, 10, TimeUnit.SECONDS);
+        }
+        Canary.hooks().registerListener(new PlayerCacheListener(banService), this);
         return true;
     }
 
+    /**
+     * Loads the bans into the index, from the snapshot if there is one, and
+     * opens the journal.
+     */
+    private BanIndex warmUp(final BanService banService, File journalFile, ScheduledExecutorService maintenanceExecutor) {
+        if (banService.loadSnapshot(snapshotFile)) {
+            // Logins are already being checked against the snapshot, catch up with the backend meanwhile
+            maintenanceExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    banService.reload();
+                }
+            });
+        } else {
+            // The journal has to be replayed on top of something
+            banService.reload();
+        }
+        if (journalFile != null) {
+            try {
+                banService.openJournal(journalFile);
+            } catch (IOException e) {
+                getLogman().warn("Failed to open the ban journal " + journalFile + ", bans will not be journaled", e);
+            }
+        }
+        return banService.getIndex();
+    }
+
+    /**
+     * Creates the services that need warming up in parallel, with ban checks
+     * answered by the readiness policy until they are ready.
+     */
+    private void startServices(PropertiesFile config) {
+        // Failing closed refuses every login until the bans are loaded
+        String policyName = config.getString("ban-readiness-policy", "fail-open");
+        ReadinessPolicy policy = ReadinessPolicy.FAIL_OPEN;
+        if (policyName.equalsIgnoreCase("fail-closed")) {
+            policy = ReadinessPolicy.FAIL_CLOSED;
+        } else if (!policyName.equalsIgnoreCase("fail-open")) {
+            getLogman().warn("Unknown ban readiness policy " + policyName + ", failing open");
+        }
+        int threads = Math.max(1, config.getInt("startup-threads", Math.min(4, Runtime.getRuntime().availableProcessors())));
+        final ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("Neptune Startup #%d").setDaemon(true).build());
+        final ServiceRegistry registry = service.getRegistry();
+        ListenableFuture<Void> readiness = registry.start(executor);
+        service.getBanService().setReadiness(readiness, policy);
+        Futures.addCallback(readiness, new FutureCallback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                executor.shutdown();
+                for (Map.Entry<Class<?>, Long> startup : registry.getStartupMillis().entrySet()) {
+                    getLogman().info("Started " + startup.getKey().getSimpleName() + " in " + startup.getValue() + " ms");
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                executor.shutdown();
+                getLogman().error("Failed to start Neptune's services, bans will be loaded when first checked", t);
+            }
+        });
+        startup = executor;
+    }
+
+    private FloodDetector createFloodDetector(PropertiesFile config, AsyncBanService asyncBanService) {
+        FloodDetector detector = new FloodDetector(factory.getBanFactory(), asyncBanService,
+                Math.max(1, config.getInt("ban-flood-capacity", 65536)), Math.max(1, config.getLong("ban-flood-window-ms", 10000)));
+        detector.setThresholds(Math.max(1, config.getInt("ban-flood-address-threshold", 20)),
+                Math.max(1, config.getInt("ban-flood-range-threshold", 100)));
+        detector.setPrefixLengths(config.getInt("ban-flood-ipv4-prefix", 24), config.getInt("ban-flood-ipv6-prefix", 48));
+        detector.setBanDuration(TimeUnit.MINUTES.toMillis(Math.max(1, config.getLong("ban-flood-ban-minutes", 10))),
+                TimeUnit.SECONDS.toMillis(Math.max(0, config.getLong("ban-flood-cooldown-s", 60))));
+        for (String entry : Splitter.on(',').trimResults().omitEmptyStrings().split(config.getString("ban-flood-whitelist", "127.0.0.1,::1"))) {
+            int slash = entry.indexOf('/');
+            String literal = slash < 0 ? entry : entry.substring(0, slash);
+            if (!InetAddresses.isInetAddress(literal)) {
+                getLogman().warn("Ignoring invalid flood whitelist entry " + entry);
+                continue;
+            }
+            InetAddress address = InetAddresses.forString(literal);
+            try {
+                detector.addWhitelist(address, slash < 0 ? address.getAddress().length * 8 : Integer.parseInt(entry.substring(slash + 1)));
+            } catch (IllegalArgumentException e) {
+                getLogman().warn("Ignoring invalid flood whitelist entry " + entry);
+            }
+        }
+        return detector;
+    }
+
+    private void startReplication(PropertiesFile config, BanService banService, boolean writeThrough) {
+        String transportClass = config.getString("ban-replication-transport", "");
+        ReplicationTransport transport;
+        try {
+            transport = Class.forName(transportClass).asSubclass(ReplicationTransport.class).newInstance();
+        } catch (Exception e) {
+            getLogman().warn("Failed to create the ban replication transport " + transportClass + ", bans will not be replicated", e);
+            return;
+        }
+        // Peers need to tell a restarted server apart from the one before it
+        String nodeId = config.getString("ban-replication-node-id", getName()) + "-" + System.currentTimeMillis();
+        final BanReplicator replicator = new BanReplicator(banService, transport, nodeId,
+                Math.max(1, config.getInt("ban-replication-log-size", 65536)));
+        replicator.setWriteThrough(config.getBoolean("ban-replication-write-through", writeThrough));
+        replicator.start();
+        this.replicator = replicator;
+
+        long heartbeat = Math.max(10, config.getLong("ban-replication-heartbeat-ms", 1000));
+        maintenanceExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                replicator.heartbeat();
+            }
+        }, heartbeat, heartbeat, TimeUnit.MILLISECONDS);
+        final long tombstoneMillis = TimeUnit.HOURS.toMillis(config.getLong("ban-replication-tombstone-hours", 24));
+        maintenanceExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                replicator.prune(tombstoneMillis);
+            }
+        }, 1, 1, TimeUnit.MINUTES);
+    }
+
     @Override
     public void disable() {
+        Canary.hooks().unregisterPluginListeners(this);
+        if (startup != null) {
+            // Bans being loaded would otherwise be written to a closed journal
+            startup.shutdown();
+            try {
+                if (!startup.awaitTermination(30, TimeUnit.SECONDS)) {
+                    getLogman().warn("Timed out waiting for Neptune's services to start");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            startup = null;
+        }
+        if (maintenanceExecutor != null) {
+            maintenanceExecutor.shutdownNow();
+            try {
+                // Replication may be starting on it
+                maintenanceExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            maintenanceExecutor = null;
+        }
+        if (replicator != null) {
+            replicator.stop();
+            replicator = null;
+        }
+        service.getBanService().stopExpiry();
+        service.getBanService().getMetrics().unregisterMBean();
+        service.setFloodDetector(null);
+        service.setAsyncBanService(null);
+        if (banExecutor != null) {
+            banExecutor.shutdown();
+            try {
+                if (!banExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+                    getLogman().warn("Timed out waiting for pending ban operations, cancelling them");
+                    banExecutor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                banExecutor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+            banExecutor = null;
+        }
+        saveSnapshot();
+        service.getBanService().getEvents().stop();
+        service.getBanService().closeJournal();
+        BanStore store = service.getBanService().getStore();
+        if (store instanceof Closeable) {
+            try {
+                ((Closeable) store).close();
+            } catch (IOException e) {
+                getLogman().warn("Failed to close the ban store", e);
+            }
+        }
+    }
 
+    private void saveSnapshot() {
+        if (snapshotFile == null) {
+            return;
+        }
+        try {
+            service.getBanService().saveSnapshot(snapshotFile);
+        } catch (IOException e) {
+            getLogman().warn("Failed to write the ban snapshot to " + snapshotFile, e);
+        }
     }
 }
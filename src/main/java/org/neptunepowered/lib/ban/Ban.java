@@ -28,6 +28,7 @@ import net.canarymod.api.PlayerReference;
 
 import java.net.InetAddress;
 import java.util.Date;
+import java.util.UUID;
 
 /**
  * Represents a ban made on an object.
@@ -55,6 +56,13 @@ public interface Ban {
      */
     Date getStartDate();
 
+    /**
+     * Gets the start date of the ban, without allocating a {@link Date}.
+     *
+     * @return creation date of the ban, in milliseconds since the epoch
+     */
+    long getStartMillis();
+
     /**
      * Gets the expiration date of this ban, if available.
      *
@@ -62,6 +70,14 @@ public interface Ban {
      */
     Optional<Date> getExpirationDate();
 
+    /**
+     * Gets the expiration date of this ban, without allocating a {@link Date}.
+     *
+     * @return expiration date of the ban in milliseconds since the epoch, or
+     *     {@code -1} if it has none
+     */
+    long getExpirationMillis();
+
     /**
      * Gets whether this ban is indefinitely long, e.g. has no expiration date.
      *
@@ -69,6 +85,13 @@ public interface Ban {
      */
     boolean isIndefinite();
 
+    /**
+     * Gets the name of who issued this ban, if it is known.
+     *
+     * @return the issuer or {@link Optional#absent()}
+     */
+    Optional<String> getIssuer();
+
     /**
      * Represents a ban made on a player.
      */
@@ -80,6 +103,24 @@ public interface Ban {
          * @return the player
          */
         PlayerReference getPlayer();
+
+        /**
+         * Gets the name of the player this ban applies to, as it was when the
+         * ban was made.
+         *
+         * @return the name
+         */
+        String getName();
+
+        /**
+         * Gets the UUID of the player this ban applies to, if it is known.
+         *
+         * <p>Bans are matched by UUID where possible, so that they follow the
+         * player through name changes.</p>
+         *
+         * @return the UUID or {@link Optional#absent()}
+         */
+        Optional<UUID> getUniqueId();
     }
 
     /**
@@ -93,5 +134,15 @@ public interface Ban {
          * @return the address
          */
         InetAddress getAddress();
+
+        /**
+         * Gets the number of leading bits of the address this ban applies to.
+         *
+         * <p>This is the full width of the address (32 for IPv4, 128 for IPv6)
+         * for a ban on a single address, or less for a ban on a CIDR range.</p>
+         *
+         * @return the prefix length
+         */
+        int getPrefixLength();
     }
 }
@@ -50,6 +50,18 @@ public interface BanBuilder {
      */
     BanBuilder address(InetAddress address);
 
+    /**
+     * Sets the number of leading bits of the address to be banned, in order to
+     * ban a CIDR range rather than a single address.
+     *
+     * <p>This can only be done if the {@link BanType} has been set to {@link BanType#IP}.
+     * If it is not set, the ban applies to the single address.</p>
+     *
+     * @param prefixLength The prefix length
+     * @return This builder
+     */
+    BanBuilder prefixLength(int prefixLength);
+
     /**
      * Sets the type of the ban.
      *
@@ -67,7 +79,16 @@ public interface BanBuilder {
     BanBuilder reason(String reason);
 
     /**
-     * Sets the date that the ban starts.
+     * Sets the name of who issued the ban.
+     *
+     * @param issuer The issuer
+     * @return This builder
+     */
+    BanBuilder issuer(String issuer);
+
+    /**
+     * Sets the date that the ban starts. If it is not set, the ban starts
+     * when it is built.
      *
      * @param date The start date
      * @return This builder
@@ -83,9 +104,12 @@ public interface BanBuilder {
     BanBuilder expirationDate(Date date);
 
     /**
-     * Creates a new Ban from this builder.
+     * Creates a new Ban from this builder. The ban is immutable, so changing
+     * the builder afterwards does not affect it.
      *
      * @return A new Ban
+     * @throws IllegalStateException If the player or address to be banned
+     *     has not been set
      */
     Ban build();
 }
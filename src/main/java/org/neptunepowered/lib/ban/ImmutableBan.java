@@ -0,0 +1,368 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.ban;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import net.canarymod.api.PlayerReference;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * An immutable ban, which holds its state as primitives so that reading it
+ * allocates nothing beyond what the {@link Date} based accessors return.
+ *
+ * <p>Reasons and issuers are interned, as most bans share one of a few.</p>
+ */
+public abstract class ImmutableBan implements Ban {
+
+    private static final Interner<String> strings = Interners.newWeakInterner();
+
+    private final String reason;
+    private final String issuer;
+    private final long startMillis;
+    private final long expirationMillis;
+
+    private ImmutableBan(String reason, String issuer, long startMillis, long expirationMillis) {
+        checkArgument(expirationMillis >= -1, "Invalid expiration %s", expirationMillis);
+        this.reason = reason == null ? null : strings.intern(reason);
+        this.issuer = issuer == null ? null : strings.intern(issuer);
+        this.startMillis = startMillis;
+        this.expirationMillis = expirationMillis;
+    }
+
+    /**
+     * Creates a ban on a player.
+     *
+     * @param player The player
+     * @param reason The reason, or null
+     * @param startMillis When the ban starts, in milliseconds since the epoch
+     * @param expirationMillis When the ban expires, in milliseconds since the
+     *     epoch, or -1 if it does not
+     * @return The ban
+     */
+    public static Player player(PlayerReference player, String reason, long startMillis, long expirationMillis) {
+        return player(player, reason, null, startMillis, expirationMillis);
+    }
+
+    /**
+     * Creates a ban on a player, recording who issued it.
+     *
+     * @param player The player
+     * @param reason The reason, or null
+     * @param issuer The name of who issued the ban, or null
+     * @param startMillis When the ban starts, in milliseconds since the epoch
+     * @param expirationMillis When the ban expires, in milliseconds since the
+     *     epoch, or -1 if it does not
+     * @return The ban
+     */
+    public static Player player(PlayerReference player, String reason, String issuer, long startMillis, long expirationMillis) {
+        checkNotNull(player, "player");
+        return new Player(player.getName(), player.getUUID(), reason, issuer, startMillis, expirationMillis, PlayerResolver.SERVER);
+    }
+
+    /**
+     * Creates a ban on a player known only by name, and possibly UUID.
+     *
+     * @param name The name of the player
+     * @param uniqueId The UUID of the player, or null if it is not known
+     * @param reason The reason, or null
+     * @param startMillis When the ban starts, in milliseconds since the epoch
+     * @param expirationMillis When the ban expires, in milliseconds since the
+     *     epoch, or -1 if it does not
+     * @return The ban
+     */
+    public static Player player(String name, UUID uniqueId, String reason, long startMillis, long expirationMillis) {
+        return player(name, uniqueId, reason, null, startMillis, expirationMillis);
+    }
+
+    /**
+     * Creates a ban on a player known only by name, and possibly UUID,
+     * recording who issued it.
+     *
+     * @param name The name of the player
+     * @param uniqueId The UUID of the player, or null if it is not known
+     * @param reason The reason, or null
+     * @param issuer The name of who issued the ban, or null
+     * @param startMillis When the ban starts, in milliseconds since the epoch
+     * @param expirationMillis When the ban expires, in milliseconds since the
+     *     epoch, or -1 if it does not
+     * @return The ban
+     */
+    public static Player player(String name, UUID uniqueId, String reason, String issuer, long startMillis, long expirationMillis) {
+        return new Player(checkNotNull(name, "name"), uniqueId, reason, issuer, startMillis, expirationMillis, PlayerResolver.SERVER);
+    }
+
+    /**
+     * Creates a ban on an address, or on a range of addresses.
+     *
+     * @param address The address
+     * @param prefixLength The number of leading bits of the address the ban
+     *     covers
+     * @param reason The reason, or null
+     * @param startMillis When the ban starts, in milliseconds since the epoch
+     * @param expirationMillis When the ban expires, in milliseconds since the
+     *     epoch, or -1 if it does not
+     * @return The ban
+     */
+    public static Ip ip(InetAddress address, int prefixLength, String reason, long startMillis, long expirationMillis) {
+        return ip(address, prefixLength, reason, null, startMillis, expirationMillis);
+    }
+
+    /**
+     * Creates a ban on an address, or on a range of addresses, recording who
+     * issued it.
+     *
+     * @param address The address
+     * @param prefixLength The number of leading bits of the address the ban
+     *     covers
+     * @param reason The reason, or null
+     * @param issuer The name of who issued the ban, or null
+     * @param startMillis When the ban starts, in milliseconds since the epoch
+     * @param expirationMillis When the ban expires, in milliseconds since the
+     *     epoch, or -1 if it does not
+     * @return The ban
+     */
+    public static Ip ip(InetAddress address, int prefixLength, String reason, String issuer, long startMillis, long expirationMillis) {
+        return new Ip(checkNotNull(address, "address"), prefixLength, reason, issuer, startMillis, expirationMillis);
+    }
+
+    @Override
+    public String getReason() {
+        return reason;
+    }
+
+    @Override
+    public Date getStartDate() {
+        return new Date(startMillis);
+    }
+
+    @Override
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    @Override
+    public Optional<Date> getExpirationDate() {
+        return expirationMillis == -1 ? Optional.<Date>absent() : Optional.of(new Date(expirationMillis));
+    }
+
+    @Override
+    public long getExpirationMillis() {
+        return expirationMillis;
+    }
+
+    @Override
+    public boolean isIndefinite() {
+        return expirationMillis == -1;
+    }
+
+    @Override
+    public Optional<String> getIssuer() {
+        return Optional.fromNullable(issuer);
+    }
+
+    final boolean equalTo(ImmutableBan other) {
+        return startMillis == other.startMillis && expirationMillis == other.expirationMillis
+                && Objects.equal(reason, other.reason) && Objects.equal(issuer, other.issuer);
+    }
+
+    final int hash() {
+        return Objects.hashCode(reason, issuer, startMillis, expirationMillis);
+    }
+
+    /**
+     * An immutable ban on a player.
+     *
+     * <p>Only the name and UUID of the player are held, so a ban kept after
+     * the player has logged out does not keep them reachable. The player is
+     * resolved when asked for, from the server unless the ban was given
+     * another {@link PlayerResolver}.</p>
+     */
+    public static final class Player extends ImmutableBan implements Ban.Player {
+
+        private final String name;
+        private final long uuidMost;
+        private final long uuidLeast;
+        private final boolean hasUniqueId;
+        private final PlayerResolver resolver;
+        // Created when first asked for, UUIDs and optionals being safe to publish through a race
+        private Optional<UUID> uniqueId;
+
+        private Player(String name, UUID uniqueId, String reason, String issuer, long startMillis, long expirationMillis,
+                PlayerResolver resolver) {
+            super(reason, issuer, startMillis, expirationMillis);
+            this.name = name;
+            this.resolver = resolver;
+            this.hasUniqueId = uniqueId != null;
+            this.uuidMost = uniqueId == null ? 0 : uniqueId.getMostSignificantBits();
+            this.uuidLeast = uniqueId == null ? 0 : uniqueId.getLeastSignificantBits();
+        }
+
+        @Override
+        public BanType getBanType() {
+            return BanType.PLAYER;
+        }
+
+        /**
+         * Gets the player this ban applies to, looked up by UUID if it is
+         * known, or otherwise by name, through the resolver of the ban.
+         *
+         * @return the player
+         */
+        @Override
+        public PlayerReference getPlayer() {
+            return resolver.resolve(name, getUniqueId().orNull());
+        }
+
+        /**
+         * Gets a copy of this ban that resolves its player through the given
+         * resolver, such as a cache.
+         *
+         * @param resolver The resolver
+         * @return The copy, or this ban if it already uses the resolver
+         */
+        public ImmutableBan.Player withResolver(PlayerResolver resolver) {
+            checkNotNull(resolver, "resolver");
+            return resolver == this.resolver ? this : new ImmutableBan.Player(name, hasUniqueId ? new UUID(uuidMost, uuidLeast) : null,
+                    getReason(), getIssuer().orNull(), getStartMillis(), getExpirationMillis(), resolver);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Optional<UUID> getUniqueId() {
+            Optional<UUID> uniqueId = this.uniqueId;
+            if (uniqueId == null) {
+                uniqueId = hasUniqueId ? Optional.of(new UUID(uuidMost, uuidLeast)) : Optional.<UUID>absent();
+                this.uniqueId = uniqueId;
+            }
+            return uniqueId;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ImmutableBan.Player)) {
+                return false;
+            }
+            ImmutableBan.Player other = (ImmutableBan.Player) obj;
+            return equalTo(other) && name.equals(other.name) && hasUniqueId == other.hasUniqueId
+                    && uuidMost == other.uuidMost && uuidLeast == other.uuidLeast;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * hash() + name.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("name", name)
+                    .add("reason", getReason())
+                    .add("issuer", getIssuer().orNull())
+                    .add("start", getStartMillis())
+                    .add("expiration", getExpirationMillis())
+                    .toString();
+        }
+    }
+
+    /**
+     * An immutable ban on an address, or on a range of addresses.
+     */
+    public static final class Ip extends ImmutableBan implements Ban.Ip {
+
+        private final byte[] bytes;
+        private final InetAddress address;
+        private final int prefixLength;
+
+        private Ip(InetAddress address, int prefixLength, String reason, String issuer, long startMillis, long expirationMillis) {
+            super(reason, issuer, startMillis, expirationMillis);
+            this.bytes = address.getAddress();
+            try {
+                // Created again from the bytes, so that no host name lookup is held or made through it
+                this.address = InetAddress.getByAddress(bytes);
+            } catch (UnknownHostException e) {
+                // Only thrown for addresses that are neither 4 nor 16 bytes long
+                throw new AssertionError(e);
+            }
+            int width = bytes.length * 8;
+            checkArgument(prefixLength >= 0 && prefixLength <= width, "Prefix length %s out of range for %s", prefixLength, address);
+            this.prefixLength = prefixLength;
+        }
+
+        @Override
+        public BanType getBanType() {
+            return BanType.IP;
+        }
+
+        @Override
+        public InetAddress getAddress() {
+            return address;
+        }
+
+        @Override
+        public int getPrefixLength() {
+            return prefixLength;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ImmutableBan.Ip)) {
+                return false;
+            }
+            ImmutableBan.Ip other = (ImmutableBan.Ip) obj;
+            return equalTo(other) && Arrays.equals(bytes, other.bytes) && prefixLength == other.prefixLength;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * hash() + Arrays.hashCode(bytes)) + prefixLength;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("address", address.getHostAddress() + "/" + prefixLength)
+                    .add("reason", getReason())
+                    .add("issuer", getIssuer().orNull())
+                    .add("start", getStartMillis())
+                    .add("expiration", getExpirationMillis())
+                    .toString();
+        }
+    }
+}
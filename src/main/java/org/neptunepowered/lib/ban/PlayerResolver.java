@@ -0,0 +1,68 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.ban;
+
+import net.canarymod.Canary;
+import net.canarymod.api.PlayerReference;
+
+import java.util.UUID;
+
+/**
+ * Resolves the player a {@link Ban.Player} applies to, from what the ban
+ * holds of them.
+ */
+public interface PlayerResolver {
+
+    /**
+     * Looks players up from the server each time, as offline players if
+     * they are not online.
+     */
+    PlayerResolver SERVER = new PlayerResolver() {
+        @Override
+        public PlayerReference resolve(String name, UUID uniqueId) {
+            PlayerReference player;
+            if (uniqueId != null) {
+                player = Canary.getServer().getPlayerFromUUID(uniqueId);
+                if (player == null) {
+                    player = Canary.getServer().getOfflinePlayer(uniqueId);
+                }
+            } else {
+                player = Canary.getServer().getPlayer(name);
+                if (player == null) {
+                    player = Canary.getServer().getOfflinePlayer(name);
+                }
+            }
+            return player;
+        }
+    };
+
+    /**
+     * Resolves a player.
+     *
+     * @param name The name of the player
+     * @param uniqueId The UUID of the player, or null if it is not known
+     * @return The player, or null if they could not be found
+     */
+    PlayerReference resolve(String name, UUID uniqueId);
+}
@@ -23,11 +23,13 @@
  */
 package org.neptunepowered.lib.factory;
 
-import com.google.common.base.Optional;
+import static com.google.common.base.Preconditions.checkState;
+
 import net.canarymod.api.PlayerReference;
 import org.neptunepowered.lib.ban.Ban;
 import org.neptunepowered.lib.ban.BanBuilder;
 import org.neptunepowered.lib.ban.BanType;
+import org.neptunepowered.lib.ban.ImmutableBan;
 
 import java.net.InetAddress;
 import java.util.Date;
@@ -38,8 +40,10 @@ public class BanFactory {
         return new BanBuilder() {
             PlayerReference player;
             InetAddress address = null;
+            int prefixLength = -1;
             BanType banType = BanType.PLAYER;
             String reason;
+            String issuer;
             Date startDate;
             Date expirationDate = null;
 
@@ -55,6 +59,12 @@ public class BanFactory {
                 return this;
             }
 
+            @Override
+            public BanBuilder prefixLength(int prefixLength) {
+                this.prefixLength = prefixLength;
+                return this;
+            }
+
             @Override
             public BanBuilder type(BanType type) {
                 this.banType = type;
@@ -67,6 +77,12 @@ public class BanFactory {
                 return this;
             }
 
+            @Override
+            public BanBuilder issuer(String issuer) {
+                this.issuer = issuer;
+                return this;
+            }
+
             @Override
             public BanBuilder startDate(Date date) {
                 this.startDate = date;
@@ -81,71 +97,16 @@ public class BanFactory {
 
             @Override
             public Ban build() {
+                long start = startDate == null ? System.currentTimeMillis() : startDate.getTime();
+                long expiration = expirationDate == null ? -1 : expirationDate.getTime();
                 switch (banType) {
                     case IP:
-                        return new Ban.Ip() {
-                            @Override
-                            public InetAddress getAddress() {
-                                return address;
-                            }
-
-                            @Override
-                            public BanType getBanType() {
-                                return banType;
-                            }
-
-                            @Override
-                            public String getReason() {
-                                return reason;
-                            }
-
-                            @Override
-                            public Date getStartDate() {
-                                return startDate;
-                            }
-
-                            @Override
-                            public Optional<Date> getExpirationDate() {
-                                return Optional.of(expirationDate);
-                            }
-
-                            @Override
-                            public boolean isIndefinite() {
-                                return expirationDate == null;
-                            }
-                        };
+                        checkState(address != null, "An IP ban needs an address");
+                        return ImmutableBan.ip(address, prefixLength < 0 ? address.getAddress().length * 8 : prefixLength,
+                                reason, issuer, start, expiration);
                     default:
-                        return new Ban.Player() {
-                            @Override
-                            public PlayerReference getPlayer() {
-                                return player;
-                            }
-
-                            @Override
-                            public BanType getBanType() {
-                                return banType;
-                            }
-
-                            @Override
-                            public String getReason() {
-                                return reason;
-                            }
-
-                            @Override
-                            public Date getStartDate() {
-                                return startDate;
-                            }
-
-                            @Override
-                            public Optional<Date> getExpirationDate() {
-                                return Optional.of(expirationDate);
-                            }
-
-                            @Override
-                            public boolean isIndefinite() {
-                                return expirationDate == null;
-                            }
-                        };
+                        checkState(player != null, "A player ban needs a player");
+                        return ImmutableBan.player(player, reason, issuer, start, expiration);
                 }
             }
         };
@@ -0,0 +1,197 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import net.canarymod.api.PlayerReference;
+import org.neptunepowered.lib.ban.Ban;
+
+import java.net.InetAddress;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Represents the service with which to ban users, without blocking the caller.
+ *
+ * <p>Every operation is run against the {@link BanService} on a dedicated,
+ * bounded I/O executor. If that executor is saturated the returned future
+ * fails with a {@link RejectedExecutionException}.</p>
+ */
+public class AsyncBanService {
+
+    private final BanService banService;
+    private final ListeningExecutorService executor;
+
+    public AsyncBanService(BanService banService, ListeningExecutorService executor) {
+        this.banService = banService;
+        this.executor = executor;
+    }
+
+    /**
+     * Gets all bans registered.
+     *
+     * @return A future of all registered bans
+     */
+    public ListenableFuture<Collection<Ban>> getBansAsync() {
+        return submit(new Callable<Collection<Ban>>() {
+            @Override
+            public Collection<Ban> call() throws Exception {
+                return banService.getBans();
+            }
+        });
+    }
+
+    /**
+     * Gets all player bans registered.
+     *
+     * @return A future of all registered player bans
+     */
+    public ListenableFuture<Collection<Ban.Player>> getPlayerBansAsync() {
+        return submit(new Callable<Collection<Ban.Player>>() {
+            @Override
+            public Collection<Ban.Player> call() throws Exception {
+                return banService.getPlayerBans();
+            }
+        });
+    }
+
+    /**
+     * Gets all IP bans registered.
+     *
+     * @return A future of all registered IP bans
+     */
+    public ListenableFuture<Collection<Ban.Ip>> getIpBansAsync() {
+        return submit(new Callable<Collection<Ban.Ip>>() {
+            @Override
+            public Collection<Ban.Ip> call() throws Exception {
+                return banService.getIpBans();
+            }
+        });
+    }
+
+    /**
+     * Checks if a player has any bans.
+     *
+     * @param player The player
+     * @return A future of true if the user has any bans, false otherwise
+     */
+    public ListenableFuture<Boolean> isBannedAsync(final PlayerReference player) {
+        return submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return banService.isBanned(player);
+            }
+        });
+    }
+
+    /**
+     * Checks if an IP has any bans.
+     *
+     * @param address The address
+     * @return A future of true if the address has any bans, false otherwise
+     */
+    public ListenableFuture<Boolean> isBannedAsync(final InetAddress address) {
+        return submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return banService.isBanned(address);
+            }
+        });
+    }
+
+    /**
+     * Pardons a player, or removes all their bans.
+     *
+     * @param player The player
+     * @return A future completed once the player has been pardoned
+     */
+    public ListenableFuture<Void> pardonAsync(final PlayerReference player) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                banService.pardon(player);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Pardons an IP address, or removes all the bans against that IP.
+     *
+     * @param address The IP address
+     * @return A future completed once the address has been pardoned
+     */
+    public ListenableFuture<Void> pardonAsync(final InetAddress address) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                banService.pardon(address);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Pardons a ban.
+     *
+     * @param ban The ban
+     * @return A future completed once the ban has been pardoned
+     */
+    public ListenableFuture<Void> pardonAsync(final Ban ban) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                banService.pardon(ban);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Adds a ban.
+     *
+     * @param ban The ban to put on the user
+     * @return A future completed once the ban has been added
+     */
+    public ListenableFuture<Void> banAsync(final Ban ban) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                banService.ban(ban);
+                return null;
+            }
+        });
+    }
+
+    private <T> ListenableFuture<T> submit(Callable<T> task) {
+        try {
+            return executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            return Futures.immediateFailedFuture(e);
+        }
+    }
+}
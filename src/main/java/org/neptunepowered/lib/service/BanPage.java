@@ -0,0 +1,62 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service;
+
+import com.google.common.base.Optional;
+import org.neptunepowered.lib.ban.Ban;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Represents a single page of the results of a {@link BanQuery}.
+ */
+public class BanPage {
+
+    private final List<Ban> bans;
+    private final Optional<String> nextCursor;
+
+    BanPage(List<Ban> bans, Optional<String> nextCursor) {
+        this.bans = Collections.unmodifiableList(bans);
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Gets the bans on this page.
+     *
+     * @return The bans
+     */
+    public List<Ban> getBans() {
+        return bans;
+    }
+
+    /**
+     * Gets the cursor with which to fetch the next page, if there is one.
+     *
+     * @return The cursor or {@link Optional#absent()}
+     */
+    public Optional<String> getNextCursor() {
+        return nextCursor;
+    }
+}
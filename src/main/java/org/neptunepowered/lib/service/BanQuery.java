@@ -0,0 +1,337 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.AbstractIterator;
+import org.neptunepowered.lib.ban.Ban;
+import org.neptunepowered.lib.ban.BanType;
+import org.neptunepowered.lib.service.ban.BanCursor;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Represents a query over the registered bans.
+ *
+ * <p>Bans are read lazily from the backend, and the filters are applied to
+ * the backend's records before they are wrapped, so only matching bans are
+ * ever created. Results can be paged through with an opaque cursor.</p>
+ *
+ * <p>Bans come back in the order the backend holds them, which for the
+ * stores provided is the order they were issued in. A cursor holds both the
+ * position of the last ban on its page and that ban's subject, so bans being
+ * issued or pardoned between pages does not make the next page skip or
+ * repeat any. The exception is when the last ban on the page is itself
+ * pardoned, in which case the next page starts from its old position, and
+ * may skip as many bans as were pardoned before it.</p>
+ *
+ * <p>Backends that cannot read from a position, such as the
+ * {@link org.neptunepowered.lib.service.ban.CanaryBanStore}, copy every ban
+ * of a type for each page, and for each {@link #count()}.</p>
+ */
+public class BanQuery implements Iterable<Ban> {
+
+    private static final BanType[] ORDER = {BanType.PLAYER, BanType.IP};
+
+    private final BanService banService;
+    private BanType type = null;
+    private Boolean active = null;
+    private long expiringFrom = Long.MIN_VALUE;
+    private long expiringTo = Long.MAX_VALUE;
+    private boolean expiring = false;
+    private String cursor = null;
+    private int limit = Integer.MAX_VALUE;
+
+    BanQuery(BanService banService) {
+        this.banService = banService;
+    }
+
+    /**
+     * Only matches bans of the given type.
+     *
+     * @param type The ban type
+     * @return This query
+     */
+    public BanQuery type(BanType type) {
+        this.type = type;
+        return this;
+    }
+
+    /**
+     * Only matches bans that are, or are not, still in effect.
+     *
+     * @param active True to match active bans, false to match expired bans
+     * @return This query
+     */
+    public BanQuery active(boolean active) {
+        this.active = active;
+        return this;
+    }
+
+    /**
+     * Only matches bans expiring within the given range. Indefinite bans are
+     * never matched.
+     *
+     * @param from The start of the range, inclusive
+     * @param to The end of the range, exclusive
+     * @return This query
+     */
+    public BanQuery expiringBetween(Date from, Date to) {
+        this.expiringFrom = from.getTime();
+        this.expiringTo = to.getTime();
+        this.expiring = true;
+        return this;
+    }
+
+    /**
+     * Continues the query after the end of a previous page.
+     *
+     * @param cursor The cursor of the previous page, see {@link BanPage#getNextCursor()}
+     * @return This query
+     */
+    public BanQuery after(String cursor) {
+        this.cursor = cursor;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of bans returned.
+     *
+     * @param limit The limit
+     * @return This query
+     */
+    public BanQuery limit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive, but was " + limit);
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Lazily iterates over the matching bans, up to the limit.
+     *
+     * @return An iterator over the matching bans
+     */
+    @Override
+    public Iterator<Ban> iterator() {
+        final Scan scan = new Scan();
+        return new AbstractIterator<Ban>() {
+            private int returned = 0;
+
+            @Override
+            protected Ban computeNext() {
+                if (returned >= limit || !scan.hasNext()) {
+                    scan.close();
+                    return endOfData();
+                }
+                returned++;
+                return scan.next();
+            }
+        };
+    }
+
+    /**
+     * Gets a single page of matching bans, of at most the limit.
+     *
+     * @return The page
+     */
+    public BanPage page() {
+        Scan scan = new Scan();
+        try {
+            List<Ban> bans = new ArrayList<Ban>(Math.min(limit, 256));
+            while (bans.size() < limit && scan.hasNext()) {
+                bans.add(scan.next());
+            }
+            String next = bans.size() == limit && scan.hasNext() ? scan.cursor() : null;
+            return new BanPage(bans, Optional.fromNullable(next));
+        } finally {
+            scan.close();
+        }
+    }
+
+    /**
+     * Counts the matching bans, ignoring the cursor and the limit.
+     *
+     * <p>No bans are created to count them.</p>
+     *
+     * @return The number of matching bans
+     */
+    public int count() {
+        long now = System.currentTimeMillis();
+        int count = 0;
+        for (BanType banType : ORDER) {
+            if (type != null && type != banType) {
+                continue;
+            }
+            BanCursor bans = banService.backend().openCursor(banType.getCanaryType(), 0);
+            try {
+                for (net.canarymod.bansystem.Ban ban = bans.next(); ban != null; ban = bans.next()) {
+                    if (matches(ban, now)) {
+                        count++;
+                    }
+                }
+            } finally {
+                bans.close();
+            }
+        }
+        return count;
+    }
+
+    private static String subject(net.canarymod.bansystem.Ban ban, BanType banType) {
+        return banType == BanType.IP ? ban.getIp() : ban.getSubject();
+    }
+
+    private boolean matches(net.canarymod.bansystem.Ban ban, long now) {
+        long expiration = ban.getExpiration();
+        if (active != null && active != (expiration == -1 || expiration > now)) {
+            return false;
+        }
+        return !expiring || (expiration != -1 && expiration >= expiringFrom && expiration < expiringTo);
+    }
+
+    /**
+     * A scan over the backend from the cursor, which keeps track of where it
+     * has got to. It looks ahead by one match so it knows if there are more.
+     *
+     * <p>Cursors are written as {@code type:position:subject}, the subject
+     * being that of the ban just before the position.</p>
+     */
+    private class Scan {
+
+        private final long now = System.currentTimeMillis();
+        private int typeIndex = 0;
+        private int position = 0;
+        private int lastTypeIndex;
+        private int lastPosition;
+        private int returnedTypeIndex;
+        private int returnedPosition;
+        private String returnedSubject;
+        private String lastSubject;
+        private String anchor = null;
+        private BanCursor bans = null;
+        private Ban next = null;
+
+        private Scan() {
+            if (cursor != null) {
+                int separator = cursor.indexOf(':');
+                int subjectSeparator = cursor.indexOf(':', separator + 1);
+                try {
+                    typeIndex = Integer.parseInt(cursor.substring(0, separator));
+                    position = Integer.parseInt(cursor.substring(separator + 1, subjectSeparator));
+                    anchor = cursor.substring(subjectSeparator + 1);
+                } catch (RuntimeException e) {
+                    throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+                }
+            }
+        }
+
+        private boolean hasNext() {
+            if (next == null) {
+                next = advance();
+            }
+            return next != null;
+        }
+
+        private Ban next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Ban ban = next;
+            next = null;
+            returnedTypeIndex = lastTypeIndex;
+            returnedPosition = lastPosition;
+            returnedSubject = lastSubject;
+            return ban;
+        }
+
+        /**
+         * Gets the cursor just after the last ban returned by {@link #next()}.
+         */
+        private String cursor() {
+            return returnedTypeIndex + ":" + returnedPosition + ":" + returnedSubject;
+        }
+
+        private Ban advance() {
+            while (typeIndex < ORDER.length) {
+                BanType banType = ORDER[typeIndex];
+                if (type == null || type == banType) {
+                    if (bans == null) {
+                        bans = anchor == null ? banService.backend().openCursor(banType.getCanaryType(), position) : resume(banType);
+                    }
+                    for (net.canarymod.bansystem.Ban ban = bans.next(); ban != null; ban = bans.next()) {
+                        position = bans.getPosition();
+                        if (matches(ban, now)) {
+                            lastTypeIndex = typeIndex;
+                            lastPosition = position;
+                            lastSubject = subject(ban, banType);
+                            return banService.wrap(ban, banType);
+                        }
+                    }
+                }
+                close();
+                typeIndex++;
+                position = 0;
+                anchor = null;
+            }
+            return null;
+        }
+
+        /**
+         * Opens the backend just after the ban the cursor was taken at, which
+         * has moved back if bans before it were pardoned since.
+         */
+        private BanCursor resume(BanType banType) {
+            BanCursor cursor = banService.backend().openCursor(banType.getCanaryType(), position - 1);
+            net.canarymod.bansystem.Ban ban = cursor.next();
+            if (ban != null && anchor.equals(subject(ban, banType))) {
+                return cursor;
+            }
+            cursor.close();
+            cursor = banService.backend().openCursor(banType.getCanaryType(), 0);
+            try {
+                for (ban = cursor.next(); ban != null && cursor.getPosition() < position; ban = cursor.next()) {
+                    if (anchor.equals(subject(ban, banType))) {
+                        position = cursor.getPosition();
+                        break;
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+            return banService.backend().openCursor(banType.getCanaryType(), position);
+        }
+
+        private void close() {
+            if (bans != null) {
+                bans.close();
+                bans = null;
+            }
+        }
+    }
+}
@@ -23,37 +23,391 @@
  */
 package org.neptunepowered.lib.service;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import com.google.common.base.Optional;
-import net.canarymod.Canary;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Striped;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.common.net.InetAddresses;
 import net.canarymod.api.PlayerReference;
+import net.canarymod.logger.Logman;
 import org.neptunepowered.lib.ban.Ban;
 import org.neptunepowered.lib.ban.BanType;
+import org.neptunepowered.lib.ban.ImmutableBan;
+import org.neptunepowered.lib.service.ban.BanBatcher;
+import org.neptunepowered.lib.service.ban.BanChanges;
+import org.neptunepowered.lib.service.ban.BanCursor;
+import org.neptunepowered.lib.service.ban.BanEvent;
+import org.neptunepowered.lib.service.ban.BanEventBus;
+import org.neptunepowered.lib.service.ban.BanExpiryListener;
+import org.neptunepowered.lib.service.ban.BanIndex;
+import org.neptunepowered.lib.service.ban.BanJournal;
+import org.neptunepowered.lib.service.ban.BanResult;
+import org.neptunepowered.lib.service.ban.BanSearch;
+import org.neptunepowered.lib.service.ban.BanSnapshot;
+import org.neptunepowered.lib.service.ban.BanStore;
+import org.neptunepowered.lib.service.ban.CanaryBanStore;
+import org.neptunepowered.lib.service.ban.PlayerReferenceCache;
+import org.neptunepowered.lib.service.metrics.BanMetrics;
+import org.neptunepowered.lib.service.metrics.BanOperation;
+import org.neptunepowered.lib.service.metrics.MeteredBanStore;
+import org.neptunepowered.lib.service.replication.BanReplicator;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.InetAddress;
-import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Represents the service with which to ban users.
+ *
+ * <p>The service is thread-safe. Ban checks are answered from the
+ * {@link BanIndex}, without taking any locks, so they never wait on each
+ * other or on changes being made. Bans and pardons lock the player or
+ * address they are for, so that changes to the same one reach the backend
+ * and the index in the same order, while changes to others carry on.</p>
+ *
+ * <p>While the bans are loaded in the background, see {@link #setReadiness},
+ * ban checks are answered by a {@link ReadinessPolicy} rather than waiting
+ * for them. The default is to fail open, as failing closed refuses every
+ * login until the bans are loaded. Everything else waits for the bans to be
+ * loaded, rather than loading them again.</p>
  */
 public class BanService {
 
+    private static final Logman log = Logman.getLogman("Neptune");
+
+    private final BanIndex index = new BanIndex();
+    private final Object reloadLock = new Object();
+    private volatile BanJournal journal;
+    private final BanMetrics metrics = new BanMetrics();
+    private final BanEventBus events = new BanEventBus();
+    private volatile MeteredBanStore store = new MeteredBanStore(new CanaryBanStore(), metrics);
+    private volatile BanReplicator replicator;
+    private volatile PlayerReferenceCache playerCache = new PlayerReferenceCache(10000, 10, TimeUnit.MINUTES);
+    // Keyed by the lower case name and the UUID of players, and by the subject of IP bans
+    private final Striped<Lock> writeLocks = Striped.lock(64);
+    private volatile Future<?> readiness = null;
+    private volatile ReadinessPolicy readinessPolicy = ReadinessPolicy.FAIL_OPEN;
+    private final List<BanExpiryListener> expiryListeners = new CopyOnWriteArrayList<BanExpiryListener>();
+    private final BanBatcher batcher = new BanBatcher(new BanBatcher.Handler() {
+        @Override
+        public void apply(List<BanBatcher.Mutation> batch) {
+            applyBatch(batch);
+        }
+    });
+
+    public BanService() {
+        index.setPlayerResolver(playerCache);
+    }
+
+    /**
+     * Gets the backend bans are persisted to.
+     *
+     * @return The ban store
+     */
+    public BanStore getStore() {
+        return store.getStore();
+    }
+
+    /**
+     * Sets the backend bans are persisted to. The index is not reloaded from
+     * it, call {@link #reload()} to do so.
+     *
+     * @param store The ban store
+     */
+    public void setStore(BanStore store) {
+        this.store = new MeteredBanStore(checkNotNull(store, "store"), metrics);
+    }
+
+    /**
+     * Gets the replicator the bans and pardons made through this service are
+     * sent to other servers by.
+     *
+     * @return The replicator, if replication has been started
+     */
+    public Optional<BanReplicator> getReplicator() {
+        return Optional.fromNullable(replicator);
+    }
+
+    /**
+     * Sets the replicator, which is done by {@link BanReplicator#start()}.
+     *
+     * @param replicator The replicator, or null to stop replicating
+     */
+    public void setReplicator(BanReplicator replicator) {
+        this.replicator = replicator;
+    }
+
+    /**
+     * Gets the cache the players bans apply to are resolved through.
+     *
+     * @return The player cache
+     */
+    public PlayerReferenceCache getPlayerCache() {
+        return playerCache;
+    }
+
+    /**
+     * Sets the cache the players bans apply to are resolved through, by the
+     * service and by the bans in its index.
+     *
+     * @param playerCache The player cache
+     */
+    public void setPlayerCache(PlayerReferenceCache playerCache) {
+        this.playerCache = checkNotNull(playerCache, "playerCache");
+        index.setPlayerResolver(playerCache);
+    }
+
+    /**
+     * Gets the store as used by the service, which counts the calls made to
+     * it.
+     */
+    BanStore backend() {
+        return store;
+    }
+
+    /**
+     * Gets the bus the bans, pardons and expiries made through this service
+     * are published to.
+     *
+     * @return The event bus
+     */
+    public BanEventBus getEvents() {
+        return events;
+    }
+
+    /**
+     * Gets the metrics recorded for the operations of this service.
+     *
+     * @return The metrics
+     */
+    public BanMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Gets the in-memory index used to answer ban checks.
+     *
+     * @return The ban index
+     */
+    public BanIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Sets the limits at which the mutations of bulk operations are committed.
+     *
+     * @param maxBatchSize The largest number of bans in a batch
+     * @param maxDelayMillis The longest a ban waits for its batch to fill
+     */
+    public void setBatchLimits(int maxBatchSize, long maxDelayMillis) {
+        batcher.setLimits(maxBatchSize, maxDelayMillis);
+    }
+
+    /**
+     * Starts removing temporary bans, from both the index and the backend, as
+     * soon as they expire.
+     *
+     * @param tickMillis The resolution of expiry, in milliseconds
+     * @param wheelSize The number of buckets of the timing wheel
+     */
+    public void startExpiry(long tickMillis, int wheelSize) {
+        index.startExpiry(tickMillis, wheelSize, new BanIndex.ExpiryHandler() {
+            @Override
+            public void onExpired(List<Ban> bans) {
+                expired(bans);
+            }
+        });
+    }
+
+    /**
+     * Stops removing temporary bans as they expire.
+     */
+    public void stopExpiry() {
+        index.stopExpiry();
+    }
+
+    /**
+     * Registers a listener to be notified when temporary bans expire.
+     *
+     * @param listener The listener
+     */
+    public void addExpiryListener(BanExpiryListener listener) {
+        expiryListeners.add(listener);
+    }
+
+    /**
+     * Unregisters an expiry listener.
+     *
+     * @param listener The listener
+     */
+    public void removeExpiryListener(BanExpiryListener listener) {
+        expiryListeners.remove(listener);
+    }
+
+    /**
+     * Loads the ban index from a snapshot, so that ban checks can be answered
+     * before the backend has been read. It should be followed by a
+     * {@link #reload()}, to pick up whatever changed since it was written.
+     *
+     * @param file The snapshot file
+     * @return True if the snapshot was loaded, false otherwise
+     */
+    public boolean loadSnapshot(File file) {
+        if (!file.isFile()) {
+            return false;
+        }
+        try {
+            BanSnapshot snapshot = BanSnapshot.read(file);
+            synchronized (reloadLock) {
+                index.load(snapshot.getPlayerBans(), snapshot.getIpBans());
+            }
+            return true;
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable ban snapshot " + file, e);
+            return false;
+        }
+    }
+
+    /**
+     * Writes a snapshot of the ban index, if it has been loaded.
+     *
+     * @param file The snapshot file
+     * @throws IOException If the snapshot could not be written
+     */
+    public void saveSnapshot(File file) throws IOException {
+        if (index.isLoaded()) {
+            index.writeSnapshot(file);
+        }
+    }
+
+    /**
+     * Opens the ban journal, first replaying whatever it holds into the ban
+     * index. From then on bans and pardons only return once they have been
+     * written to the journal, and {@link #saveSnapshot} compacts it.
+     *
+     * @param file The journal file
+     * @throws IOException If the journal could not be opened
+     */
+    public void openJournal(File file) throws IOException {
+        synchronized (reloadLock) {
+            closeJournal();
+            journal = BanJournal.open(file, index);
+            index.setJournal(journal);
+        }
+    }
+
+    /**
+     * Closes the ban journal, if it is open.
+     */
+    public void closeJournal() {
+        synchronized (reloadLock) {
+            if (journal == null) {
+                return;
+            }
+            index.setJournal(null);
+            try {
+                journal.close();
+            } catch (IOException e) {
+                log.warn("Failed to close the ban journal", e);
+            }
+            journal = null;
+        }
+    }
+
+    /**
+     * Gets the size of the ban journal, which grows until the next
+     * {@link #saveSnapshot snapshot}.
+     *
+     * @return The size in bytes, or 0 if there is no journal
+     */
+    public long getJournalSize() {
+        BanJournal journal = this.journal;
+        return journal == null ? 0 : journal.getSize();
+    }
+
+    /**
+     * Reloads the ban index from the backend.
+     *
+     * <p>This only needs to be called if bans have been changed without going
+     * through this service, as all bans and pardons are written through. If
+     * the index is already loaded it is reconciled with the backend in place,
+     * so ban checks carry on being answered meanwhile.</p>
+     *
+     * <p>IP bans that are not stored as an address literal are skipped, as
+     * they could not be matched without DNS lookups.</p>
+     */
+    public void reload() {
+        long start = metrics.start();
+        try {
+            synchronized (reloadLock) {
+                boolean reconcile = index.isLoaded();
+                if (reconcile) {
+                    index.beginReconcile();
+                }
+                Collection<Ban.Player> playerBans = new ArrayList<Ban.Player>();
+                BanCursor cursor = store.openCursor(net.canarymod.bansystem.BanType.UUID, 0);
+                try {
+                    for (net.canarymod.bansystem.Ban ban = cursor.next(); ban != null; ban = cursor.next()) {
+                        if (ban.getSubject() != null) {
+                            playerBans.add(new CanaryPlayerBan(ban));
+                        }
+                    }
+                } finally {
+                    cursor.close();
+                }
+                Collection<Ban.Ip> ipBans = new ArrayList<Ban.Ip>();
+                cursor = store.openCursor(net.canarymod.bansystem.BanType.IP, 0);
+                try {
+                    for (net.canarymod.bansystem.Ban ban = cursor.next(); ban != null; ban = cursor.next()) {
+                        CanaryIpBan ipBan = new CanaryIpBan(ban);
+                        if (ipBan.getAddress() != null) {
+                            ipBans.add(ipBan);
+                        }
+                    }
+                } finally {
+                    cursor.close();
+                }
+                if (reconcile) {
+                    index.reconcile(playerBans, ipBans);
+                } else {
+                    index.load(playerBans, ipBans);
+                }
+            }
+        } finally {
+            metrics.record(BanOperation.RELOAD, start);
+        }
+    }
+
     /**
      * Gets all bans registered.
      *
      * @return All registered bans
      */
     public Collection<Ban> getBans() {
-        Collection<Ban> bans = Collections.EMPTY_LIST;
-        for (net.canarymod.bansystem.Ban ban : Canary.bans().getAllBans(net.canarymod.bansystem.BanType.UUID)) {
-            bans.add(new CanaryPlayerBan(ban));
+        long start = metrics.start();
+        try {
+            Collection<Ban> bans = new ArrayList<Ban>();
+            readPlayerBans(bans);
+            readIpBans(bans);
+            return bans;
+        } finally {
+            metrics.record(BanOperation.GET_BANS, start);
         }
-        for (net.canarymod.bansystem.Ban ban : Canary.bans().getAllBans(net.canarymod.bansystem.BanType.IP)) {
-            bans.add(new CanaryIpBan(ban));
-        }
-        return bans;
     }
 
     /**
@@ -62,11 +416,14 @@ public class BanService {
      * @return All registered player bans
      */
     public Collection<Ban.Player> getPlayerBans() {
-        Collection<Ban.Player> playerBans = Collections.EMPTY_LIST;
-        for (net.canarymod.bansystem.Ban ban : Canary.bans().getAllBans(net.canarymod.bansystem.BanType.UUID)) {
-            playerBans.add(new CanaryPlayerBan(ban));
+        long start = metrics.start();
+        try {
+            Collection<Ban.Player> playerBans = new ArrayList<Ban.Player>();
+            readPlayerBans(playerBans);
+            return playerBans;
+        } finally {
+            metrics.record(BanOperation.GET_BANS, start);
         }
-        return playerBans;
     }
 
     /**
@@ -75,11 +432,86 @@ public class BanService {
      * @return All registered IP bans
      */
     public Collection<Ban.Ip> getIpBans() {
-        Collection<Ban.Ip> ipBans = Collections.EMPTY_LIST;
-        for (net.canarymod.bansystem.Ban ban : Canary.bans().getAllBans(net.canarymod.bansystem.BanType.IP)) {
-            ipBans.add(new CanaryIpBan(ban));
+        long start = metrics.start();
+        try {
+            Collection<Ban.Ip> ipBans = new ArrayList<Ban.Ip>();
+            readIpBans(ipBans);
+            return ipBans;
+        } finally {
+            metrics.record(BanOperation.GET_BANS, start);
+        }
+    }
+
+    private void readPlayerBans(Collection<? super Ban.Player> bans) {
+        BanCursor cursor = store.openCursor(net.canarymod.bansystem.BanType.UUID, 0);
+        try {
+            for (net.canarymod.bansystem.Ban ban = cursor.next(); ban != null; ban = cursor.next()) {
+                bans.add(new CanaryPlayerBan(ban));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void readIpBans(Collection<? super Ban.Ip> bans) {
+        BanCursor cursor = store.openCursor(net.canarymod.bansystem.BanType.IP, 0);
+        try {
+            for (net.canarymod.bansystem.Ban ban = cursor.next(); ban != null; ban = cursor.next()) {
+                bans.add(new CanaryIpBan(ban));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Creates a query over the registered bans, which can be filtered, paged
+     * through and counted without loading every ban.
+     *
+     * @return A new query
+     */
+    public BanQuery query() {
+        return new BanQuery(this);
+    }
+
+    /**
+     * Creates a search of the active bans, by when they were issued or
+     * expire, by the words of their reason and by issuer, answered from the
+     * bans held in memory.
+     *
+     * @return A new search
+     */
+    public BanSearch search() {
+        return getLoadedIndex().search();
+    }
+
+    /**
+     * Gets the version of the bans, which increases with every change made
+     * to them.
+     *
+     * @return The version
+     * @see #getBansSince(long)
+     */
+    public long getVersion() {
+        return getLoadedIndex().getChangeVersion();
+    }
+
+    /**
+     * Gets the bans made, pardoned and expired since a version, so a mirror
+     * of the bans can be kept in sync without listing all of them each time.
+     * A mirror too far behind is given every active ban instead.
+     *
+     * @param version The version the mirror is up to date with, or 0 if it
+     *     has no bans yet
+     * @return The changes, and the version they bring the mirror up to
+     */
+    public BanChanges getBansSince(long version) {
+        long start = metrics.start();
+        try {
+            return getLoadedIndex().getChangesSince(version);
+        } finally {
+            metrics.record(BanOperation.GET_BANS, start);
         }
-        return ipBans;
     }
 
     /**
@@ -89,17 +521,33 @@ public class BanService {
      * @return True if the user has any bans, false otherwise
      */
     public boolean isBanned(PlayerReference player) {
-        return Canary.bans().isBanned(player.getName());
+        if (isWarming()) {
+            return readinessPolicy == ReadinessPolicy.FAIL_CLOSED;
+        }
+        long start = metrics.start();
+        try {
+            return getLoadedIndex().isPlayerBanned(player.getUUID(), player.getName());
+        } finally {
+            metrics.record(BanOperation.IS_BANNED, start);
+        }
     }
 
     /**
-     * Checks if an IP has any bans.
+     * Checks if an IP has any bans, including bans on a range containing it.
      *
      * @param address The address
      * @return True if the address has any bans, false otherwise
      */
     public boolean isBanned(InetAddress address) {
-        return Canary.bans().isIpBanned(address.getCanonicalHostName());
+        if (isWarming()) {
+            return readinessPolicy == ReadinessPolicy.FAIL_CLOSED;
+        }
+        long start = metrics.start();
+        try {
+            return getLoadedIndex().isIpBanned(address);
+        } finally {
+            metrics.record(BanOperation.IS_BANNED, start);
+        }
     }
 
     /**
@@ -108,7 +556,23 @@ public class BanService {
      * @param player The player
      */
     public void pardon(PlayerReference player) {
-        Canary.bans().unban(player);
+        long start = metrics.start();
+        try {
+            getLoadedIndex();
+            Ban ban = ImmutableBan.player(player.getName(), player.getUUID(), null, System.currentTimeMillis(), -1);
+            long version;
+            List<Lock> locks = lock(Collections.singletonList(ban));
+            try {
+                store.unban(player);
+                version = commit(stagePardon(new BanIndex.Batch(), ban), ban, true);
+                events.publish(BanEvent.Type.PARDON, ban, false);
+            } finally {
+                unlock(locks);
+            }
+            sync(version, "a pardon");
+        } finally {
+            metrics.record(BanOperation.PARDON, start);
+        }
     }
 
     /**
@@ -117,7 +581,23 @@ public class BanService {
      * @param address The IP address
      */
     public void pardon(InetAddress address) {
-        Canary.bans().unban(address.getCanonicalHostName());
+        long start = metrics.start();
+        try {
+            getLoadedIndex();
+            Ban ban = ImmutableBan.ip(address, address.getAddress().length * 8, null, System.currentTimeMillis(), -1);
+            long version;
+            List<Lock> locks = lock(Collections.singletonList(ban));
+            try {
+                store.unban(InetAddresses.toAddrString(address));
+                version = commit(stagePardon(new BanIndex.Batch(), ban), ban, true);
+                events.publish(BanEvent.Type.PARDON, ban, false);
+            } finally {
+                unlock(locks);
+            }
+            sync(version, "a pardon");
+        } finally {
+            metrics.record(BanOperation.PARDON, start);
+        }
     }
 
     /**
@@ -126,35 +606,445 @@ public class BanService {
      * @param ban The ban
      */
     public void pardon(Ban ban) {
+        long start = metrics.start();
+        try {
+            getLoadedIndex();
+            long version;
+            List<Lock> locks = lock(Collections.singletonList(ban));
+            try {
+                store.unban(toCanarySubject(ban));
+                version = commit(stagePardon(new BanIndex.Batch(), ban), ban, true);
+                events.publish(BanEvent.Type.PARDON, ban, false);
+            } finally {
+                unlock(locks);
+            }
+            sync(version, "a pardon");
+        } finally {
+            metrics.record(BanOperation.PARDON, start);
+        }
+    }
+
+    /**
+     * Pardons many bans, coalescing them with any other bulk operations into
+     * batches that are each applied in a single pass.
+     *
+     * @param bans The bans
+     * @return The result of each pardon, in the order the bans were given
+     */
+    public List<BanResult> pardonAll(Collection<? extends Ban> bans) {
+        long start = metrics.start();
+        try {
+            getLoadedIndex();
+            return batcher.submit(bans, true);
+        } finally {
+            metrics.record(BanOperation.PARDON_ALL, start);
+        }
+    }
+
+    /**
+     * Adds a ban.
+     *
+     * @param ban The ban to put on the user
+     */
+    public void ban(Ban ban) {
+        long start = metrics.start();
+        try {
+            getLoadedIndex();
+            long version;
+            List<Lock> locks = lock(Collections.singletonList(ban));
+            try {
+                store.issueBan(toCanaryBan(ban));
+                version = commit(stageBan(new BanIndex.Batch(), ban), ban, false);
+                events.publish(BanEvent.Type.BAN, ban, false);
+            } finally {
+                unlock(locks);
+            }
+            sync(version, "a ban");
+        } finally {
+            metrics.record(BanOperation.BAN, start);
+        }
+    }
+
+    /**
+     * Adds many bans, coalescing them with any other bulk operations into
+     * batches that are each applied in a single pass.
+     *
+     * @param bans The bans to add
+     * @return The result of each ban, in the order they were given
+     */
+    public List<BanResult> banAll(Collection<? extends Ban> bans) {
+        long start = metrics.start();
+        try {
+            getLoadedIndex();
+            return batcher.submit(bans, false);
+        } finally {
+            metrics.record(BanOperation.BAN_ALL, start);
+        }
+    }
+
+    private void applyBatch(List<BanBatcher.Mutation> batch) {
+        List<Ban> bans = new ArrayList<Ban>(batch.size());
+        for (BanBatcher.Mutation mutation : batch) {
+            bans.add(mutation.getBan());
+        }
+        long version;
+        List<Lock> locks = lock(bans);
+        try {
+            version = applyBatch(batch, bans);
+        } finally {
+            unlock(locks);
+        }
+        sync(version, "a batch of " + batch.size() + " bans and pardons");
+    }
+
+    private long applyBatch(List<BanBatcher.Mutation> batch, List<Ban> bans) {
+        BanIndex.Batch changes = new BanIndex.Batch();
+        List<BanBatcher.Mutation> committed = new ArrayList<BanBatcher.Mutation>(batch.size());
+        // Each run of bans, or of pardons, goes to the store in one call
+        int from = 0;
+        while (from < batch.size()) {
+            boolean pardon = batch.get(from).isPardon();
+            int to = from + 1;
+            while (to < batch.size() && batch.get(to).isPardon() == pardon) {
+                to++;
+            }
+            List<BanBatcher.Mutation> run = batch.subList(from, to);
+            try {
+                if (pardon) {
+                    List<String> subjects = new ArrayList<String>(run.size());
+                    for (BanBatcher.Mutation mutation : run) {
+                        subjects.add(toCanarySubject(mutation.getBan()));
+                    }
+                    store.unbanAll(subjects);
+                } else {
+                    List<net.canarymod.bansystem.Ban> issued = new ArrayList<net.canarymod.bansystem.Ban>(run.size());
+                    for (BanBatcher.Mutation mutation : run) {
+                        issued.add(toCanaryBan(mutation.getBan()));
+                    }
+                    store.issueBans(issued);
+                }
+            } catch (RuntimeException e) {
+                // Go through the run again one at a time, to find which failed
+                for (BanBatcher.Mutation mutation : run) {
+                    try {
+                        if (pardon) {
+                            store.unban(toCanarySubject(mutation.getBan()));
+                        } else {
+                            store.issueBan(toCanaryBan(mutation.getBan()));
+                        }
+                    } catch (RuntimeException e1) {
+                        mutation.fail(e1);
+                    }
+                }
+            }
+            for (BanBatcher.Mutation mutation : run) {
+                if (!mutation.isFailed()) {
+                    committed.add(mutation);
+                    if (pardon) {
+                        stagePardon(changes, mutation.getBan());
+                    } else {
+                        stageBan(changes, mutation.getBan());
+                    }
+                }
+            }
+            from = to;
+        }
+        BanReplicator replicator = this.replicator;
+        long version = replicator != null ? replicator.commit(changes, committed) : index.apply(changes);
+        if (events.isActive()) {
+            for (BanBatcher.Mutation mutation : committed) {
+                events.publish(mutation.isPardon() ? BanEvent.Type.PARDON : BanEvent.Type.BAN, mutation.getBan(), false);
+            }
+        }
+        return version;
+    }
+
+    /**
+     * Applies a ban or pardon made through this service to the index, and
+     * replicates it if replication has been started.
+     */
+    private long commit(BanIndex.Batch changes, Ban ban, boolean pardon) {
+        BanReplicator replicator = this.replicator;
+        return replicator != null ? replicator.commit(changes, ban, pardon) : index.apply(changes);
+    }
+
+    /**
+     * Applies bans and pardons made on another server, which are not
+     * replicated again.
+     *
+     * <p>These are ordered by the replicator, which calls this while holding
+     * its lock. It must take the locks of the players and addresses first,
+     * through {@link #lockSubjects}, in the same order as bans made through
+     * this service do, so a local ban cannot be written to the store between
+     * a replicated pardon being written and applied, or the reverse.</p>
+     *
+     * @param bans The bans
+     * @param pardons The bans that were pardoned
+     * @param writeThrough True to also write the changes to the store, if
+     *     the servers do not share one
+     * @see BanReplicator
+     */
+    public void applyReplicated(List<Ban> bans, List<Ban> pardons, boolean writeThrough) {
+        BanIndex.Batch changes = new BanIndex.Batch();
+        for (Ban ban : bans) {
+            stageBan(changes, ban);
+        }
+        for (Ban ban : pardons) {
+            stagePardon(changes, ban);
+        }
+        index.apply(changes);
+        if (events.isActive()) {
+            for (Ban ban : bans) {
+                events.publish(BanEvent.Type.BAN, ban, true);
+            }
+            for (Ban ban : pardons) {
+                events.publish(BanEvent.Type.PARDON, ban, true);
+            }
+        }
+        if (writeThrough) {
+            List<net.canarymod.bansystem.Ban> issued = new ArrayList<net.canarymod.bansystem.Ban>(bans.size());
+            for (Ban ban : bans) {
+                issued.add(toCanaryBan(ban));
+            }
+            List<String> subjects = new ArrayList<String>(pardons.size());
+            for (Ban ban : pardons) {
+                subjects.add(toCanarySubject(ban));
+            }
+            if (!issued.isEmpty()) {
+                store.issueBans(issued);
+            }
+            if (!subjects.isEmpty()) {
+                store.unbanAll(subjects);
+            }
+        }
+    }
+
+    /**
+     * Waits until a committed change is in the journal. A failure is only
+     * logged, as the change is already in the backend and the index, so it
+     * has not failed, only not been journaled.
+     */
+    private void sync(long version, String change) {
+        try {
+            index.sync(version);
+        } catch (IOException e) {
+            log.warn("Failed to journal " + change + ", which was still applied", e);
+        }
+    }
+
+    private void expired(List<Ban> bans) {
+        List<Lock> locks = lock(bans);
+        try {
+            List<String> subjects = new ArrayList<String>(bans.size());
+            for (Ban ban : bans) {
+                // Unless banned again since, which would be unbanned along with it
+                if (!index.isIndexed(ban)) {
+                    subjects.add(toCanarySubject(ban));
+                }
+            }
+            if (!subjects.isEmpty()) {
+                store.unbanAll(subjects);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to remove expired bans from the backend", e);
+        } finally {
+            unlock(locks);
+        }
+        for (Ban ban : bans) {
+            events.publish(BanEvent.Type.EXPIRE, ban, false);
+        }
+        for (BanExpiryListener listener : expiryListeners) {
+            for (Ban ban : bans) {
+                try {
+                    listener.onExpire(ban);
+                } catch (RuntimeException e) {
+                    log.warn("Ban expiry listener " + listener + " failed", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Locks the players and addresses of bans against bans and pardons made
+     * through this service, for changes from other servers to be applied
+     * under. They have to be taken before the lock of the replicator.
+     *
+     * @param bans The bans
+     * @return The locks, to pass to {@link #unlockSubjects}
+     */
+    public List<Lock> lockSubjects(List<? extends Ban> bans) {
+        return lock(bans);
+    }
+
+    /**
+     * Unlocks the players and addresses locked by {@link #lockSubjects}.
+     *
+     * @param locks The locks
+     */
+    public void unlockSubjects(List<Lock> locks) {
+        unlock(locks);
+    }
+
+    /**
+     * Locks the players and addresses of bans, in an order shared by every
+     * caller so that they cannot deadlock.
+     */
+    private List<Lock> lock(List<? extends Ban> bans) {
+        List<Object> keys = new ArrayList<Object>(bans.size() * 2);
+        for (Ban ban : bans) {
+            if (ban instanceof Ban.Player) {
+                Ban.Player playerBan = (Ban.Player) ban;
+                keys.add(playerBan.getName().toLowerCase(Locale.ENGLISH));
+                if (playerBan.getUniqueId().isPresent()) {
+                    keys.add(playerBan.getUniqueId().get());
+                }
+            } else if (ban != null) {
+                keys.add(toCanarySubject(ban));
+            }
+        }
+        List<Lock> locks = Lists.newArrayList(writeLocks.bulkGet(keys));
+        for (Lock lock : locks) {
+            lock.lock();
+        }
+        return locks;
+    }
+
+    private static void unlock(List<Lock> locks) {
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            locks.get(i).unlock();
+        }
+    }
+
+    private BanIndex.Batch stageBan(BanIndex.Batch batch, Ban ban) {
+        if (ban instanceof Ban.Ip) {
+            batch.putAddress((Ban.Ip) ban);
+        } else if (ban instanceof Ban.Player) {
+            Ban.Player playerBan = (Ban.Player) ban;
+            batch.putPlayer(playerBan);
+            playerCache.invalidate(playerBan.getName(), playerBan.getUniqueId().orNull());
+        }
+        return batch;
+    }
+
+    private BanIndex.Batch stagePardon(BanIndex.Batch batch, Ban ban) {
         switch (ban.getBanType()) {
             case PLAYER:
-                Canary.bans().unban(((Ban.Player) ban).getPlayer().getName());
+                Ban.Player playerBan = (Ban.Player) ban;
+                Optional<UUID> uniqueId = playerBan.getUniqueId();
+                if (uniqueId.isPresent()) {
+                    batch.removePlayer(uniqueId.get());
+                }
+                // Along with any ban made on their name before UUIDs were recorded
+                batch.removePlayer(playerBan.getName());
+                playerCache.invalidate(playerBan.getName(), uniqueId.orNull());
                 break;
             case IP:
-                Canary.bans().unban(((Ban.Ip) ban).getAddress().getCanonicalHostName());
+                Ban.Ip ipBan = (Ban.Ip) ban;
+                batch.removeAddress(ipBan.getAddress(), ipBan.getPrefixLength());
                 break;
         }
+        return batch;
     }
 
     /**
-     * Adds a ban.
-     *
-     * @param ban The ban to put on the user
+     * Gets the subject a ban is stored under by Canary.
      */
-    public void ban(Ban ban) {
+    private static String toCanarySubject(Ban ban) {
+        if (ban instanceof CanaryBan) {
+            net.canarymod.bansystem.Ban handle = ((CanaryBan) ban).getHandle();
+            return ban.getBanType() == BanType.IP ? handle.getIp() : handle.getSubject();
+        }
+        if (ban.getBanType() == BanType.IP) {
+            return toCanaryIp((Ban.Ip) ban);
+        }
+        return ((Ban.Player) ban).getName();
+    }
+
+    private static net.canarymod.bansystem.Ban toCanaryBan(Ban ban) {
         net.canarymod.bansystem.Ban cBan = new net.canarymod.bansystem.Ban();
-        cBan.setIssuedDate(ban.getStartDate().getTime());
+        cBan.setIssuedDate(ban.getStartMillis());
         cBan.setReason(ban.getReason());
         cBan.setBanType(ban.getBanType().getCanaryType());
-        if (ban.getExpirationDate().isPresent()) {
-            cBan.setExpiration(ban.getExpirationDate().get().getTime());
+        cBan.setExpiration(ban.getExpirationMillis());
+        if (ban.getIssuer().isPresent()) {
+            cBan.setBanningPlayer(ban.getIssuer().get());
         }
         if (ban instanceof Ban.Ip) {
-            cBan.setIp(((Ban.Ip) ban).getAddress().getCanonicalHostName());
+            cBan.setIp(toCanaryIp((Ban.Ip) ban));
         } else if (ban instanceof Ban.Player) {
-            cBan.setSubject(((Ban.Player) ban).getPlayer().getName());
+            Ban.Player playerBan = (Ban.Player) ban;
+            cBan.setSubject(playerBan.getName());
+            if (playerBan.getUniqueId().isPresent()) {
+                cBan.setUUID(playerBan.getUniqueId().get().toString());
+            }
+        }
+        return cBan;
+    }
+
+    /**
+     * Formats an IP ban the way it is stored by Canary, which is the address
+     * literal followed by the prefix length for bans on a range.
+     */
+    private static String toCanaryIp(Ban.Ip ban) {
+        String address = InetAddresses.toAddrString(ban.getAddress());
+        if (ban.getPrefixLength() == ban.getAddress().getAddress().length * 8) {
+            return address;
+        }
+        return address + "/" + ban.getPrefixLength();
+    }
+
+    Ban wrap(net.canarymod.bansystem.Ban ban, BanType type) {
+        if (type == BanType.IP) {
+            return new CanaryIpBan(ban);
+        }
+        return new CanaryPlayerBan(ban);
+    }
+
+    /**
+     * Sets the future that completes once the bans have been loaded in the
+     * background, and how ban checks are answered until then. Checks are
+     * answered from the bans once the future completes, even if loading
+     * them failed. Other calls wait for the future while the bans are not
+     * loaded, so the work it waits for must not make them.
+     *
+     * @param readiness The readiness, or null if the bans are loaded on
+     *     first use
+     * @param policy The policy while the bans are loaded
+     */
+    public void setReadiness(Future<?> readiness, ReadinessPolicy policy) {
+        this.readinessPolicy = checkNotNull(policy, "policy");
+        this.readiness = readiness;
+    }
+
+    /**
+     * Gets whether the bans are still being loaded in the background.
+     *
+     * @return True if ban checks are answered by the readiness policy
+     */
+    public boolean isWarming() {
+        Future<?> readiness = this.readiness;
+        return readiness != null && !readiness.isDone();
+    }
+
+    private BanIndex getLoadedIndex() {
+        Future<?> readiness = this.readiness;
+        if (readiness != null && !index.isLoaded()) {
+            try {
+                Uninterruptibles.getUninterruptibly(readiness);
+            } catch (ExecutionException e) {
+                // Loaded below instead, as on first use
+            } catch (CancellationException e) {
+                // Loaded below instead, as on first use
+            }
+        }
+        if (!index.isLoaded()) {
+            synchronized (reloadLock) {
+                if (!index.isLoaded()) {
+                    reload();
+                }
+            }
         }
-        Canary.bans().issueBan(cBan);
+        return index;
     }
 
     private class CanaryBan implements Ban {
@@ -180,6 +1070,11 @@ public class BanService {
             return new Date(ban.getIssuedDate());
         }
 
+        @Override
+        public long getStartMillis() {
+            return ban.getIssuedDate();
+        }
+
         @Override
         public Optional<Date> getExpirationDate() {
             if (ban.getExpiration() != -1) {
@@ -188,11 +1083,22 @@ public class BanService {
             return Optional.absent();
         }
 
+        @Override
+        public long getExpirationMillis() {
+            return ban.getExpiration();
+        }
+
         @Override
         public boolean isIndefinite() {
             return ban.getExpiration() == -1;
         }
 
+        @Override
+        public Optional<String> getIssuer() {
+            String issuer = ban.getBanningPlayer();
+            return issuer == null || issuer.isEmpty() ? Optional.<String>absent() : Optional.of(issuer);
+        }
+
         protected net.canarymod.bansystem.Ban getHandle() {
             return ban;
         }
@@ -200,29 +1106,74 @@ public class BanService {
 
     private class CanaryIpBan extends CanaryBan implements Ban.Ip {
 
+        private final InetAddress address;
+        private final int prefixLength;
+
         private CanaryIpBan(net.canarymod.bansystem.Ban ban) {
             super(ban);
+            // Parse the literal once, without ever falling back to a DNS lookup
+            String ip = ban.getIp() == null ? "" : ban.getIp();
+            int slash = ip.indexOf('/');
+            String literal = slash < 0 ? ip : ip.substring(0, slash);
+            if (InetAddresses.isInetAddress(literal)) {
+                this.address = InetAddresses.forString(literal);
+                int width = this.address.getAddress().length * 8;
+                this.prefixLength = slash < 0 ? width : parsePrefixLength(ip.substring(slash + 1), width);
+            } else {
+                this.address = null;
+                this.prefixLength = 0;
+            }
         }
 
         @Override
         public InetAddress getAddress() {
+            return address;
+        }
+
+        @Override
+        public int getPrefixLength() {
+            return prefixLength;
+        }
+
+        private int parsePrefixLength(String prefixLength, int width) {
             try {
-                return InetAddress.getByName(getHandle().getIp());
-            } catch (UnknownHostException e) {
-                return null;
+                return Math.max(0, Math.min(width, Integer.parseInt(prefixLength)));
+            } catch (NumberFormatException e) {
+                return width;
             }
         }
     }
 
     private class CanaryPlayerBan extends CanaryBan implements Ban.Player {
 
+        private final Optional<UUID> uniqueId;
+
         private CanaryPlayerBan(net.canarymod.bansystem.Ban ban) {
             super(ban);
+            Optional<UUID> uniqueId = Optional.absent();
+            if (ban.getUUID() != null) {
+                try {
+                    uniqueId = Optional.of(UUID.fromString(ban.getUUID()));
+                } catch (IllegalArgumentException e) {
+                    // Bans from before UUIDs were recorded are left to match by name
+                }
+            }
+            this.uniqueId = uniqueId;
+        }
+
+        @Override
+        public String getName() {
+            return getHandle().getSubject();
+        }
+
+        @Override
+        public Optional<UUID> getUniqueId() {
+            return uniqueId;
         }
 
         @Override
         public PlayerReference getPlayer() {
-            return Canary.getServer().getPlayer(getHandle().getBanningPlayer());
+            return playerCache.resolve(getName(), uniqueId.orNull());
         }
     }
 }
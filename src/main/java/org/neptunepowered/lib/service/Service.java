@@ -23,11 +23,76 @@
  */
 package org.neptunepowered.lib.service;
 
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.neptunepowered.lib.service.flood.FloodDetector;
+import org.neptunepowered.lib.service.metrics.BanMetrics;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Holds the services of Neptune, which are created through a
+ * {@link ServiceRegistry} when first needed.
+ */
 public class Service {
 
-    private BanService banService = new BanService();
+    private final ServiceRegistry registry = new ServiceRegistry();
+    private volatile AsyncBanService asyncBanService;
+    private volatile FloodDetector floodDetector;
+
+    public Service() {
+        registry.register(BanService.class, new Callable<BanService>() {
+            @Override
+            public BanService call() {
+                return new BanService();
+            }
+        });
+    }
+
+    public ServiceRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Gets a future completed once the services Neptune warms up when it is
+     * enabled are ready, such as the ban index.
+     *
+     * @return The readiness of the services
+     */
+    public ListenableFuture<Void> getReadiness() {
+        return registry.getReadiness();
+    }
 
     public BanService getBanService() {
-        return banService;
+        return registry.get(BanService.class);
+    }
+
+    public BanMetrics getBanMetrics() {
+        return getBanService().getMetrics();
+    }
+
+    public AsyncBanService getAsyncBanService() {
+        checkState(asyncBanService != null, "The asynchronous ban service is only available while Neptune is enabled");
+        return asyncBanService;
+    }
+
+    public void setAsyncBanService(AsyncBanService asyncBanService) {
+        this.asyncBanService = asyncBanService;
+    }
+
+    /**
+     * Gets the detector every incoming connection should be passed to, if
+     * flood detection is enabled.
+     *
+     * @return The flood detector or {@link Optional#absent()}
+     */
+    public Optional<FloodDetector> getFloodDetector() {
+        return Optional.fromNullable(floodDetector);
+    }
+
+    public void setFloodDetector(FloodDetector floodDetector) {
+        this.floodDetector = floodDetector;
     }
 }
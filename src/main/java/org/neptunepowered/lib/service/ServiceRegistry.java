@@ -0,0 +1,247 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A registry of services that are only created when first needed, or all
+ * at once in parallel.
+ *
+ * <p>A service is created by whichever comes first: a {@link #get} of it,
+ * which creates it on the calling thread, or {@link #start}, which creates
+ * every service that has not been yet on an executor. Either way it is only
+ * created once, and anyone else asking for it waits for that. How long each
+ * service took to create is recorded.</p>
+ */
+public class ServiceRegistry {
+
+    private final Map<Class<?>, Registration<?>> registrations = new LinkedHashMap<Class<?>, Registration<?>>();
+    private volatile ListenableFuture<Void> readiness = Futures.immediateFuture(null);
+
+    /**
+     * Registers a service, replacing any registered for the same type. The
+     * service is created anew when next needed.
+     *
+     * @param type The type the service is looked up by
+     * @param initializer Creates the service
+     * @param <T> The type of the service
+     * @return This registry
+     */
+    public synchronized <T> ServiceRegistry register(Class<T> type, Callable<? extends T> initializer) {
+        registrations.put(checkNotNull(type, "type"), new Registration<T>(type, checkNotNull(initializer, "initializer")));
+        return this;
+    }
+
+    /**
+     * Gets a service, creating it on this thread if it has not been, or
+     * waiting for it if it is being created elsewhere.
+     *
+     * @param type The type of the service
+     * @param <T> The type of the service
+     * @return The service
+     * @throws IllegalArgumentException If no such service is registered
+     * @throws UncheckedExecutionException If the service could not be created
+     */
+    public <T> T get(Class<T> type) {
+        Registration<T> registration = registration(type);
+        registration.initialize();
+        return Futures.getUnchecked(registration.future);
+    }
+
+    /**
+     * Gets a service if it has been created, without creating or waiting for
+     * it.
+     *
+     * @param type The type of the service
+     * @param <T> The type of the service
+     * @return The service, or {@link Optional#absent()}
+     * @throws IllegalArgumentException If no such service is registered
+     */
+    public <T> Optional<T> getIfReady(Class<T> type) {
+        Registration<T> registration = registration(type);
+        if (!registration.future.isDone()) {
+            return Optional.absent();
+        }
+        try {
+            return Optional.of(registration.future.get());
+        } catch (ExecutionException e) {
+            return Optional.absent();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.absent();
+        }
+    }
+
+    /**
+     * Creates every registered service that has not been created yet, in
+     * parallel on the given executor. The readiness of the registry is
+     * replaced by the readiness of these services.
+     *
+     * @param executor The executor
+     * @return The {@link #getReadiness() readiness} of the registry
+     */
+    public ListenableFuture<Void> start(Executor executor) {
+        List<Registration<?>> started;
+        synchronized (this) {
+            started = new ArrayList<Registration<?>>(registrations.values());
+        }
+        final List<ListenableFuture<?>> futures = new ArrayList<ListenableFuture<?>>(started.size());
+        for (final Registration<?> registration : started) {
+            futures.add(registration.future);
+            if (registration.claimed.get()) {
+                continue;
+            }
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        registration.initialize();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Create it on this thread instead
+                registration.initialize();
+            }
+        }
+        final SettableFuture<Void> readiness = SettableFuture.create();
+        this.readiness = readiness;
+        // Only ready once every service is done, even if one has failed already
+        Futures.successfulAsList(futures).addListener(new Runnable() {
+            @Override
+            public void run() {
+                for (ListenableFuture<?> future : futures) {
+                    try {
+                        Uninterruptibles.getUninterruptibly(future);
+                    } catch (ExecutionException e) {
+                        readiness.setException(e.getCause());
+                        return;
+                    }
+                }
+                readiness.set(null);
+            }
+        }, MoreExecutors.directExecutor());
+        return readiness;
+    }
+
+    /**
+     * Gets a future completed once every service created by the last
+     * {@link #start} has been created, or failed if any could not be. Until
+     * then it is already complete, as every service is created when first
+     * needed.
+     *
+     * @return The readiness of the registry
+     */
+    public ListenableFuture<Void> getReadiness() {
+        return readiness;
+    }
+
+    /**
+     * Gets whether every service created by the last {@link #start} has
+     * been created.
+     *
+     * @return True if the registry is ready
+     */
+    public boolean isReady() {
+        return readiness.isDone();
+    }
+
+    /**
+     * Gets how long each service that has been created took, in the order
+     * they were registered.
+     *
+     * @return The time in milliseconds, by service type
+     */
+    public synchronized Map<Class<?>, Long> getStartupMillis() {
+        ImmutableMap.Builder<Class<?>, Long> startup = ImmutableMap.builder();
+        for (Registration<?> registration : registrations.values()) {
+            if (registration.nanos >= 0) {
+                startup.put(registration.type, TimeUnit.NANOSECONDS.toMillis(registration.nanos));
+            }
+        }
+        return startup.build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized <T> Registration<T> registration(Class<T> type) {
+        Registration<?> registration = registrations.get(type);
+        checkArgument(registration != null, "No service registered for %s", type.getName());
+        return (Registration<T>) registration;
+    }
+
+    private static final class Registration<T> {
+
+        private final Class<T> type;
+        private final Callable<? extends T> initializer;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final SettableFuture<T> future = SettableFuture.create();
+        private volatile long nanos = -1;
+
+        private Registration(Class<T> type, Callable<? extends T> initializer) {
+            this.type = type;
+            this.initializer = initializer;
+        }
+
+        /**
+         * Creates the service, unless it is already being created.
+         */
+        private void initialize() {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                T service = initializer.call();
+                nanos = System.nanoTime() - start;
+                future.set(service);
+            } catch (Throwable t) {
+                nanos = System.nanoTime() - start;
+                future.setException(t);
+                Throwables.propagateIfInstanceOf(t, Error.class);
+            }
+        }
+    }
+}
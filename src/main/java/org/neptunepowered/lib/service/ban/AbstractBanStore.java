@@ -0,0 +1,83 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.ban;
+
+import net.canarymod.bansystem.Ban;
+import net.canarymod.bansystem.BanType;
+
+import java.util.Collection;
+
+/**
+ * A base for {@link BanStore}s that only support a ban at a time, which
+ * implements the batches and cursors on top of the single calls.
+ */
+public abstract class AbstractBanStore implements BanStore {
+
+    @Override
+    public BanCursor openCursor(BanType type, int position) {
+        return new ArrayBanCursor(getAllBans(type), position);
+    }
+
+    @Override
+    public void issueBans(Collection<Ban> bans) {
+        for (Ban ban : bans) {
+            issueBan(ban);
+        }
+    }
+
+    @Override
+    public void unbanAll(Collection<String> subjects) {
+        for (String subject : subjects) {
+            unban(subject);
+        }
+    }
+
+    /**
+     * A cursor over an array of bans.
+     */
+    protected static class ArrayBanCursor implements BanCursor {
+
+        private final Ban[] bans;
+        private int position;
+
+        public ArrayBanCursor(Ban[] bans, int position) {
+            this.bans = bans;
+            this.position = Math.max(0, position);
+        }
+
+        @Override
+        public Ban next() {
+            return position < bans.length ? bans[position++] : null;
+        }
+
+        @Override
+        public int getPosition() {
+            return position;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
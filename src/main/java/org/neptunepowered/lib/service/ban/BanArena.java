@@ -0,0 +1,552 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.ban;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Optional;
+import net.canarymod.api.PlayerReference;
+import org.neptunepowered.lib.ban.Ban;
+import org.neptunepowered.lib.ban.BanType;
+import org.neptunepowered.lib.ban.PlayerResolver;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Holds bans outside of the Java heap, as fixed-width records in chunks of
+ * direct memory, and hands out views of them that implement {@link Ban}.
+ *
+ * <p>Each ban takes a {@link #RECORD_SIZE} byte record, plus a view of
+ * {@link #VIEW_SIZE} bytes on the heap. Reasons and issuers are kept once
+ * each in a table of strings shared by every record, and so are names that
+ * do not fit in a record. Chunks are only added once no record is free to
+ * be reused.</p>
+ *
+ * <p>The record of a {@link #free freed} ban is left as it is until the
+ * garbage collector finds its view unreachable, and only then reused. So a
+ * view stays valid wherever it is still held, such as by lookups in flight
+ * or by listeners, and a reader can never see a record that is being
+ * reused for another ban, without having to check afterwards.</p>
+ *
+ * <p>Bans are added and freed under the lock of the arena, and views are
+ * read without locking.</p>
+ */
+public final class BanArena {
+
+    /**
+     * The size of a record, in bytes.
+     */
+    public static final int RECORD_SIZE = 64;
+
+    /**
+     * The size of a view on the heap, in bytes, with compressed pointers.
+     */
+    public static final int VIEW_SIZE = 24;
+
+    private static final int FLAGS = 0;
+    private static final int LENGTH = 1;
+    private static final int NEXT_FREE = 4;
+    private static final int MOST = 8;
+    private static final int LEAST = 16;
+    private static final int START = 24;
+    private static final int EXPIRATION = 32;
+    private static final int REASON = 40;
+    private static final int ISSUER = 44;
+    // The name of a player, or the address of an IP ban
+    private static final int SUBJECT = 48;
+    private static final int SUBJECT_SIZE = 16;
+
+    private static final byte IN_USE = 1;
+    private static final byte IP = 2;
+    private static final byte IPV6 = 4;
+    private static final byte HAS_UUID = 8;
+    // The name did not fit, and is in the string table instead
+    private static final byte NAME_STRING = 16;
+    // Freed, but the view may still be read
+    private static final byte FREED = 32;
+
+    private final int chunkShift;
+    private final int chunkMask;
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+    private int top = 0;
+    private int freeHead = -1;
+    private int size = 0;
+
+    private final Map<String, Integer> stringIds = new HashMap<String, Integer>();
+    private volatile String[] strings = new String[64];
+    private int[] references = new int[64];
+    private int[] freeStrings = new int[16];
+    private int freeStringCount = 0;
+    private int stringTop = 0;
+    private volatile PlayerResolver resolver = PlayerResolver.SERVER;
+
+    // The records of freed bans, held until their views are unreachable
+    private final ReferenceQueue<View> unreachable = new ReferenceQueue<View>();
+    private final Set<Retired> retired = new HashSet<Retired>();
+
+    /**
+     * Creates an arena.
+     *
+     * @param chunkRecords The number of records per chunk, rounded up to a
+     *     power of two
+     */
+    public BanArena(int chunkRecords) {
+        checkArgument(chunkRecords > 0 && chunkRecords <= 1 << 24, "Chunk size out of range: %s", chunkRecords);
+        this.chunkShift = 32 - Integer.numberOfLeadingZeros(chunkRecords - 1);
+        this.chunkMask = (1 << chunkShift) - 1;
+    }
+
+    /**
+     * Sets the resolver the player bans in the arena resolve their player
+     * through.
+     *
+     * @param resolver The resolver
+     */
+    public void setPlayerResolver(PlayerResolver resolver) {
+        this.resolver = checkNotNull(resolver, "resolver");
+    }
+
+    /**
+     * Copies a player ban into the arena.
+     *
+     * @param ban The ban
+     * @return A view of the copy
+     */
+    public synchronized Ban.Player add(Ban.Player ban) {
+        int slot = allocate();
+        ByteBuffer chunk = chunk(slot);
+        int offset = offset(slot);
+        byte flags = IN_USE;
+        if (ban.getUniqueId().isPresent()) {
+            flags |= HAS_UUID;
+            chunk.putLong(offset + MOST, ban.getUniqueId().get().getMostSignificantBits());
+            chunk.putLong(offset + LEAST, ban.getUniqueId().get().getLeastSignificantBits());
+        }
+        String name = ban.getName();
+        if (isInline(name)) {
+            for (int i = 0; i < name.length(); i++) {
+                chunk.put(offset + SUBJECT + i, (byte) name.charAt(i));
+            }
+            chunk.put(offset + LENGTH, (byte) name.length());
+        } else {
+            flags |= NAME_STRING;
+            chunk.putInt(offset + SUBJECT, intern(name));
+        }
+        writeCommon(chunk, offset, ban, flags);
+        return new PlayerView(this, slot);
+    }
+
+    /**
+     * Copies an IP ban into the arena.
+     *
+     * @param ban The ban
+     * @return A view of the copy
+     */
+    public synchronized Ban.Ip add(Ban.Ip ban) {
+        int slot = allocate();
+        ByteBuffer chunk = chunk(slot);
+        int offset = offset(slot);
+        byte[] address = ban.getAddress().getAddress();
+        for (int i = 0; i < address.length; i++) {
+            chunk.put(offset + SUBJECT + i, address[i]);
+        }
+        chunk.put(offset + LENGTH, (byte) ban.getPrefixLength());
+        writeCommon(chunk, offset, ban, (byte) (IN_USE | IP | (address.length == 16 ? IPV6 : 0)));
+        return new IpView(this, slot);
+    }
+
+    /**
+     * Frees the record of a ban, if it is a view of an arena. The record is
+     * reused once the view is unreachable, and the view can be read until
+     * then. Freeing a view twice does nothing.
+     *
+     * @param ban The ban
+     */
+    public static void free(Ban ban) {
+        if (ban instanceof View) {
+            View view = (View) ban;
+            view.arena.free(view);
+        }
+    }
+
+    /**
+     * Gets the number of bans held, not counting those that have been freed.
+     *
+     * @return The number of bans
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of records of freed bans, which are waiting for their
+     * views to become unreachable before they can be reused.
+     *
+     * @return The number of records
+     */
+    public synchronized int getRetiredCount() {
+        return retired.size();
+    }
+
+    /**
+     * Gets the number of records the arena has room for, before another
+     * chunk is needed.
+     *
+     * @return The number of records
+     */
+    public int getCapacity() {
+        return chunks.length << chunkShift;
+    }
+
+    /**
+     * Gets the memory taken by the chunks, outside of the heap.
+     *
+     * @return The size in bytes
+     */
+    public long getOffHeapBytes() {
+        return (long) getCapacity() * RECORD_SIZE;
+    }
+
+    /**
+     * Gets the number of distinct reasons, issuers and long names held.
+     *
+     * @return The number of strings
+     */
+    public synchronized int getStringCount() {
+        return stringIds.size();
+    }
+
+    private synchronized void free(View view) {
+        ByteBuffer chunk = chunk(view.slot);
+        int offset = offset(view.slot);
+        byte flags = chunk.get(offset + FLAGS);
+        if ((flags & FREED) != 0) {
+            return;
+        }
+        // Readers ignore the flag, the record is otherwise left for them as it is
+        chunk.put(offset + FLAGS, (byte) (flags | FREED));
+        retired.add(new Retired(view, unreachable));
+        size--;
+    }
+
+    /**
+     * Frees the records of the freed bans whose views have become
+     * unreachable, so that they can be reused.
+     */
+    private void reclaim() {
+        Reference<? extends View> reference;
+        while ((reference = unreachable.poll()) != null) {
+            Retired record = (Retired) reference;
+            retired.remove(record);
+            ByteBuffer chunk = chunk(record.slot);
+            int offset = offset(record.slot);
+            byte flags = chunk.get(offset + FLAGS);
+            release(chunk.getInt(offset + REASON));
+            release(chunk.getInt(offset + ISSUER));
+            if ((flags & NAME_STRING) != 0) {
+                release(chunk.getInt(offset + SUBJECT));
+            }
+            chunk.put(offset + FLAGS, (byte) 0);
+            chunk.putInt(offset + NEXT_FREE, freeHead);
+            freeHead = record.slot;
+        }
+    }
+
+    private void writeCommon(ByteBuffer chunk, int offset, Ban ban, byte flags) {
+        chunk.putLong(offset + START, ban.getStartMillis());
+        chunk.putLong(offset + EXPIRATION, ban.getExpirationMillis());
+        chunk.putInt(offset + REASON, ban.getReason() == null ? -1 : intern(ban.getReason()));
+        chunk.putInt(offset + ISSUER, ban.getIssuer().isPresent() ? intern(ban.getIssuer().get()) : -1);
+        chunk.put(offset + FLAGS, flags);
+    }
+
+    private int allocate() {
+        reclaim();
+        int slot;
+        if (freeHead >= 0) {
+            slot = freeHead;
+            freeHead = chunk(slot).getInt(offset(slot) + NEXT_FREE);
+        } else {
+            if (top == getCapacity()) {
+                if (top >= Integer.MAX_VALUE >> 1) {
+                    throw new IllegalStateException("The ban arena is full");
+                }
+                ByteBuffer[] chunks = Arrays.copyOf(this.chunks, this.chunks.length + 1);
+                chunks[chunks.length - 1] = ByteBuffer.allocateDirect(RECORD_SIZE << chunkShift).order(ByteOrder.nativeOrder());
+                this.chunks = chunks;
+            }
+            slot = top++;
+        }
+        size++;
+        return slot;
+    }
+
+    private int intern(String string) {
+        Integer id = stringIds.get(string);
+        if (id != null) {
+            references[id]++;
+            return id;
+        }
+        int next;
+        if (freeStringCount > 0) {
+            next = freeStrings[--freeStringCount];
+        } else {
+            next = stringTop++;
+            if (next == references.length) {
+                references = Arrays.copyOf(references, next * 2);
+                strings = Arrays.copyOf(strings, next * 2);
+            }
+        }
+        strings[next] = string;
+        references[next] = 1;
+        stringIds.put(string, next);
+        return next;
+    }
+
+    private void release(int id) {
+        if (id < 0 || --references[id] > 0) {
+            return;
+        }
+        stringIds.remove(strings[id]);
+        if (freeStringCount == freeStrings.length) {
+            freeStrings = Arrays.copyOf(freeStrings, freeStringCount * 2);
+        }
+        freeStrings[freeStringCount++] = id;
+    }
+
+    private ByteBuffer chunk(int slot) {
+        return chunks[slot >>> chunkShift];
+    }
+
+    private int offset(int slot) {
+        return (slot & chunkMask) * RECORD_SIZE;
+    }
+
+    private String string(int id) {
+        return id < 0 ? null : strings[id];
+    }
+
+    private static boolean isInline(String name) {
+        if (name.length() > SUBJECT_SIZE) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The record of a freed ban, which can be reused once its view is
+     * unreachable.
+     */
+    private static final class Retired extends PhantomReference<View> {
+
+        final int slot;
+
+        private Retired(View view, ReferenceQueue<View> queue) {
+            super(view, queue);
+            this.slot = view.slot;
+        }
+    }
+
+    /**
+     * A view of a record, which is not reused for as long as the view is
+     * reachable.
+     */
+    private abstract static class View implements Ban {
+
+        final BanArena arena;
+        final int slot;
+
+        private View(BanArena arena, int slot) {
+            this.arena = arena;
+            this.slot = slot;
+        }
+
+        final ByteBuffer chunk() {
+            return arena.chunk(slot);
+        }
+
+        final int offset() {
+            return arena.offset(slot);
+        }
+
+        @Override
+        public String getReason() {
+            return arena.string(chunk().getInt(offset() + REASON));
+        }
+
+        @Override
+        public Date getStartDate() {
+            return new Date(getStartMillis());
+        }
+
+        @Override
+        public long getStartMillis() {
+            return chunk().getLong(offset() + START);
+        }
+
+        @Override
+        public Optional<Date> getExpirationDate() {
+            long expiration = getExpirationMillis();
+            return expiration == -1 ? Optional.<Date>absent() : Optional.of(new Date(expiration));
+        }
+
+        @Override
+        public long getExpirationMillis() {
+            return chunk().getLong(offset() + EXPIRATION);
+        }
+
+        @Override
+        public boolean isIndefinite() {
+            return getExpirationMillis() == -1;
+        }
+
+        @Override
+        public Optional<String> getIssuer() {
+            return Optional.fromNullable(arena.string(chunk().getInt(offset() + ISSUER)));
+        }
+    }
+
+    private static final class PlayerView extends View implements Ban.Player {
+
+        private PlayerView(BanArena arena, int slot) {
+            super(arena, slot);
+        }
+
+        @Override
+        public BanType getBanType() {
+            return BanType.PLAYER;
+        }
+
+        @Override
+        public PlayerReference getPlayer() {
+            return arena.resolver.resolve(getName(), getUniqueId().orNull());
+        }
+
+        @Override
+        public String getName() {
+            ByteBuffer chunk = chunk();
+            int offset = offset();
+            if ((chunk.get(offset + FLAGS) & NAME_STRING) != 0) {
+                return arena.string(chunk.getInt(offset + SUBJECT));
+            }
+            char[] chars = new char[chunk.get(offset + LENGTH) & 0xFF];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = (char) chunk.get(offset + SUBJECT + i);
+            }
+            return new String(chars);
+        }
+
+        @Override
+        public Optional<UUID> getUniqueId() {
+            ByteBuffer chunk = chunk();
+            int offset = offset();
+            return (chunk.get(offset + FLAGS) & HAS_UUID) == 0 ? Optional.<UUID>absent()
+                    : Optional.of(new UUID(chunk.getLong(offset + MOST), chunk.getLong(offset + LEAST)));
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper("Player")
+                    .add("name", getName())
+                    .add("reason", getReason())
+                    .add("issuer", getIssuer().orNull())
+                    .add("start", getStartMillis())
+                    .add("expiration", getExpirationMillis())
+                    .toString();
+        }
+    }
+
+    private static final class IpView extends View implements Ban.Ip {
+
+        // Created on first use, and fits in the padding of the view
+        private volatile InetAddress address;
+
+        private IpView(BanArena arena, int slot) {
+            super(arena, slot);
+        }
+
+        @Override
+        public BanType getBanType() {
+            return BanType.IP;
+        }
+
+        @Override
+        public InetAddress getAddress() {
+            InetAddress address = this.address;
+            if (address != null) {
+                return address;
+            }
+            ByteBuffer chunk = chunk();
+            int offset = offset();
+            byte[] bytes = new byte[(chunk.get(offset + FLAGS) & IPV6) != 0 ? 16 : 4];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = chunk.get(offset + SUBJECT + i);
+            }
+            try {
+                address = InetAddress.getByAddress(bytes);
+            } catch (UnknownHostException e) {
+                throw new AssertionError(e);
+            }
+            // Racing readers create equal addresses, and any of them will do
+            this.address = address;
+            return address;
+        }
+
+        @Override
+        public int getPrefixLength() {
+            return chunk().get(offset() + LENGTH) & 0xFF;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper("Ip")
+                    .add("address", getAddress().getHostAddress() + "/" + getPrefixLength())
+                    .add("reason", getReason())
+                    .add("issuer", getIssuer().orNull())
+                    .add("start", getStartMillis())
+                    .add("expiration", getExpirationMillis())
+                    .toString();
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.ban;
+
+import org.neptunepowered.lib.ban.Ban;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Coalesces bans and pardons from concurrent bulk operations into batches.
+ *
+ * <p>This is a group commit without a background thread: one of the waiting
+ * callers becomes the leader, waits until either the batch is full or the
+ * oldest pending mutation has waited for the maximum delay, and then hands
+ * the batch to the {@link Handler} while everybody else waits for it.</p>
+ */
+public class BanBatcher {
+
+    private final Handler handler;
+    private final Lock lock = new ReentrantLock();
+    private final Condition filled = lock.newCondition();
+    private final Condition committed = lock.newCondition();
+    private final Queue<Mutation> pending = new ArrayDeque<Mutation>();
+    private long pendingSince;
+    private boolean committing = false;
+    private volatile int maxBatchSize = 500;
+    private volatile long maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(5);
+
+    public BanBatcher(Handler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Sets the limits at which a batch is committed.
+     *
+     * @param maxBatchSize The largest number of mutations in a batch
+     * @param maxDelayMillis The longest a mutation waits for a batch to fill
+     */
+    public void setLimits(int maxBatchSize, long maxDelayMillis) {
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxDelayMillis));
+    }
+
+    /**
+     * Submits bans, or pardons, and waits until all of them are committed.
+     *
+     * @param bans The bans
+     * @param pardon True to pardon the bans, false to add them
+     * @return The result of each ban, in the order they were given
+     */
+    public List<BanResult> submit(Collection<? extends Ban> bans, boolean pardon) {
+        List<Mutation> mutations = new ArrayList<Mutation>(bans.size());
+        lock.lock();
+        try {
+            if (pending.isEmpty()) {
+                pendingSince = System.nanoTime();
+            }
+            for (Ban ban : bans) {
+                Mutation mutation = new Mutation(ban, pardon);
+                mutations.add(mutation);
+                pending.add(mutation);
+            }
+            filled.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        boolean interrupted = false;
+        List<BanResult> results = new ArrayList<BanResult>(mutations.size());
+        for (Mutation mutation : mutations) {
+            while (mutation.result == null) {
+                try {
+                    commitOrWait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            results.add(mutation.result);
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return results;
+    }
+
+    private void commitOrWait() throws InterruptedException {
+        List<Mutation> batch;
+        lock.lock();
+        try {
+            if (committing || pending.isEmpty()) {
+                // Another caller is committing, possibly our mutations too
+                committed.awaitNanos(maxDelayNanos + 1);
+                return;
+            }
+            long remaining = pendingSince + maxDelayNanos - System.nanoTime();
+            while (!committing && pending.size() < maxBatchSize && remaining > 0) {
+                remaining = filled.awaitNanos(remaining);
+            }
+            if (committing || pending.isEmpty()) {
+                return;
+            }
+            committing = true;
+            batch = new ArrayList<Mutation>(Math.min(pending.size(), maxBatchSize));
+            while (batch.size() < maxBatchSize && !pending.isEmpty()) {
+                batch.add(pending.poll());
+            }
+            pendingSince = System.nanoTime();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            handler.apply(batch);
+            for (Mutation mutation : batch) {
+                mutation.complete(BanResult.success(mutation.ban));
+            }
+        } catch (Throwable t) {
+            for (Mutation mutation : batch) {
+                mutation.complete(BanResult.failure(mutation.ban, t));
+            }
+        } finally {
+            lock.lock();
+            try {
+                committing = false;
+                committed.signalAll();
+                filled.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Applies batches of mutations.
+     */
+    public interface Handler {
+
+        /**
+         * Applies a batch of mutations, in a single pass over the backend.
+         *
+         * <p>Mutations that fail should be {@link Mutation#fail(Throwable) failed},
+         * the remaining ones are considered successful once this returns.</p>
+         *
+         * @param batch The batch
+         */
+        void apply(List<Mutation> batch);
+    }
+
+    /**
+     * Represents a single ban or pardon waiting to be committed.
+     */
+    public static final class Mutation {
+
+        private final Ban ban;
+        private final boolean pardon;
+        private volatile BanResult result;
+
+        private Mutation(Ban ban, boolean pardon) {
+            this.ban = ban;
+            this.pardon = pardon;
+        }
+
+        public Ban getBan() {
+            return ban;
+        }
+
+        public boolean isPardon() {
+            return pardon;
+        }
+
+        /**
+         * Marks the mutation as failed.
+         *
+         * @param error The reason it failed
+         */
+        public void fail(Throwable error) {
+            complete(BanResult.failure(ban, error));
+        }
+
+        /**
+         * Gets whether the mutation has failed.
+         *
+         * @return True if the mutation has failed, false otherwise
+         */
+        public boolean isFailed() {
+            return result != null && !result.isSuccess();
+        }
+
+        private void complete(BanResult result) {
+            if (this.result == null) {
+                this.result = result;
+            }
+        }
+    }
+}
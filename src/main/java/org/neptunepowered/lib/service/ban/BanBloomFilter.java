@@ -0,0 +1,243 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.ban;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counting Bloom filter over the keys of a {@link BanIndex}, which answers
+ * most lookups for keys that are not banned without touching the index.
+ *
+ * <p>The filter is blocked: all the counters for a key are in the same 64
+ * byte block, so a lookup reads a single cache line. Counters are four bits
+ * wide, sixteen to a {@code long}, so that keys can be removed as well as
+ * added. A counter that reaches 15 is never decremented again, which can
+ * only cause false positives, never false negatives.</p>
+ *
+ * <p>Addresses are added under the prefix their ban covers. Lookups try each
+ * prefix length in use, of which there are usually only one or two.</p>
+ *
+ * <p>Changes must be made by a single thread at a time. Lookups may happen
+ * concurrently, and see every change made before the index version they
+ * read was published.</p>
+ */
+final class BanBloomFilter {
+
+    private static final int BLOCK_WORDS = 8;
+    private static final int COUNTER_BITS = 4;
+    private static final int COUNTERS_PER_WORD = 64 / COUNTER_BITS;
+    private static final int BLOCK_COUNTERS = BLOCK_WORDS * COUNTERS_PER_WORD;
+    private static final int POSITION_BITS = 7;
+    private static final int MAX_HASHES = 64 / POSITION_BITS;
+    private static final long MAX_COUNT = (1L << COUNTER_BITS) - 1;
+    private static final int[] NO_PREFIXES = new int[0];
+
+    private final AtomicLongArray words;
+    private final int blocks;
+    private final int hashes;
+    private final long capacity;
+    private final double falsePositiveRate;
+    private final int[] prefixCounts = new int[129];
+    private volatile int[] prefixes = NO_PREFIXES;
+    private long size = 0;
+
+    /**
+     * Creates a filter sized for the given number of keys.
+     *
+     * @param capacity The number of keys the filter can hold at the given
+     *     false positive rate
+     * @param falsePositiveRate The rate of false positives, between 0 and 1
+     */
+    BanBloomFilter(long capacity, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1, not " + falsePositiveRate);
+        }
+        this.capacity = Math.max(capacity, BLOCK_COUNTERS);
+        this.falsePositiveRate = falsePositiveRate;
+        // Optimal for a classic filter, plus a little to make up for the uneven load of blocks
+        double countersPerKey = 1.2 * -Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        this.hashes = (int) Math.max(1, Math.min(MAX_HASHES, Math.round(Math.log(2) * countersPerKey)));
+        long blocks = (long) Math.ceil(this.capacity * countersPerKey / BLOCK_COUNTERS);
+        if (blocks * BLOCK_WORDS > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Bloom filter for " + capacity + " keys is too large");
+        }
+        this.blocks = (int) blocks;
+        this.words = new AtomicLongArray(this.blocks * BLOCK_WORDS);
+    }
+
+    /**
+     * Gets the number of keys the filter was sized for.
+     */
+    long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the false positive rate the filter was sized for.
+     */
+    double getFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    /**
+     * Gets the number of keys in the filter.
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Gets the memory used by the counters, in bytes.
+     */
+    long getMemoryBytes() {
+        return (long) words.length() * 8;
+    }
+
+    void addPlayer(long most, long least) {
+        add(hash(most, least));
+    }
+
+    void removePlayer(long most, long least) {
+        remove(hash(most, least));
+    }
+
+    boolean mightContainPlayer(long most, long least) {
+        return mightContain(hash(most, least));
+    }
+
+    void addAddress(byte[] address, int prefixLength) {
+        int length = IpBanTrie.keyLength(address, prefixLength);
+        add(hash(IpBanTrie.high(address), IpBanTrie.low(address), length));
+        if (prefixCounts[length]++ == 0) {
+            publishPrefixes();
+        }
+    }
+
+    void removeAddress(byte[] address, int prefixLength) {
+        int length = IpBanTrie.keyLength(address, prefixLength);
+        remove(hash(IpBanTrie.high(address), IpBanTrie.low(address), length));
+        if (--prefixCounts[length] == 0) {
+            publishPrefixes();
+        }
+    }
+
+    /**
+     * Checks whether an address might be covered by a ban in the filter.
+     *
+     * @param address The address
+     * @return False if the address is definitely not covered, true if it
+     *     might be
+     */
+    boolean mightContainAddress(byte[] address) {
+        long hi = IpBanTrie.high(address);
+        long lo = IpBanTrie.low(address);
+        for (int length : prefixes) {
+            if (mightContain(hash(hi, lo, length))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void add(long hash) {
+        int base = block(hash);
+        long positions = mix(hash);
+        for (int i = 0; i < hashes; i++) {
+            int counter = (int) (positions >>> (i * POSITION_BITS)) & (BLOCK_COUNTERS - 1);
+            int word = base + counter / COUNTERS_PER_WORD;
+            int shift = (counter % COUNTERS_PER_WORD) * COUNTER_BITS;
+            long value = words.get(word);
+            if (((value >>> shift) & MAX_COUNT) != MAX_COUNT) {
+                words.set(word, value + (1L << shift));
+            }
+        }
+        size++;
+    }
+
+    private void remove(long hash) {
+        int base = block(hash);
+        long positions = mix(hash);
+        for (int i = 0; i < hashes; i++) {
+            int counter = (int) (positions >>> (i * POSITION_BITS)) & (BLOCK_COUNTERS - 1);
+            int word = base + counter / COUNTERS_PER_WORD;
+            int shift = (counter % COUNTERS_PER_WORD) * COUNTER_BITS;
+            long value = words.get(word);
+            long count = (value >>> shift) & MAX_COUNT;
+            if (count != 0 && count != MAX_COUNT) {
+                words.set(word, value - (1L << shift));
+            }
+        }
+        size--;
+    }
+
+    private boolean mightContain(long hash) {
+        int base = block(hash);
+        long positions = mix(hash);
+        for (int i = 0; i < hashes; i++) {
+            int counter = (int) (positions >>> (i * POSITION_BITS)) & (BLOCK_COUNTERS - 1);
+            long value = words.get(base + counter / COUNTERS_PER_WORD);
+            if (((value >>> ((counter % COUNTERS_PER_WORD) * COUNTER_BITS)) & MAX_COUNT) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int block(long hash) {
+        // Maps the high half of the hash onto the blocks without a division
+        return (int) (((hash >>> 32) * blocks) >>> 32) * BLOCK_WORDS;
+    }
+
+    private void publishPrefixes() {
+        int count = 0;
+        for (int prefixCount : prefixCounts) {
+            if (prefixCount > 0) {
+                count++;
+            }
+        }
+        int[] lengths = new int[count];
+        // Longest first, as single addresses are the most common bans
+        for (int length = prefixCounts.length - 1, i = 0; length >= 0; length--) {
+            if (prefixCounts[length] > 0) {
+                lengths[i++] = length;
+            }
+        }
+        prefixes = lengths;
+    }
+
+    private static long hash(long most, long least) {
+        // Seeded apart from the address hashes, which share the counters
+        return mix(mix(most ^ 0x9e3779b97f4a7c15L) + least);
+    }
+
+    private static long hash(long hi, long lo, int length) {
+        return mix(mix(IpBanTrie.mask(hi, 0, length) ^ length) + IpBanTrie.mask(lo, 64, length));
+    }
+
+    private static long mix(long hash) {
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+}
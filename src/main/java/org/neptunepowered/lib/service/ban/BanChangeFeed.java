@@ -0,0 +1,116 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.ban;
+
+import org.neptunepowered.lib.ban.Ban;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The most recent changes to a {@link BanIndex}, kept so that mirrors of the
+ * bans can be sent just what changed since they last synced.
+ *
+ * <p>The feed is a ring of a fixed number of changes, each stamped with the
+ * version of the batch that made it. Its versions are those of the index
+ * offset by when the feed was created, so they keep increasing across
+ * restarts, and a version from before one is recognised as too old. Not
+ * thread-safe, it is guarded by the lock of its index.</p>
+ */
+final class BanChangeFeed {
+
+    private final long base = System.currentTimeMillis() << 20;
+    private final long[] versions;
+    private final Ban[] bans;
+    private final BanEvent.Type[] types;
+    private long sequence = 0;
+    // The changes up to this version are not all in the ring
+    private long horizon;
+
+    BanChangeFeed(int capacity, long version) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive, but was " + capacity);
+        }
+        this.versions = new long[capacity];
+        this.bans = new Ban[capacity];
+        this.types = new BanEvent.Type[capacity];
+        this.horizon = base + version;
+    }
+
+    /**
+     * Gets the version of the feed a version of the index corresponds to.
+     */
+    long version(long indexVersion) {
+        return base + indexVersion;
+    }
+
+    void append(long indexVersion, BanEvent.Type type, Ban ban) {
+        int slot = (int) (sequence % versions.length);
+        if (sequence >= versions.length) {
+            horizon = versions[slot];
+        }
+        versions[slot] = base + indexVersion;
+        bans[slot] = ban;
+        types[slot] = type;
+        sequence++;
+    }
+
+    /**
+     * Drops every change, for when the index is replaced as a whole.
+     */
+    void reset(long indexVersion) {
+        Arrays.fill(bans, null);
+        Arrays.fill(types, null);
+        sequence = 0;
+        horizon = base + indexVersion;
+    }
+
+    /**
+     * Gets the changes made after a version.
+     *
+     * @param after The version of the feed
+     * @param indexVersion The current version of the index
+     * @return The changes, oldest first, or null if some have already been
+     *     dropped from the feed, or the version is not one of this feed
+     */
+    List<BanChanges.Change> since(long after, long indexVersion) {
+        if (after < horizon || after > base + indexVersion) {
+            return null;
+        }
+        List<BanChanges.Change> since = new ArrayList<BanChanges.Change>();
+        long oldest = Math.max(0, sequence - versions.length);
+        // Changes are in version order, so only those at the end are newer
+        for (long next = sequence - 1; next >= oldest; next--) {
+            int slot = (int) (next % versions.length);
+            if (versions[slot] <= after) {
+                break;
+            }
+            since.add(new BanChanges.Change(types[slot], bans[slot], versions[slot]));
+        }
+        Collections.reverse(since);
+        return since;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.ban;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import org.neptunepowered.lib.ban.Ban;
+
+import java.util.List;
+
+/**
+ * The changes to the bans since a version, as returned by
+ * {@link BanIndex#getChangesSince(long)}, for keeping a mirror of the bans
+ * in sync.
+ *
+ * <p>If the mirror is too far behind for the changes it missed to still be
+ * known, this is a snapshot instead, holding every active ban, which the
+ * mirror should replace its bans with. Either way, the mirror is then up to
+ * date with {@link #getVersion()}, which it passes to the next call.</p>
+ */
+public final class BanChanges {
+
+    private final long version;
+    private final List<Change> changes;
+    private final List<Ban> bans;
+
+    private BanChanges(long version, List<Change> changes, List<Ban> bans) {
+        this.version = version;
+        this.changes = changes;
+        this.bans = bans;
+    }
+
+    static BanChanges delta(long version, List<Change> changes) {
+        return new BanChanges(version, ImmutableList.copyOf(changes), null);
+    }
+
+    static BanChanges snapshot(long version, List<Ban> bans) {
+        return new BanChanges(version, ImmutableList.<Change>of(), ImmutableList.copyOf(bans));
+    }
+
+    /**
+     * Gets the version these changes bring a mirror up to.
+     *
+     * @return The version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets whether this is a snapshot of every active ban, rather than the
+     * changes since the version asked for.
+     *
+     * @return True if this is a snapshot
+     */
+    public boolean isSnapshot() {
+        return bans != null;
+    }
+
+    /**
+     * Gets the bans made, pardoned and expired, in the order they happened.
+     * A ban on a player or address that was already banned replaces the
+     * previous one.
+     *
+     * @return The changes, empty for a snapshot
+     */
+    public List<Change> getChanges() {
+        return changes;
+    }
+
+    /**
+     * Gets every active ban, if this is a snapshot.
+     *
+     * @return The bans, empty if this is not a snapshot
+     */
+    public List<Ban> getBans() {
+        return bans != null ? bans : ImmutableList.<Ban>of();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("version", version)
+                .add("changes", changes.size())
+                .add("bans", bans != null ? bans.size() : null)
+                .omitNullValues()
+                .toString();
+    }
+
+    /**
+     * A ban made, pardoned or expired.
+     */
+    public static final class Change {
+
+        private final BanEvent.Type type;
+        private final Ban ban;
+        private final long version;
+
+        Change(BanEvent.Type type, Ban ban, long version) {
+            this.type = type;
+            this.ban = ban;
+            this.version = version;
+        }
+
+        public BanEvent.Type getType() {
+            return type;
+        }
+
+        public Ban getBan() {
+            return ban;
+        }
+
+        /**
+         * Gets the version the change was made in. Changes made together
+         * share a version.
+         *
+         * @return The version
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("type", type)
+                    .add("ban", ban)
+                    .add("version", version)
+                    .toString();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.ban;
+
+import net.canarymod.bansystem.Ban;
+
+/**
+ * A forward-only cursor over the bans in a {@link BanStore}.
+ *
+ * <p>Cursors must be closed once done with, so that stores reading from
+ * disk or a database can let go of what they hold open.</p>
+ */
+public interface BanCursor {
+
+    /**
+     * Moves to the next ban.
+     *
+     * @return The ban, or null if there are no more
+     */
+    Ban next();
+
+    /**
+     * Gets the position of the cursor, which is the number of bans before
+     * the one it returns next. A cursor opened at this position carries on
+     * from the same place.
+     *
+     * @return The position
+     * @see BanStore#openCursor(net.canarymod.bansystem.BanType, int)
+     */
+    int getPosition();
+
+    /**
+     * Closes the cursor.
+     */
+    void close();
+}
@@ -0,0 +1,114 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.ban;
+
+import com.google.common.base.MoreObjects;
+import org.neptunepowered.lib.ban.Ban;
+
+/**
+ * Represents a change to the bans, as delivered by the {@link BanEventBus}.
+ */
+public final class BanEvent {
+
+    private final Type type;
+    private final Ban ban;
+    private final long timeMillis;
+    private final boolean replicated;
+
+    public BanEvent(Type type, Ban ban, long timeMillis, boolean replicated) {
+        this.type = type;
+        this.ban = ban;
+        this.timeMillis = timeMillis;
+        this.replicated = replicated;
+    }
+
+    /**
+     * Gets the kind of change.
+     *
+     * @return The type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Gets the ban that was made, pardoned or expired. For pardons of a
+     * player or address, rather than of a ban, it only identifies them.
+     *
+     * @return The ban
+     */
+    public Ban getBan() {
+        return ban;
+    }
+
+    /**
+     * Gets when the change was made on this server.
+     *
+     * @return The time, in milliseconds since the epoch
+     */
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * Gets whether the change was made on another server, and replicated to
+     * this one.
+     *
+     * @return True if the change was replicated, false if it was made here
+     */
+    public boolean isReplicated() {
+        return replicated;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("type", type)
+                .add("ban", ban)
+                .add("timeMillis", timeMillis)
+                .add("replicated", replicated)
+                .toString();
+    }
+
+    /**
+     * The kinds of change.
+     */
+    public enum Type {
+
+        /**
+         * A ban was made
+         */
+        BAN,
+
+        /**
+         * A ban was pardoned
+         */
+        PARDON,
+
+        /**
+         * A temporary ban expired
+         */
+        EXPIRE
+    }
+}
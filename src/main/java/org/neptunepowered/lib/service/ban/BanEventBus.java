@@ -0,0 +1,343 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.ban;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.canarymod.logger.Logman;
+import org.neptunepowered.lib.ban.Ban;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Delivers {@link BanEvent}s to listeners, on a thread of its own.
+ *
+ * <p>Events are published into a bounded ring, which any number of threads
+ * publish to without locking, and which a single thread drains, handing
+ * the listeners every event published since it last did, up to a batch at
+ * a time. A slow listener therefore never holds up the thread that made
+ * the change.</p>
+ *
+ * <p>When the ring is full, publishers wait up to the configured time for
+ * room, which is none by default, and then drop the event. Both are
+ * counted.</p>
+ */
+public final class BanEventBus {
+
+    private static final Logman log = Logman.getLogman("Neptune");
+
+    private final List<BanEventListener> listeners = new CopyOnWriteArrayList<BanEventListener>();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong full = new AtomicLong();
+    private volatile Ring ring;
+    private volatile Thread thread;
+    private volatile boolean running;
+    private volatile boolean waiting;
+    private int batchSize;
+    private long blockNanos;
+
+    /**
+     * Adds a listener.
+     *
+     * @param listener The listener
+     */
+    public void addListener(BanEventListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener The listener
+     */
+    public void removeListener(BanEventListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts delivering events.
+     *
+     * @param capacity The number of events the ring holds, rounded up to a
+     *     power of two
+     * @param batchSize The most events delivered to listeners at once
+     * @param blockMillis How long to wait for room when the ring is full,
+     *     before dropping an event
+     */
+    public synchronized void start(int capacity, int batchSize, long blockMillis) {
+        if (thread != null) {
+            throw new IllegalStateException("Ban event delivery has already started");
+        }
+        if (capacity < 2 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 2 and 2^30, but was " + capacity);
+        }
+        this.batchSize = Math.max(1, batchSize);
+        this.blockNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, blockMillis));
+        this.ring = new Ring(Integer.highestOneBit(capacity - 1) << 1);
+        this.running = true;
+        thread = new ThreadFactoryBuilder().setNameFormat("Neptune Ban Events").setDaemon(true).build().newThread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        });
+        thread.start();
+    }
+
+    /**
+     * Stops delivering events, once those already published have been.
+     */
+    public synchronized void stop() {
+        Thread thread = this.thread;
+        if (thread == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.thread = null;
+        this.ring = null;
+    }
+
+    /**
+     * Gets whether anything would be delivered an event if it were
+     * published now, so that callers can skip creating events otherwise.
+     *
+     * @return True if events are being delivered to any listeners
+     */
+    public boolean isActive() {
+        return ring != null && !listeners.isEmpty();
+    }
+
+    /**
+     * Publishes an event, if anything would be delivered it.
+     *
+     * @param type The kind of change
+     * @param ban The ban
+     * @param replicated True if the change was made on another server
+     */
+    public void publish(BanEvent.Type type, Ban ban, boolean replicated) {
+        if (isActive()) {
+            publish(new BanEvent(type, ban, System.currentTimeMillis(), replicated));
+        }
+    }
+
+    /**
+     * Publishes an event.
+     *
+     * @param event The event
+     * @return True if the event was published, false if it was dropped
+     */
+    public boolean publish(BanEvent event) {
+        Ring ring = this.ring;
+        if (ring == null) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        if (!ring.offer(event)) {
+            full.incrementAndGet();
+            if (!offerWaiting(ring, event)) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        }
+        published.incrementAndGet();
+        if (waiting) {
+            LockSupport.unpark(thread);
+        }
+        return true;
+    }
+
+    private boolean offerWaiting(Ring ring, BanEvent event) {
+        if (blockNanos == 0) {
+            return false;
+        }
+        long deadline = System.nanoTime() + blockNanos;
+        do {
+            LockSupport.unpark(thread);
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+            if (ring.offer(event)) {
+                return true;
+            }
+        } while (System.nanoTime() - deadline < 0);
+        return false;
+    }
+
+    /**
+     * Gets the number of events published.
+     *
+     * @return The number of events
+     */
+    public long getPublishedCount() {
+        return published.get();
+    }
+
+    /**
+     * Gets the number of events delivered to the listeners.
+     *
+     * @return The number of events
+     */
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    /**
+     * Gets the number of events dropped, because the ring stayed full or
+     * delivery had not started.
+     *
+     * @return The number of events
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Gets the number of times the ring was full when an event was
+     * published, whether it was then dropped or not.
+     *
+     * @return The number of times
+     */
+    public long getOverflowCount() {
+        return full.get();
+    }
+
+    /**
+     * Gets the number of events waiting to be delivered.
+     *
+     * @return The number of events
+     */
+    public int getPendingCount() {
+        Ring ring = this.ring;
+        return ring == null ? 0 : ring.size();
+    }
+
+    private void drain() {
+        Ring ring = this.ring;
+        List<BanEvent> batch = new ArrayList<BanEvent>(batchSize);
+        while (true) {
+            ring.drainTo(batch, batchSize);
+            if (batch.isEmpty()) {
+                if (!running) {
+                    return;
+                }
+                waiting = true;
+                // Check again, a publisher may not have seen the flag
+                if (ring.size() == 0 && running) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+                }
+                waiting = false;
+                continue;
+            }
+            List<BanEvent> events = Collections.unmodifiableList(batch);
+            for (BanEventListener listener : listeners) {
+                try {
+                    listener.onEvents(events);
+                } catch (RuntimeException e) {
+                    log.warn("Ban event listener " + listener + " failed", e);
+                }
+            }
+            delivered.addAndGet(batch.size());
+            batch = new ArrayList<BanEvent>(batchSize);
+        }
+    }
+
+    /**
+     * A bounded multi-producer, single-consumer ring of events.
+     *
+     * <p>Each slot has a sequence, which says whose turn it is. A producer
+     * claims the slot at the tail with a CAS, when its sequence says it is
+     * free, writes the event and then hands the slot to the consumer by
+     * advancing the sequence. The consumer takes the event, and hands the
+     * slot back to the producers a lap later. The ordered writes of the
+     * sequences publish the plain writes of the events.</p>
+     */
+    private static final class Ring {
+
+        private final BanEvent[] events;
+        private final AtomicLongArray sequences;
+        private final int mask;
+        private final AtomicLong tail = new AtomicLong();
+        private volatile long head = 0;
+
+        private Ring(int capacity) {
+            this.events = new BanEvent[capacity];
+            this.sequences = new AtomicLongArray(capacity);
+            this.mask = capacity - 1;
+            for (int i = 0; i < capacity; i++) {
+                sequences.set(i, i);
+            }
+        }
+
+        private boolean offer(BanEvent event) {
+            long position = tail.get();
+            while (true) {
+                int index = (int) position & mask;
+                long difference = sequences.get(index) - position;
+                if (difference == 0) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        events[index] = event;
+                        sequences.lazySet(index, position + 1);
+                        return true;
+                    }
+                    position = tail.get();
+                } else if (difference < 0) {
+                    // A lap ahead of the consumer
+                    return false;
+                } else {
+                    position = tail.get();
+                }
+            }
+        }
+
+        private void drainTo(List<BanEvent> batch, int max) {
+            long position = head;
+            while (batch.size() < max) {
+                int index = (int) position & mask;
+                if (sequences.get(index) != position + 1) {
+                    break;
+                }
+                batch.add(events[index]);
+                events[index] = null;
+                sequences.lazySet(index, position + mask + 1);
+                position++;
+            }
+            head = position;
+        }
+
+        private int size() {
+            return (int) Math.max(0, tail.get() - head);
+        }
+    }
+}
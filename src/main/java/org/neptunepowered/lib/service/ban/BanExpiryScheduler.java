@@ -0,0 +1,207 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.ban;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A hashed timing wheel of the index entries of temporary bans.
+ *
+ * <p>Each entry is linked into the bucket of the tick in which it expires,
+ * so scheduling and cancelling are O(1) however many bans are pending. A
+ * background thread advances the wheel once per tick and hands whatever has
+ * expired to the {@link Handler} in batches.</p>
+ */
+final class BanExpiryScheduler implements Runnable {
+
+    private static final int BATCH_SIZE = 1024;
+
+    private final long tickMillis;
+    private final Timeout[] wheel;
+    private final int mask;
+    private final Handler handler;
+    private long processedTick;
+    private int size = 0;
+    private volatile boolean running = false;
+    private Thread thread;
+
+    BanExpiryScheduler(long tickMillis, int wheelSize, Handler handler) {
+        int buckets = Integer.highestOneBit(Math.max(2, wheelSize - 1)) << 1;
+        this.tickMillis = Math.max(1, tickMillis);
+        this.wheel = new Timeout[buckets];
+        this.mask = buckets - 1;
+        this.handler = handler;
+        this.processedTick = System.currentTimeMillis() / this.tickMillis;
+    }
+
+    /**
+     * Schedules an entry to expire.
+     *
+     * @param entry The entry
+     * @param deadline The time it expires, in milliseconds since the epoch
+     * @return The handle with which to cancel it
+     */
+    synchronized Timeout schedule(IndexEntry<?> entry, long deadline) {
+        // Round up, so that an entry never fires before its deadline
+        long tick = (deadline + tickMillis - 1) / tickMillis;
+        Timeout timeout = new Timeout(entry, Math.max(tick, processedTick + 1));
+        int bucket = (int) (timeout.tick & mask);
+        timeout.next = wheel[bucket];
+        if (timeout.next != null) {
+            timeout.next.previous = timeout;
+        }
+        wheel[bucket] = timeout;
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Cancels a scheduled entry, if it has not yet expired.
+     *
+     * @param timeout The handle of the entry
+     */
+    synchronized void cancel(Timeout timeout) {
+        if (timeout.linked) {
+            unlink(timeout);
+        }
+    }
+
+    /**
+     * Gets the number of entries waiting to expire.
+     *
+     * @return The number of entries
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    void start(String name) {
+        running = true;
+        thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            long now = System.currentTimeMillis();
+            long sleep;
+            synchronized (this) {
+                sleep = (processedTick + 1) * tickMillis - now;
+            }
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    continue;
+                }
+            }
+            List<IndexEntry<?>> expired = advance(System.currentTimeMillis() / tickMillis);
+            for (int i = 0; i < expired.size(); i += BATCH_SIZE) {
+                try {
+                    handler.expire(expired.subList(i, Math.min(expired.size(), i + BATCH_SIZE)));
+                } catch (RuntimeException e) {
+                    // Report it, but a failing handler must not stop the wheel
+                    Thread.currentThread().getUncaughtExceptionHandler().uncaughtException(Thread.currentThread(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Advances the wheel up to the given tick, collecting the expired entries.
+     */
+    private synchronized List<IndexEntry<?>> advance(long currentTick) {
+        List<IndexEntry<?>> expired = new ArrayList<IndexEntry<?>>();
+        long last = Math.min(currentTick, processedTick + wheel.length);
+        for (long tick = processedTick + 1; tick <= last; tick++) {
+            Timeout timeout = wheel[(int) (tick & mask)];
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.tick <= currentTick) {
+                    unlink(timeout);
+                    expired.add(timeout.entry);
+                }
+                timeout = next;
+            }
+        }
+        processedTick = Math.max(processedTick, currentTick);
+        return expired;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else {
+            wheel[(int) (timeout.tick & mask)] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.previous = null;
+        timeout.next = null;
+        timeout.linked = false;
+        size--;
+    }
+
+    /**
+     * Receives the entries that have expired.
+     */
+    interface Handler {
+
+        void expire(List<IndexEntry<?>> expired);
+    }
+
+    /**
+     * The handle of a scheduled entry.
+     */
+    static final class Timeout {
+
+        private final IndexEntry<?> entry;
+        private final long tick;
+        private Timeout previous;
+        private Timeout next;
+        private boolean linked = true;
+
+        private Timeout(IndexEntry<?> entry, long tick) {
+            this.entry = entry;
+            this.tick = tick;
+        }
+    }
+}
@@ -0,0 +1,1173 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.ban;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.net.InetAddresses;
+import org.neptunepowered.lib.ban.Ban;
+import org.neptunepowered.lib.ban.ImmutableBan;
+import org.neptunepowered.lib.ban.PlayerResolver;
+import org.neptunepowered.lib.service.metrics.StripedCounter;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-memory index of the active bans, keyed by player UUID and by
+ * address.
+ *
+ * <p>Once loaded the index is authoritative: lookups are answered without
+ * consulting the ban backend, so every ban and pardon has to be written
+ * through to it.</p>
+ *
+ * <p>Changes are applied in {@link Batch}es. The entries a batch writes are
+ * stamped with a new version, which is published with a single volatile
+ * write once the whole batch is in place, so lookups see either none or all
+ * of a batch.</p>
+ *
+ * <p>Once {@link #startExpiry started}, temporary bans are removed as soon
+ * as they expire, rather than lingering until they are next looked up.</p>
+ *
+ * <p>With a {@link BanJournal} attached, every batch is also appended to the
+ * journal, and {@link #sync} waits for it to be durable.</p>
+ *
+ * <p>With a {@link BanArena} set, bans are copied out of the heap as they
+ * are added, and the index holds views of them instead.</p>
+ *
+ * <p>Bans can also be {@link #search() searched} by when they started or
+ * expire, by the words of their reason and by issuer, through secondary
+ * indexes kept alongside.</p>
+ *
+ * <p>The latest changes are kept in a {@link BanChangeFeed}, from which
+ * mirrors of the bans can {@link #getChangesSince catch up}.</p>
+ */
+public class BanIndex {
+
+    private final PlayerBanTable players = new PlayerBanTable();
+    // The normalised names of the players banned without a UUID, to the key their bans are indexed by
+    private final ConcurrentMap<String, UUID> names = new ConcurrentHashMap<String, UUID>();
+    private final IpBanTrie addresses = new IpBanTrie();
+    private final BanSearchIndex search = new BanSearchIndex();
+    private final StripedCounter hits = new StripedCounter();
+    private final StripedCounter misses = new StripedCounter();
+    private final AtomicLong loads = new AtomicLong();
+    private volatile long version = 0;
+    private volatile boolean loaded = false;
+    private BanExpiryScheduler expiryScheduler;
+    private Set<String> touched = null;
+    private BanJournal journal;
+    private double falsePositiveRate = 0.01;
+    private volatile BanBloomFilter filter;
+    private volatile int nameKeyed = 0;
+    private BanArena arena;
+    private PlayerResolver playerResolver = PlayerResolver.SERVER;
+    private BanChangeFeed changes = new BanChangeFeed(16384, 0);
+
+    /**
+     * Replaces the contents of the index with the given bans.
+     *
+     * @param playerBans The player bans
+     * @param ipBans The IP bans
+     */
+    public synchronized void load(Collection<Ban.Player> playerBans, Collection<Ban.Ip> ipBans) {
+        for (IndexEntry<?> entry : entries()) {
+            release(entry);
+        }
+        players.clear();
+        names.clear();
+        addresses.clear();
+        search.clear();
+        nameKeyed = 0;
+        long loaded = version;
+        for (Ban.Player loadedBan : playerBans) {
+            Ban.Player ban = adopt(loadedBan);
+            UUID key = playerKey(ban);
+            IndexEntry<Ban.Player> entry = new IndexEntry<Ban.Player>(ban, normalise(ban.getName()),
+                    key.getMostSignificantBits(), key.getLeastSignificantBits(), !ban.getUniqueId().isPresent(), loaded);
+            IndexEntry<Ban.Player> previous = players.get(entry.most, entry.least);
+            indexPlayer(key, track(entry), previous);
+            replaced(previous, loaded);
+        }
+        for (Ban.Ip loadedBan : ipBans) {
+            Ban.Ip ban = adopt(loadedBan);
+            IndexEntry<Ban.Ip> entry = new IndexEntry<Ban.Ip>(ban, ban.getAddress().getAddress(), ban.getPrefixLength(), loaded);
+            IndexEntry<Ban.Ip> previous = addresses.get(entry.address, entry.prefixLength);
+            addresses.put(entry.address, entry.prefixLength, track(entry));
+            search.add(entry);
+            replaced(previous, loaded);
+        }
+        rebuildFilter();
+        // A new version, so mirrors synced with the replaced bans are behind
+        version = loaded + 1;
+        changes.reset(version);
+        loads.incrementAndGet();
+        this.loaded = true;
+    }
+
+    /**
+     * Starts recording the bans changed in the index, so that the following
+     * {@link #reconcile} leaves alone whatever changed while the bans it is
+     * given were being read.
+     */
+    public synchronized void beginReconcile() {
+        touched = new HashSet<String>();
+    }
+
+    /**
+     * Brings the index in line with the given bans, as a single batch.
+     *
+     * <p>Unlike {@link #load}, the index never appears empty while this
+     * happens, and bans changed since {@link #beginReconcile} are kept. Only
+     * the bans that are new or differ from those in the index, and the
+     * removals, go in the batch.</p>
+     *
+     * @param playerBans The player bans
+     * @param ipBans The IP bans
+     */
+    public synchronized void reconcile(Collection<Ban.Player> playerBans, Collection<Ban.Ip> ipBans) {
+        Set<String> changed = touched == null ? Collections.<String>emptySet() : touched;
+        touched = null;
+        Set<String> present = new HashSet<String>();
+        Batch batch = new Batch();
+        for (Ban.Player ban : playerBans) {
+            UUID uniqueId = playerKey(ban);
+            String key = uniqueId.toString();
+            present.add(key);
+            if (!changed.contains(key)
+                    && !isUnchanged(players.get(uniqueId.getMostSignificantBits(), uniqueId.getLeastSignificantBits()), ban)) {
+                batch.putPlayer(ban);
+            }
+        }
+        for (Ban.Ip ban : ipBans) {
+            String key = addressKey(ban.getAddress(), ban.getPrefixLength());
+            present.add(key);
+            if (!changed.contains(key) && !isUnchanged(addresses.get(ban.getAddress().getAddress(), ban.getPrefixLength()), ban)) {
+                batch.putAddress(ban);
+            }
+        }
+        for (IndexEntry<?> entry : entries()) {
+            if (entry.removed != 0) {
+                continue;
+            }
+            if (entry.name != null) {
+                UUID key = new UUID(entry.most, entry.least);
+                if (!present.contains(key.toString()) && !changed.contains(key.toString())) {
+                    batch.removePlayer(key);
+                }
+            } else {
+                Ban.Ip ban = (Ban.Ip) entry.ban;
+                String key = addressKey(ban.getAddress(), ban.getPrefixLength());
+                if (!present.contains(key) && !changed.contains(key)) {
+                    batch.removeAddress(ban.getAddress(), ban.getPrefixLength());
+                }
+            }
+        }
+        if (batch.size() > 0) {
+            apply(batch);
+        }
+        loads.incrementAndGet();
+        loaded = true;
+    }
+
+    /**
+     * Gets whether the index has been loaded from the backend.
+     *
+     * @return True if the index has been loaded, false otherwise
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Gets the latest published version of the index.
+     *
+     * @return The version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Checks if a player has an active ban.
+     *
+     * <p>The player is looked up by UUID. Only if that finds nothing, and
+     * there are bans that do not record a UUID, is the player also looked up
+     * by name, against those bans alone, so a player who takes the name of
+     * a player banned by UUID is not banned with them.</p>
+     *
+     * @param uniqueId The UUID of the player, or null if it is not known
+     * @param name The name of the player
+     * @return True if the player has an active ban, false otherwise
+     */
+    public boolean isPlayerBanned(UUID uniqueId, String name) {
+        long version = this.version;
+        if (uniqueId != null) {
+            IndexEntry<Ban.Player> entry = findPlayer(uniqueId.getMostSignificantBits(), uniqueId.getLeastSignificantBits(), version);
+            if (entry != null || nameKeyed == 0) {
+                return record(entry != null && isActive(entry.ban, System.currentTimeMillis()));
+            }
+        }
+        return record(isPlayerBanned(name, version));
+    }
+
+    /**
+     * Checks if a player has an active ban that does not record a UUID,
+     * looking them up by name only.
+     *
+     * <p>Bans that record a UUID are not found by name, as names change, so
+     * {@link #isPlayerBanned(UUID, String)} should be used wherever the UUID
+     * of the player is known.</p>
+     *
+     * @param name The name of the player
+     * @return True if the player has an active ban, false otherwise
+     */
+    public boolean isPlayerBanned(String name) {
+        return record(isPlayerBanned(name, version));
+    }
+
+    private boolean isPlayerBanned(String name, long version) {
+        UUID key = names.get(normalise(name));
+        if (key == null) {
+            return false;
+        }
+        IndexEntry<Ban.Player> entry = findPlayer(key.getMostSignificantBits(), key.getLeastSignificantBits(), version);
+        return entry != null && entry.byName && isActive(entry.ban, System.currentTimeMillis());
+    }
+
+    private IndexEntry<Ban.Player> findPlayer(long most, long least, long version) {
+        BanBloomFilter filter = this.filter;
+        if (filter != null && !filter.mightContainPlayer(most, least)) {
+            return null;
+        }
+        IndexEntry<Ban.Player> entry = players.get(most, least);
+        return entry != null && entry.isVisible(version) ? entry : null;
+    }
+
+    /**
+     * Checks if an address is covered by an active ban, either on the address
+     * itself or on a prefix containing it.
+     *
+     * @param address The address
+     * @return True if the address has an active ban, false otherwise
+     */
+    public boolean isIpBanned(InetAddress address) {
+        long version = this.version;
+        byte[] bytes = address.getAddress();
+        BanBloomFilter filter = this.filter;
+        if (filter != null && !filter.mightContainAddress(bytes)) {
+            return record(false);
+        }
+        return record(addresses.match(bytes, version, System.currentTimeMillis()) != null);
+    }
+
+    /**
+     * Checks if the index holds a ban for the same player, or the same
+     * address or range, as a ban, whether it is that ban or one that has
+     * replaced it.
+     *
+     * @param ban The ban
+     * @return True if the player or address has a ban in the index
+     */
+    public synchronized boolean isIndexed(Ban ban) {
+        IndexEntry<?> entry;
+        if (ban instanceof Ban.Ip) {
+            Ban.Ip ipBan = (Ban.Ip) ban;
+            entry = addresses.get(ipBan.getAddress().getAddress(), ipBan.getPrefixLength());
+        } else {
+            UUID key = playerKey((Ban.Player) ban);
+            entry = players.get(key.getMostSignificantBits(), key.getLeastSignificantBits());
+        }
+        return entry != null && entry.removed == 0;
+    }
+
+    /**
+     * Adds, or replaces, the ban on a player.
+     *
+     * @param ban The ban
+     * @return The version of the index the change was applied in
+     */
+    public long putPlayer(Ban.Player ban) {
+        return apply(new Batch().putPlayer(ban));
+    }
+
+    /**
+     * Adds, or replaces, the ban on an address prefix.
+     *
+     * @param ban The ban
+     * @return The version of the index the change was applied in
+     */
+    public long putAddress(Ban.Ip ban) {
+        return apply(new Batch().putAddress(ban));
+    }
+
+    /**
+     * Removes the ban on a player.
+     *
+     * @param uniqueId The UUID of the player
+     * @return The version of the index the change was applied in
+     */
+    public long removePlayer(UUID uniqueId) {
+        return apply(new Batch().removePlayer(uniqueId));
+    }
+
+    /**
+     * Removes the ban that does not record a UUID on the given name.
+     *
+     * @param name The name of the player
+     * @return The version of the index the change was applied in
+     */
+    public long removePlayer(String name) {
+        return apply(new Batch().removePlayer(name));
+    }
+
+    /**
+     * Removes the ban on exactly the given address prefix.
+     *
+     * @param address The address
+     * @param prefixLength The number of leading bits the ban covers
+     * @return The version of the index the change was applied in
+     */
+    public long removeAddress(InetAddress address, int prefixLength) {
+        return apply(new Batch().removeAddress(address, prefixLength));
+    }
+
+    /**
+     * Applies a batch of changes, making all of them visible at once.
+     *
+     * @param batch The batch
+     * @return The version of the index the batch was applied in
+     */
+    public long apply(Batch batch) {
+        return apply(batch, BanEvent.Type.PARDON);
+    }
+
+    /**
+     * Applies a batch of changes, feeding the removals to mirrors as the
+     * given type of change.
+     */
+    private synchronized long apply(Batch batch, BanEvent.Type removal) {
+        long next = version + 1;
+        if (journal != null) {
+            journal.enqueue(next, batch.changes);
+        }
+        List<IndexEntry<Ban.Player>> retiredPlayers = new ArrayList<IndexEntry<Ban.Player>>();
+        List<IndexEntry<Ban.Ip>> retiredAddresses = new ArrayList<IndexEntry<Ban.Ip>>();
+        for (Change change : batch.changes) {
+            if (change.address == null) {
+                UUID key = change.ban != null ? playerKey((Ban.Player) change.ban)
+                        : change.uniqueId != null ? change.uniqueId : names.get(normalise(change.name));
+                if (key == null) {
+                    continue;
+                }
+                if (touched != null) {
+                    touched.add(key.toString());
+                }
+                long most = key.getMostSignificantBits();
+                long least = key.getLeastSignificantBits();
+                IndexEntry<Ban.Player> previous = players.get(most, least);
+                if (change.ban != null) {
+                    Ban.Player ban = adopt((Ban.Player) change.ban);
+                    IndexEntry<Ban.Player> entry = new IndexEntry<Ban.Player>(ban, normalise(ban.getName()), most, least,
+                            !ban.getUniqueId().isPresent(), addedVersion(previous, next));
+                    indexPlayer(key, track(entry), previous);
+                    changes.append(next, BanEvent.Type.BAN, ban);
+                    replaced(previous, next);
+                } else if (previous != null && previous.removed == 0 && (change.name == null || previous.byName)) {
+                    // Removals by name only apply to bans made without a UUID
+                    previous.removed = next;
+                    retiredPlayers.add(previous);
+                    changes.append(next, removal, previous.ban);
+                }
+            } else {
+                if (touched != null) {
+                    touched.add(addressKey(change.address, change.prefixLength));
+                }
+                byte[] address = change.address.getAddress();
+                IndexEntry<Ban.Ip> previous = addresses.get(address, change.prefixLength);
+                if (change.ban != null) {
+                    IndexEntry<Ban.Ip> entry = new IndexEntry<Ban.Ip>(adopt((Ban.Ip) change.ban), address, change.prefixLength,
+                            addedVersion(previous, next));
+                    addresses.put(address, change.prefixLength, track(entry));
+                    search.add(entry);
+                    changes.append(next, BanEvent.Type.BAN, entry.ban);
+                    replaced(previous, next);
+                    if (previous == null && filter != null) {
+                        filter.addAddress(address, change.prefixLength);
+                    }
+                } else if (previous != null && previous.removed == 0) {
+                    previous.removed = next;
+                    retiredAddresses.add(previous);
+                    changes.append(next, removal, previous.ban);
+                }
+            }
+        }
+
+        // The swap, after which the batch is visible to lookups
+        version = next;
+
+        // Entries that have not been replaced by the batch can now be dropped
+        for (IndexEntry<Ban.Player> retired : retiredPlayers) {
+            if (players.remove(retired.most, retired.least, retired)) {
+                if (retired.byName) {
+                    names.remove(retired.name, new UUID(retired.most, retired.least));
+                    nameKeyed--;
+                }
+                if (filter != null) {
+                    filter.removePlayer(retired.most, retired.least);
+                }
+            }
+            release(retired);
+        }
+        for (IndexEntry<Ban.Ip> retired : retiredAddresses) {
+            if (addresses.remove(retired.address, retired.prefixLength, retired) && filter != null) {
+                filter.removeAddress(retired.address, retired.prefixLength);
+            }
+            release(retired);
+        }
+        if (filter != null && filter.size() > filter.getCapacity()) {
+            rebuildFilter();
+        }
+        if (search.size() > 1024 && search.size() > 2 * (players.size() + addresses.size())) {
+            rebuildSearch();
+        }
+        return next;
+    }
+
+    /**
+     * Sets the false positive rate of the Bloom filter that lookups go
+     * through before the index, rebuilding it if the index is loaded.
+     *
+     * <p>The filter answers most lookups for players and addresses that are
+     * not banned on its own. A lower rate sends fewer of them on to the index,
+     * at the cost of a larger filter.</p>
+     *
+     * @param falsePositiveRate The rate, between 0 and 1, or 0 to not use a
+     *     filter
+     */
+    public synchronized void setFalsePositiveRate(double falsePositiveRate) {
+        if (falsePositiveRate < 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1, not " + falsePositiveRate);
+        }
+        this.falsePositiveRate = falsePositiveRate;
+        if (loaded) {
+            rebuildFilter();
+        }
+    }
+
+    /**
+     * Gets the memory used by the Bloom filter in front of the index.
+     *
+     * @return The size in bytes, or 0 if there is no filter
+     */
+    public long getFilterMemoryBytes() {
+        BanBloomFilter filter = this.filter;
+        return filter == null ? 0 : filter.getMemoryBytes();
+    }
+
+    /**
+     * Gets the number of keys the Bloom filter in front of the index is sized
+     * for, beyond which it is rebuilt larger.
+     *
+     * @return The number of keys, or 0 if there is no filter
+     */
+    public long getFilterCapacity() {
+        BanBloomFilter filter = this.filter;
+        return filter == null ? 0 : filter.getCapacity();
+    }
+
+    /**
+     * Rebuilds the filter from the entries of the index, with room for as
+     * many again before it has to be rebuilt.
+     */
+    private void rebuildFilter() {
+        if (falsePositiveRate == 0) {
+            filter = null;
+            return;
+        }
+        List<IndexEntry<?>> entries = entries();
+        BanBloomFilter rebuilt = new BanBloomFilter(2L * entries.size(), falsePositiveRate);
+        for (IndexEntry<?> entry : entries) {
+            if (entry.name != null) {
+                rebuilt.addPlayer(entry.most, entry.least);
+            } else {
+                rebuilt.addAddress(entry.address, entry.prefixLength);
+            }
+        }
+        filter = rebuilt;
+    }
+
+    /**
+     * Rebuilds the secondary indexes from the entries of the index, dropping
+     * those that have been replaced or removed.
+     */
+    private void rebuildSearch() {
+        search.clear();
+        for (IndexEntry<?> entry : entries()) {
+            search.add(entry);
+        }
+    }
+
+    /**
+     * Gets the version of the bans that mirrors are brought up to by
+     * {@link #getChangesSince}. Unlike {@link #getVersion()}, it keeps
+     * increasing across restarts.
+     *
+     * @return The version
+     */
+    public synchronized long getChangeVersion() {
+        return changes.version(version);
+    }
+
+    /**
+     * Gets the bans made, pardoned and expired since a version, or every
+     * active ban if the changes since are no longer all known, such as when
+     * too many have been made since, or the index has been loaded again.
+     *
+     * <p>Bans that expire are only fed as expired once
+     * {@link #startExpiry expiry} has been started.</p>
+     *
+     * @param version The version a mirror is up to date with, as returned
+     *     by {@link BanChanges#getVersion()}, or 0 for every ban
+     * @return The changes
+     */
+    public synchronized BanChanges getChangesSince(long version) {
+        List<BanChanges.Change> since = changes.since(version, this.version);
+        if (since != null) {
+            return BanChanges.delta(changes.version(this.version), since);
+        }
+        long now = System.currentTimeMillis();
+        List<Ban> bans = new ArrayList<Ban>();
+        for (IndexEntry<?> entry : visibleEntries()) {
+            if (isActive(entry.ban, now)) {
+                bans.add(entry.ban);
+            }
+        }
+        return BanChanges.snapshot(changes.version(this.version), bans);
+    }
+
+    /**
+     * Sets the number of changes kept for mirrors to catch up with. Mirrors
+     * further behind are sent every ban instead. The changes kept so far are
+     * dropped.
+     *
+     * @param capacity The number of changes
+     */
+    public synchronized void setChangeFeedCapacity(int capacity) {
+        changes = new BanChangeFeed(capacity, version);
+    }
+
+    /**
+     * Creates a search of the active bans in the index.
+     *
+     * @return A new search
+     */
+    public BanSearch search() {
+        return new BanSearch(this);
+    }
+
+    /**
+     * Finds the bans matching a search through one of the secondary indexes.
+     * Only the entries of the secondary index and the latest version are
+     * taken while holding the lock. The entries are filtered, against that
+     * version, as the iterator advances.
+     */
+    Iterator<Ban> find(BanSearch.Plan plan, final BanSearch search, final long now) {
+        final List<IndexEntry<?>> indexed;
+        final long version;
+        synchronized (this) {
+            indexed = candidates(plan, search);
+            version = this.version;
+        }
+        final int limit = search.limit;
+        return new AbstractIterator<Ban>() {
+            private final Iterator<IndexEntry<?>> entries = indexed.iterator();
+            private final Map<String, Boolean> reasons = new HashMap<String, Boolean>();
+            private int found = 0;
+
+            @Override
+            protected Ban computeNext() {
+                while (found < limit && entries.hasNext()) {
+                    IndexEntry<?> entry = entries.next();
+                    if (entry.isVisible(version) && search.matches(entry.ban, now, reasons)) {
+                        found++;
+                        return entry.ban;
+                    }
+                }
+                return endOfData();
+            }
+        };
+    }
+
+    private List<IndexEntry<?>> candidates(BanSearch.Plan plan, BanSearch search) {
+        List<IndexEntry<?>> indexed;
+        switch (plan) {
+            case START:
+                indexed = this.search.started(search.startFrom, search.startTo);
+                break;
+            case EXPIRATION:
+                indexed = this.search.expiring(search.expirationFrom, search.expirationTo);
+                break;
+            case REASON:
+                indexed = this.search.withWord(rarestWord(search.words));
+                break;
+            case ISSUER:
+                indexed = this.search.issuedBy(search.issuer);
+                break;
+            default:
+                indexed = this.search.all();
+                break;
+        }
+        return indexed;
+    }
+
+    /**
+     * Picks the secondary index that narrows a search down to the fewest
+     * entries.
+     */
+    synchronized BanSearch.Plan plan(BanSearch search) {
+        BanSearch.Plan plan = BanSearch.Plan.ALL;
+        int fewest = this.search.size();
+        if (search.startFrom != Long.MIN_VALUE || search.startTo != Long.MAX_VALUE) {
+            int count = this.search.countStarted(search.startFrom, search.startTo);
+            if (count < fewest) {
+                plan = BanSearch.Plan.START;
+                fewest = count;
+            }
+        }
+        if (search.expiring) {
+            int count = this.search.countExpiring(search.expirationFrom, search.expirationTo);
+            if (count < fewest) {
+                plan = BanSearch.Plan.EXPIRATION;
+                fewest = count;
+            }
+        }
+        if (search.words.length > 0) {
+            int count = this.search.withWord(rarestWord(search.words)).size();
+            if (count < fewest) {
+                plan = BanSearch.Plan.REASON;
+                fewest = count;
+            }
+        }
+        if (search.issuer != null && this.search.issuedBy(search.issuer).size() < fewest) {
+            plan = BanSearch.Plan.ISSUER;
+        }
+        return plan;
+    }
+
+    private String rarestWord(String[] words) {
+        String rarest = words[0];
+        for (int i = 1; i < words.length; i++) {
+            if (search.withWord(words[i]).size() < search.withWord(rarest).size()) {
+                rarest = words[i];
+            }
+        }
+        return rarest;
+    }
+
+    /**
+     * Puts a player entry in the table, replacing the previous entry of its
+     * UUID, and points the name of the player at it if the ban does not
+     * record a UUID.
+     */
+    private void indexPlayer(UUID key, IndexEntry<Ban.Player> entry, IndexEntry<Ban.Player> previous) {
+        players.put(entry.most, entry.least, entry);
+        search.add(entry);
+        if (entry.byName) {
+            names.put(entry.name, key);
+        }
+        if (previous != null && previous.byName && !(entry.byName && previous.name.equals(entry.name))) {
+            names.remove(previous.name, key);
+        }
+        nameKeyed += (entry.byName ? 1 : 0) - (previous != null && previous.byName ? 1 : 0);
+        if (previous == null && filter != null) {
+            filter.addPlayer(entry.most, entry.least);
+        }
+    }
+
+    /**
+     * Sets the arena bans are copied into as they are added to the index,
+     * keeping them off the heap. Bans already in the index stay where they
+     * are until they are replaced, or the index is loaded again.
+     *
+     * @param arena The arena, or null to keep bans on the heap
+     */
+    public synchronized void setArena(BanArena arena) {
+        if (arena != null) {
+            arena.setPlayerResolver(playerResolver);
+        }
+        this.arena = arena;
+    }
+
+    /**
+     * Sets the resolver the player bans in the index resolve their player
+     * through, such as the cache of the service.
+     *
+     * @param resolver The resolver
+     */
+    public synchronized void setPlayerResolver(PlayerResolver resolver) {
+        this.playerResolver = checkNotNull(resolver, "resolver");
+        if (arena != null) {
+            arena.setPlayerResolver(resolver);
+        }
+    }
+
+    /**
+     * Gets the arena bans are copied into, if any.
+     *
+     * @return The arena, or {@link Optional#absent()}
+     */
+    public synchronized Optional<BanArena> getArena() {
+        return Optional.fromNullable(arena);
+    }
+
+    /**
+     * Attaches a journal, to which all following batches are appended.
+     *
+     * @param journal The journal, or null to detach the current one
+     */
+    public synchronized void setJournal(BanJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Waits until the batches applied up to the given version are durable. This
+     * returns immediately if there is no journal.
+     *
+     * @param version The version returned by {@link #apply}
+     * @throws IOException If the journal could not be written
+     */
+    public void sync(long version) throws IOException {
+        BanJournal journal;
+        synchronized (this) {
+            journal = this.journal;
+        }
+        if (journal != null) {
+            journal.sync(version);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the index, and compacts the journal down to the
+     * batches applied since.
+     *
+     * @param file The file to write to
+     * @throws IOException If the snapshot could not be written
+     */
+    public void writeSnapshot(File file) throws IOException {
+        List<IndexEntry<?>> entries;
+        BanJournal journal;
+        synchronized (this) {
+            entries = visibleEntries();
+            journal = this.journal;
+            if (journal != null) {
+                journal.rollOver();
+            }
+        }
+        BanSnapshot.write(file, entries);
+        if (journal != null) {
+            journal.deleteRolledOver();
+        }
+    }
+
+    /**
+     * Starts removing temporary bans from the index as they expire.
+     *
+     * @param tickMillis The resolution of expiry, in milliseconds
+     * @param wheelSize The number of buckets of the timing wheel
+     * @param handler The handler notified of the bans that have been removed
+     */
+    public void startExpiry(long tickMillis, int wheelSize, final ExpiryHandler handler) {
+        stopExpiry();
+        BanExpiryScheduler scheduler = new BanExpiryScheduler(tickMillis, wheelSize, new BanExpiryScheduler.Handler() {
+            @Override
+            public void expire(List<IndexEntry<?>> expired) {
+                List<Ban> removed = BanIndex.this.expire(expired);
+                if (!removed.isEmpty()) {
+                    handler.onExpired(removed);
+                }
+            }
+        });
+        synchronized (this) {
+            expiryScheduler = scheduler;
+            for (IndexEntry<?> entry : entries()) {
+                track(entry);
+            }
+        }
+        scheduler.start("Neptune Ban Expiry");
+    }
+
+    /**
+     * Stops removing temporary bans from the index as they expire.
+     */
+    public void stopExpiry() {
+        BanExpiryScheduler scheduler;
+        synchronized (this) {
+            scheduler = expiryScheduler;
+            expiryScheduler = null;
+        }
+        // Outside of the lock, as the expiry thread may be waiting on it
+        if (scheduler != null) {
+            scheduler.stop();
+        }
+    }
+
+    /**
+     * Gets the number of temporary bans waiting to expire.
+     *
+     * @return The number of bans, or 0 if expiry has not been started
+     */
+    public synchronized int getPendingExpiryCount() {
+        return expiryScheduler == null ? 0 : expiryScheduler.size();
+    }
+
+    /**
+     * Removes the expired entries that are still in the index, in one batch.
+     */
+    private synchronized List<Ban> expire(List<IndexEntry<?>> expired) {
+        long now = System.currentTimeMillis();
+        Batch batch = new Batch();
+        List<Ban> removed = new ArrayList<Ban>(expired.size());
+        for (IndexEntry<?> entry : expired) {
+            entry.timeout = null;
+            if (entry.removed != 0 || !isCurrent(entry)) {
+                continue;
+            }
+            if (isActive(entry.ban, now)) {
+                // Woken early, by a clock change
+                track(entry);
+                continue;
+            }
+            if (entry.name != null) {
+                batch.removePlayer(new UUID(entry.most, entry.least));
+            } else {
+                Ban.Ip ban = (Ban.Ip) entry.ban;
+                batch.removeAddress(ban.getAddress(), ban.getPrefixLength());
+            }
+            removed.add(entry.ban);
+        }
+        if (batch.size() > 0) {
+            apply(batch, BanEvent.Type.EXPIRE);
+        }
+        return removed;
+    }
+
+    /**
+     * Marks an entry that has been replaced as removed in the version that
+     * replaced it, and frees its ban.
+     */
+    private void replaced(IndexEntry<?> previous, long version) {
+        if (previous == null) {
+            return;
+        }
+        if (previous.removed == 0) {
+            previous.removed = version;
+        }
+        release(previous);
+    }
+
+    private boolean isCurrent(IndexEntry<?> entry) {
+        if (entry.name != null) {
+            return players.get(entry.most, entry.least) == entry;
+        }
+        return addresses.get(entry.address, entry.prefixLength) == entry;
+    }
+
+    /**
+     * Gets the entries in the latest published version of the index.
+     */
+    synchronized List<IndexEntry<?>> visibleEntries() {
+        List<IndexEntry<?>> visible = new ArrayList<IndexEntry<?>>();
+        for (IndexEntry<?> entry : entries()) {
+            if (entry.isVisible(version)) {
+                visible.add(entry);
+            }
+        }
+        return visible;
+    }
+
+    private List<IndexEntry<?>> entries() {
+        List<IndexEntry<?>> entries = new ArrayList<IndexEntry<?>>(players.entries());
+        entries.addAll(addresses.entries());
+        return entries;
+    }
+
+    private <T extends Ban> IndexEntry<T> track(IndexEntry<T> entry) {
+        if (expiryScheduler != null && !entry.ban.isIndefinite()) {
+            entry.timeout = expiryScheduler.schedule(entry, entry.ban.getExpirationMillis());
+        }
+        return entry;
+    }
+
+    /**
+     * Stops tracking an entry that has left the index, and frees its ban if
+     * it is held in the arena.
+     */
+    private void release(IndexEntry<?> entry) {
+        if (entry != null) {
+            untrack(entry);
+            BanArena.free(entry.ban);
+        }
+    }
+
+    private Ban.Player adopt(Ban.Player ban) {
+        BanArena arena = this.arena;
+        if (arena != null) {
+            return arena.add(ban);
+        }
+        return ban instanceof ImmutableBan.Player ? ((ImmutableBan.Player) ban).withResolver(playerResolver) : ban;
+    }
+
+    private Ban.Ip adopt(Ban.Ip ban) {
+        BanArena arena = this.arena;
+        return arena == null ? ban : arena.add(ban);
+    }
+
+    private void untrack(IndexEntry<?> entry) {
+        if (entry != null && entry.timeout != null) {
+            if (expiryScheduler != null) {
+                expiryScheduler.cancel(entry.timeout);
+            }
+            entry.timeout = null;
+        }
+    }
+
+    /**
+     * Gets the number of lookups that found an active ban.
+     *
+     * @return The hit count
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of lookups that found no active ban.
+     *
+     * <p>Both hits and misses are answered from memory, so together they are
+     * the number of lookups the backend did not have to serve.</p>
+     *
+     * @return The miss count
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the number of times the index has been loaded from the backend.
+     *
+     * @return The load count
+     */
+    public long getLoadCount() {
+        return loads.get();
+    }
+
+    private boolean record(boolean hit) {
+        if (hit) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return hit;
+    }
+
+    /**
+     * Gets the version a replacement entry is added in. A ban that replaces a
+     * visible one keeps its version, so the key never appears unbanned.
+     */
+    private long addedVersion(IndexEntry<?> previous, long next) {
+        return previous != null && previous.isVisible(version) ? previous.added : next;
+    }
+
+    /**
+     * Checks if an entry is in the index and holds the same ban as the given
+     * one, which is indexed by the same key.
+     */
+    private static boolean isUnchanged(IndexEntry<?> entry, Ban ban) {
+        if (entry == null || entry.removed != 0) {
+            return false;
+        }
+        Ban indexed = entry.ban;
+        if (indexed.getStartMillis() != ban.getStartMillis() || indexed.getExpirationMillis() != ban.getExpirationMillis()
+                || !Objects.equal(indexed.getReason(), ban.getReason()) || !indexed.getIssuer().equals(ban.getIssuer())) {
+            return false;
+        }
+        if (ban instanceof Ban.Player) {
+            Ban.Player player = (Ban.Player) ban;
+            return ((Ban.Player) indexed).getName().equals(player.getName())
+                    && ((Ban.Player) indexed).getUniqueId().equals(player.getUniqueId());
+        }
+        // The address and prefix length are the key
+        return true;
+    }
+
+    static boolean isActive(Ban ban, long now) {
+        long expiration = ban.getExpirationMillis();
+        return expiration == -1 || expiration > now;
+    }
+
+    private static String addressKey(InetAddress address, int prefixLength) {
+        return InetAddresses.toAddrString(address) + "/" + prefixLength;
+    }
+
+    private static String normalise(String name) {
+        return name.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Gets the UUID a player ban is indexed by. Bans that do not record a UUID
+     * are indexed by the UUID an offline mode server gives the player.
+     */
+    private static UUID playerKey(Ban.Player ban) {
+        Optional<UUID> uniqueId = ban.getUniqueId();
+        if (uniqueId.isPresent()) {
+            return uniqueId.get();
+        }
+        return UUID.nameUUIDFromBytes(("OfflinePlayer:" + ban.getName()).getBytes(Charsets.UTF_8));
+    }
+
+    /**
+     * Receives the bans that have been removed from the index as they expired.
+     */
+    public interface ExpiryHandler {
+
+        /**
+         * Called, on the expiry thread, with a batch of expired bans.
+         *
+         * @param bans The bans that have expired
+         */
+        void onExpired(List<Ban> bans);
+    }
+
+    /**
+     * A batch of changes to be applied to the index at once.
+     */
+    public static class Batch {
+
+        private final List<Change> changes = new ArrayList<Change>();
+
+        /**
+         * Adds, or replaces, the ban on a player.
+         *
+         * @param ban The ban
+         * @return This batch
+         */
+        public Batch putPlayer(Ban.Player ban) {
+            changes.add(new Change(ban.getName(), null, null, 0, ban));
+            return this;
+        }
+
+        /**
+         * Adds, or replaces, the ban on an address prefix.
+         *
+         * @param ban The ban
+         * @return This batch
+         */
+        public Batch putAddress(Ban.Ip ban) {
+            changes.add(new Change(null, null, ban.getAddress(), ban.getPrefixLength(), ban));
+            return this;
+        }
+
+        /**
+         * Removes the ban on a player.
+         *
+         * @param uniqueId The UUID of the player
+         * @return This batch
+         */
+        public Batch removePlayer(UUID uniqueId) {
+            changes.add(new Change(null, uniqueId, null, 0, null));
+            return this;
+        }
+
+        /**
+         * Removes the ban that does not record a UUID on the given name.
+         * Bans that record a UUID are only removed by
+         * {@link #removePlayer(UUID)}.
+         *
+         * @param name The name of the player
+         * @return This batch
+         */
+        public Batch removePlayer(String name) {
+            changes.add(new Change(name, null, null, 0, null));
+            return this;
+        }
+
+        /**
+         * Removes the ban on exactly the given address prefix.
+         *
+         * @param address The address
+         * @param prefixLength The number of leading bits the ban covers
+         * @return This batch
+         */
+        public Batch removeAddress(InetAddress address, int prefixLength) {
+            changes.add(new Change(null, null, address, prefixLength, null));
+            return this;
+        }
+
+        /**
+         * Gets the number of changes in this batch.
+         *
+         * @return The number of changes
+         */
+        public int size() {
+            return changes.size();
+        }
+    }
+
+    static final class Change {
+
+        final String name;
+        final UUID uniqueId;
+        final InetAddress address;
+        final int prefixLength;
+        final Ban ban;
+
+        private Change(String name, UUID uniqueId, InetAddress address, int prefixLength, Ban ban) {
+            this.name = name;
+            this.uniqueId = uniqueId;
+            this.address = address;
+            this.prefixLength = prefixLength;
+            this.ban = ban;
+        }
+    }
+}
@@ -0,0 +1,399 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.ban;
+
+import com.google.common.base.Charsets;
+import org.neptunepowered.lib.ban.Ban;
+import org.neptunepowered.lib.ban.ImmutableBan;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of the changes made to a {@link BanIndex}, so that
+ * they survive a crash before the next snapshot is written.
+ *
+ * <p>Each batch applied to the index is appended as one record, consisting
+ * of its length, its changes and a CRC32 of them. Records are queued in the
+ * order the batches are applied, and written out by whichever caller next
+ * waits for its record to be durable, together with every other record
+ * queued by then, followed by a single fsync. Concurrent writers therefore
+ * share fsyncs rather than paying for one each.</p>
+ *
+ * <p>When a snapshot is written the journal is rolled over, and the old
+ * journal is deleted once the snapshot is safely on disk.</p>
+ */
+public final class BanJournal {
+
+    private static final byte PUT_PLAYER = 1;
+    private static final byte PUT_ADDRESS = 2;
+    private static final byte REMOVE_PLAYER = 3;
+    private static final byte REMOVE_ADDRESS = 4;
+    // Set on the puts of bans that record an issuer, which follows the reason
+    private static final byte ISSUED = 0x10;
+
+    private final File file;
+    private final File rolledOver;
+    private final Object syncLock = new Object();
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private List<ByteBuffer> pending = new ArrayList<ByteBuffer>();
+    private long queued = 0;
+    private volatile long synced = 0;
+    private volatile long size;
+
+    private BanJournal(File file) throws IOException {
+        this.file = file;
+        this.rolledOver = new File(file.getPath() + ".old");
+        open();
+    }
+
+    /**
+     * Replays any existing journal into an index, and then opens the journal
+     * for appending.
+     *
+     * @param file The journal file
+     * @param index The index to replay into
+     * @return The journal
+     * @throws IOException If the journal could not be opened
+     */
+    public static BanJournal open(File file, BanIndex index) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create directory " + directory);
+        }
+        File rolledOver = new File(file.getPath() + ".old");
+        if (rolledOver.isFile()) {
+            // A snapshot was not completed, so its journal has to be replayed too
+            replay(rolledOver, index);
+        }
+        if (file.isFile()) {
+            replay(file, index);
+        }
+        return new BanJournal(file);
+    }
+
+    /**
+     * Gets the size of the journal, excluding records that are not yet written.
+     *
+     * @return The size in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Closes the journal, after writing out any queued records.
+     *
+     * @throws IOException If the records could not be written
+     */
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            flush();
+            raf.close();
+        }
+    }
+
+    /**
+     * Queues the record of a batch applied to the index. This must be called
+     * in the order the batches are applied.
+     */
+    synchronized void enqueue(long version, List<BanIndex.Change> changes) {
+        pending.add(encode(changes));
+        queued = version;
+    }
+
+    /**
+     * Waits until the record of the given version, and all before it, are
+     * durable.
+     *
+     * @param version The version of the index
+     * @throws IOException If the journal could not be written
+     */
+    void sync(long version) throws IOException {
+        if (synced >= version) {
+            return;
+        }
+        synchronized (syncLock) {
+            // Whoever synced while we waited may have written our record too
+            if (synced < version) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Writes out the queued records, and starts a new journal. The old one is
+     * kept until {@link #deleteRolledOver()} is called.
+     */
+    void rollOver() throws IOException {
+        synchronized (syncLock) {
+            flush();
+            raf.close();
+            if (rolledOver.isFile()) {
+                // The previous snapshot failed, keep everything since the one before
+                append(file, rolledOver);
+                if (!file.delete()) {
+                    throw new IOException("Could not delete " + file);
+                }
+            } else if (!file.renameTo(rolledOver)) {
+                throw new IOException("Could not roll over " + file);
+            }
+            open();
+        }
+    }
+
+    /**
+     * Deletes the journal that was rolled over, once its changes are in a
+     * snapshot.
+     */
+    void deleteRolledOver() {
+        rolledOver.delete();
+    }
+
+    private void open() throws IOException {
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+        size = channel.size();
+        channel.position(size);
+    }
+
+    private void flush() throws IOException {
+        List<ByteBuffer> records;
+        long version;
+        synchronized (this) {
+            records = pending;
+            pending = new ArrayList<ByteBuffer>();
+            version = queued;
+        }
+        if (records.isEmpty()) {
+            synced = Math.max(synced, version);
+            return;
+        }
+        ByteBuffer[] buffers = records.toArray(new ByteBuffer[records.size()]);
+        long written = 0;
+        while (buffers[buffers.length - 1].hasRemaining()) {
+            written += channel.write(buffers);
+        }
+        channel.force(false);
+        size += written;
+        synced = version;
+    }
+
+    private static void append(File from, File to) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(from, "r");
+        RandomAccessFile out = new RandomAccessFile(to, "rw");
+        try {
+            FileChannel source = in.getChannel();
+            FileChannel target = out.getChannel();
+            long position = 0;
+            long offset = target.size();
+            while (position < source.size()) {
+                position += source.transferTo(position, source.size() - position, target.position(offset + position));
+            }
+            target.force(false);
+        } finally {
+            in.close();
+            out.close();
+        }
+    }
+
+    private static ByteBuffer encode(List<BanIndex.Change> changes) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * changes.size() + 16);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0);
+            out.writeInt(changes.size());
+            for (BanIndex.Change change : changes) {
+                int issued = change.ban != null && change.ban.getIssuer().isPresent() ? ISSUED : 0;
+                if (change.address == null) {
+                    out.writeByte(change.ban != null ? PUT_PLAYER | issued : REMOVE_PLAYER);
+                    writeString(out, change.name);
+                    UUID uniqueId = change.ban != null ? ((Ban.Player) change.ban).getUniqueId().orNull() : change.uniqueId;
+                    out.writeBoolean(uniqueId != null);
+                    if (uniqueId != null) {
+                        out.writeLong(uniqueId.getMostSignificantBits());
+                        out.writeLong(uniqueId.getLeastSignificantBits());
+                    }
+                } else {
+                    out.writeByte(change.ban != null ? PUT_ADDRESS | issued : REMOVE_ADDRESS);
+                    byte[] address = change.address.getAddress();
+                    out.writeByte(address.length);
+                    out.write(address);
+                    out.writeByte(change.prefixLength);
+                }
+                if (change.ban != null) {
+                    Ban ban = change.ban;
+                    out.writeLong(ban.getStartMillis());
+                    out.writeLong(ban.getExpirationMillis());
+                    writeString(out, ban.getReason());
+                    if (issued != 0) {
+                        writeString(out, ban.getIssuer().get());
+                    }
+                }
+            }
+            byte[] record = bytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(record, 4, record.length - 4);
+            ByteBuffer buffer = ByteBuffer.allocate(record.length + 4);
+            buffer.put(record).putInt((int) crc.getValue()).flip();
+            buffer.putInt(0, record.length - 4);
+            return buffer;
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Replays the records of a journal into an index, stopping at the first
+     * incomplete or corrupt record, which is what a crash mid-write leaves.
+     */
+    private static void replay(File file, BanIndex index) throws IOException {
+        // Read through a stream rather than a mapping, which could not be dropped before the file is truncated
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+        long size = file.length();
+        long valid = 0;
+        try {
+            while (size - valid >= 8) {
+                int length = in.readInt();
+                if (length < 4 || length + 8L > size - valid) {
+                    break;
+                }
+                byte[] record = new byte[length];
+                in.readFully(record);
+                CRC32 crc = new CRC32();
+                crc.update(record);
+                if ((int) crc.getValue() != in.readInt()) {
+                    break;
+                }
+                index.apply(decode(ByteBuffer.wrap(record)));
+                valid += length + 8;
+            }
+        } finally {
+            in.close();
+        }
+        if (valid < size) {
+            // Drop the torn tail, so that new records follow valid ones
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(valid);
+            } finally {
+                raf.close();
+            }
+        }
+    }
+
+    private static BanIndex.Batch decode(ByteBuffer record) throws IOException {
+        BanIndex.Batch batch = new BanIndex.Batch();
+        int count = record.getInt();
+        for (int i = 0; i < count; i++) {
+            byte op = record.get();
+            boolean issued = (op & ISSUED) != 0;
+            op &= ~ISSUED;
+            String name = null;
+            UUID uniqueId = null;
+            InetAddress address = null;
+            int prefixLength = 0;
+            if (op == PUT_PLAYER || op == REMOVE_PLAYER) {
+                name = readString(record);
+                if (record.get() != 0) {
+                    uniqueId = new UUID(record.getLong(), record.getLong());
+                }
+            } else if (op == PUT_ADDRESS || op == REMOVE_ADDRESS) {
+                byte[] bytes = new byte[record.get()];
+                record.get(bytes);
+                address = InetAddress.getByAddress(bytes);
+                prefixLength = record.get() & 0xff;
+            } else {
+                throw new IOException("Unknown ban journal operation " + op);
+            }
+            switch (op) {
+                case PUT_PLAYER:
+                    batch.putPlayer(player(name, uniqueId, issued, record));
+                    break;
+                case PUT_ADDRESS:
+                    batch.putAddress(ip(address, prefixLength, issued, record));
+                    break;
+                case REMOVE_PLAYER:
+                    if (uniqueId != null) {
+                        batch.removePlayer(uniqueId);
+                    } else {
+                        batch.removePlayer(name);
+                    }
+                    break;
+                default:
+                    batch.removeAddress(address, prefixLength);
+                    break;
+            }
+        }
+        return batch;
+    }
+
+    private static Ban.Player player(String name, UUID uniqueId, boolean issued, ByteBuffer record) {
+        long start = record.getLong();
+        long expiration = record.getLong();
+        String reason = readString(record);
+        return ImmutableBan.player(name, uniqueId, reason, issued ? readString(record) : null, start, expiration);
+    }
+
+    private static Ban.Ip ip(InetAddress address, int prefixLength, boolean issued, ByteBuffer record) {
+        long start = record.getLong();
+        long expiration = record.getLong();
+        String reason = readString(record);
+        return ImmutableBan.ip(address, prefixLength, reason, issued ? readString(record) : null, start, expiration);
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = string.getBytes(Charsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.ban;
+
+import com.google.common.base.Optional;
+import org.neptunepowered.lib.ban.Ban;
+
+/**
+ * Represents the outcome of a single ban or pardon within a bulk operation.
+ */
+public final class BanResult {
+
+    private final Ban ban;
+    private final Throwable error;
+
+    private BanResult(Ban ban, Throwable error) {
+        this.ban = ban;
+        this.error = error;
+    }
+
+    public static BanResult success(Ban ban) {
+        return new BanResult(ban, null);
+    }
+
+    public static BanResult failure(Ban ban, Throwable error) {
+        return new BanResult(ban, error);
+    }
+
+    /**
+     * Gets the ban that was added or pardoned.
+     *
+     * @return The ban
+     */
+    public Ban getBan() {
+        return ban;
+    }
+
+    /**
+     * Gets whether the ban was added or pardoned successfully.
+     *
+     * @return True if the operation succeeded, false otherwise
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * Gets the reason the operation failed, if it did.
+     *
+     * @return The error or {@link Optional#absent()}
+     */
+    public Optional<Throwable> getError() {
+        return Optional.fromNullable(error);
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.ban;
+
+import org.neptunepowered.lib.ban.Ban;
+import org.neptunepowered.lib.ban.BanType;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Represents a search of the active bans held in a {@link BanIndex}.
+ *
+ * <p>The search is answered from whichever secondary index narrows it down
+ * to the fewest bans, see {@link #getPlan()}, and the remaining filters are
+ * applied while taking the bans from it, stopping once the limit is
+ * reached. Bans that have expired or been removed
+ * from the backend are not found, use a
+ * {@link org.neptunepowered.lib.service.BanQuery} for those.</p>
+ */
+public class BanSearch implements Iterable<Ban> {
+
+    /**
+     * The secondary index a search is answered from.
+     */
+    public enum Plan {
+        START,
+        EXPIRATION,
+        REASON,
+        ISSUER,
+        ALL
+    }
+
+    private final BanIndex index;
+    private BanType type = null;
+    long startFrom = Long.MIN_VALUE;
+    long startTo = Long.MAX_VALUE;
+    long expirationFrom = Long.MIN_VALUE;
+    long expirationTo = Long.MAX_VALUE;
+    boolean expiring = false;
+    String[] words = new String[0];
+    String issuer = null;
+    int limit = Integer.MAX_VALUE;
+
+    BanSearch(BanIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Only matches bans of the given type.
+     *
+     * @param type The ban type
+     * @return This search
+     */
+    public BanSearch type(BanType type) {
+        this.type = type;
+        return this;
+    }
+
+    /**
+     * Only matches bans started within the given range.
+     *
+     * @param from The start of the range, inclusive
+     * @param to The end of the range, exclusive
+     * @return This search
+     */
+    public BanSearch issuedBetween(Date from, Date to) {
+        this.startFrom = from.getTime();
+        this.startTo = to.getTime();
+        return this;
+    }
+
+    /**
+     * Only matches bans expiring within the given range. Indefinite bans are
+     * never matched.
+     *
+     * @param from The start of the range, inclusive
+     * @param to The end of the range, exclusive
+     * @return This search
+     */
+    public BanSearch expiringBetween(Date from, Date to) {
+        this.expirationFrom = from.getTime();
+        this.expirationTo = to.getTime();
+        this.expiring = true;
+        return this;
+    }
+
+    /**
+     * Only matches bans whose reason contains all the given words, ignoring
+     * case and punctuation.
+     *
+     * @param keywords The words to match
+     * @return This search
+     */
+    public BanSearch reasonContains(String keywords) {
+        this.words = BanSearchIndex.words(keywords);
+        return this;
+    }
+
+    /**
+     * Only matches bans issued by the given source, ignoring case.
+     *
+     * @param issuer The issuer
+     * @return This search
+     */
+    public BanSearch issuedBy(String issuer) {
+        this.issuer = BanSearchIndex.normalise(issuer);
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of bans returned.
+     *
+     * @param limit The limit
+     * @return This search
+     */
+    public BanSearch limit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive, but was " + limit);
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Gets the secondary index the search would currently be answered from.
+     *
+     * @return The plan
+     */
+    public Plan getPlan() {
+        return index.plan(this);
+    }
+
+    /**
+     * Iterates over the matching bans, up to the limit, as of the version of
+     * the index when this is called. Bans are matched as the iterator
+     * advances, without holding the lock of the index, so the search should
+     * not be changed meanwhile.
+     *
+     * @return An iterator over the matching bans
+     */
+    @Override
+    public Iterator<Ban> iterator() {
+        return index.find(index.plan(this), this, System.currentTimeMillis());
+    }
+
+    /**
+     * Counts the matching bans, up to the limit.
+     *
+     * @return The number of bans
+     */
+    public int count() {
+        int count = 0;
+        for (Iterator<Ban> it = iterator(); it.hasNext(); it.next()) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Gets whether a ban matches the search.
+     *
+     * @param reasons Whether each reason seen so far has all the words
+     */
+    boolean matches(Ban ban, long now, Map<String, Boolean> reasons) {
+        if (type == BanType.PLAYER && !(ban instanceof Ban.Player) || type == BanType.IP && !(ban instanceof Ban.Ip)) {
+            return false;
+        }
+        if (!BanIndex.isActive(ban, now)) {
+            return false;
+        }
+        long start = ban.getStartMillis();
+        if (start < startFrom || start >= startTo) {
+            return false;
+        }
+        if (expiring && (ban.isIndefinite() || ban.getExpirationMillis() < expirationFrom
+                || ban.getExpirationMillis() >= expirationTo)) {
+            return false;
+        }
+        if (issuer != null && !(ban.getIssuer().isPresent() && BanSearchIndex.normalise(ban.getIssuer().get()).equals(issuer))) {
+            return false;
+        }
+        if (words.length > 0) {
+            String reason = ban.getReason();
+            if (reason == null) {
+                return false;
+            }
+            // Reasons are interned, so each is only split once
+            Boolean contains = reasons.get(reason);
+            if (contains == null) {
+                Set<String> present = new HashSet<String>(Arrays.asList(BanSearchIndex.words(reason)));
+                contains = present.containsAll(Arrays.asList(words));
+                reasons.put(reason, contains);
+            }
+            return contains;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.ban;
+
+import org.neptunepowered.lib.ban.Ban;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The secondary indexes of a {@link BanIndex}, by start and expiration, by
+ * the words of the reason and by issuer, which {@link BanSearch}es are
+ * answered from.
+ *
+ * <p>Entries are only ever added. Those that have since been replaced or
+ * removed from the index are skipped when searching, and dropped once they
+ * make up most of the entries. Not thread-safe, it is guarded by the lock of
+ * its index.</p>
+ *
+ * <p>The lists handed out are views of arrays whose elements are never
+ * changed once written, so they can still be read once the lock has been
+ * released. Adding entries, or sorting them, writes to other elements or to
+ * new arrays.</p>
+ */
+final class BanSearchIndex {
+
+    private final SortedIndex byStart = new SortedIndex();
+    private final SortedIndex byExpiration = new SortedIndex();
+    private final Map<String, Postings> byWord = new HashMap<String, Postings>();
+    private final Map<String, Postings> byIssuer = new HashMap<String, Postings>();
+    // Reasons are interned, and most bans share one of a few
+    private final Map<String, String[]> reasonWords = new HashMap<String, String[]>();
+
+    void add(IndexEntry<?> entry) {
+        Ban ban = entry.ban;
+        byStart.add(ban.getStartMillis(), entry);
+        byExpiration.add(expirationKey(ban), entry);
+        String reason = ban.getReason();
+        if (reason != null) {
+            String[] words = reasonWords.get(reason);
+            if (words == null) {
+                words = words(reason);
+                reasonWords.put(reason, words);
+            }
+            for (String word : words) {
+                post(byWord, word, entry);
+            }
+        }
+        if (ban.getIssuer().isPresent()) {
+            post(byIssuer, normalise(ban.getIssuer().get()), entry);
+        }
+    }
+
+    void clear() {
+        byStart.clear();
+        byExpiration.clear();
+        byWord.clear();
+        byIssuer.clear();
+        reasonWords.clear();
+    }
+
+    /**
+     * Gets the number of entries held, including those no longer in the
+     * index.
+     */
+    int size() {
+        return byStart.size;
+    }
+
+    /**
+     * Gets the entries started within a range, ordered by start.
+     */
+    List<IndexEntry<?>> started(long from, long to) {
+        return byStart.range(from, to);
+    }
+
+    int countStarted(long from, long to) {
+        return byStart.count(from, to);
+    }
+
+    /**
+     * Gets the entries expiring within a range, ordered by expiration.
+     */
+    List<IndexEntry<?>> expiring(long from, long to) {
+        return byExpiration.range(from, to);
+    }
+
+    int countExpiring(long from, long to) {
+        return byExpiration.count(from, to);
+    }
+
+    /**
+     * Gets the entries whose reason has a word.
+     */
+    List<IndexEntry<?>> withWord(String word) {
+        return postings(byWord, word);
+    }
+
+    /**
+     * Gets the entries issued by an issuer, ignoring case.
+     */
+    List<IndexEntry<?>> issuedBy(String issuer) {
+        return postings(byIssuer, normalise(issuer));
+    }
+
+    /**
+     * Gets every entry, ordered by start.
+     */
+    List<IndexEntry<?>> all() {
+        return byStart.range(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Splits text into the lower case words it is indexed by.
+     */
+    static String[] words(String text) {
+        Set<String> words = new LinkedHashSet<String>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean letter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase(Locale.ENGLISH));
+                start = -1;
+            }
+        }
+        return words.toArray(new String[words.size()]);
+    }
+
+    static String normalise(String issuer) {
+        return issuer.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Gets the key a ban is ordered by expiration with, which puts bans that
+     * do not expire after all others.
+     */
+    static long expirationKey(Ban ban) {
+        return ban.isIndefinite() ? Long.MAX_VALUE : ban.getExpirationMillis();
+    }
+
+    private static void post(Map<String, Postings> index, String key, IndexEntry<?> entry) {
+        Postings postings = index.get(key);
+        if (postings == null) {
+            postings = new Postings();
+            index.put(key, postings);
+        }
+        postings.add(entry);
+    }
+
+    private static List<IndexEntry<?>> postings(Map<String, Postings> index, String key) {
+        Postings postings = index.get(key);
+        return postings == null ? Collections.<IndexEntry<?>>emptyList() : postings.list();
+    }
+
+    /**
+     * The entries posted under a key, in the order they were added.
+     */
+    private static final class Postings {
+
+        private IndexEntry<?>[] entries = new IndexEntry<?>[4];
+        private int size = 0;
+
+        private void add(IndexEntry<?> entry) {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            entries[size++] = entry;
+        }
+
+        private List<IndexEntry<?>> list() {
+            return Arrays.<IndexEntry<?>>asList(entries).subList(0, size);
+        }
+    }
+
+    /**
+     * Entries sorted by a long key, in parallel arrays. Entries are appended
+     * unsorted, and merged with the sorted entries into new arrays before the
+     * next search, so adding many between searches costs a single sort.
+     */
+    private static final class SortedIndex {
+
+        private long[] keys = new long[16];
+        private IndexEntry<?>[] entries = new IndexEntry<?>[16];
+        private int size = 0;
+        // The entries before this are sorted
+        private int sorted = 0;
+
+        private void add(long key, IndexEntry<?> entry) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            keys[size] = key;
+            entries[size] = entry;
+            size++;
+        }
+
+        private void clear() {
+            keys = new long[16];
+            entries = new IndexEntry<?>[16];
+            size = 0;
+            sorted = 0;
+        }
+
+        private List<IndexEntry<?>> range(long from, long to) {
+            flush();
+            int start = lowerBound(from);
+            int end = lowerBound(to);
+            return Arrays.<IndexEntry<?>>asList(entries).subList(start, Math.max(start, end));
+        }
+
+        private int count(long from, long to) {
+            flush();
+            return Math.max(0, lowerBound(to) - lowerBound(from));
+        }
+
+        /**
+         * Gets the index of the first entry with a key of at least the one
+         * given.
+         */
+        private int lowerBound(long key) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (keys[middle] < key) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private void flush() {
+            if (sorted == size) {
+                return;
+            }
+            long[] tailKeys = Arrays.copyOfRange(keys, sorted, size);
+            IndexEntry<?>[] tailEntries = Arrays.copyOfRange(entries, sorted, size);
+            sort(tailKeys, tailEntries, 0, tailKeys.length, tailKeys.clone(), tailEntries.clone());
+            // Merge the sorted tail with the sorted head, leaving the arrays ranges were taken from as they are
+            long[] mergedKeys = new long[keys.length];
+            IndexEntry<?>[] mergedEntries = new IndexEntry<?>[entries.length];
+            int i = 0;
+            int j = 0;
+            for (int k = 0; k < size; k++) {
+                if (j >= tailKeys.length || (i < sorted && keys[i] <= tailKeys[j])) {
+                    mergedKeys[k] = keys[i];
+                    mergedEntries[k] = entries[i++];
+                } else {
+                    mergedKeys[k] = tailKeys[j];
+                    mergedEntries[k] = tailEntries[j++];
+                }
+            }
+            keys = mergedKeys;
+            entries = mergedEntries;
+            sorted = size;
+        }
+
+        /**
+         * A stable merge sort of parallel arrays, using the copies as scratch
+         * space.
+         */
+        private static void sort(long[] keys, IndexEntry<?>[] entries, int from, int to, long[] scratchKeys,
+                IndexEntry<?>[] scratchEntries) {
+            if (to - from < 2) {
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            sort(scratchKeys, scratchEntries, from, middle, keys, entries);
+            sort(scratchKeys, scratchEntries, middle, to, keys, entries);
+            int i = from;
+            int j = middle;
+            for (int k = from; k < to; k++) {
+                if (j >= to || (i < middle && scratchKeys[i] <= scratchKeys[j])) {
+                    keys[k] = scratchKeys[i];
+                    entries[k] = scratchEntries[i++];
+                } else {
+                    keys[k] = scratchKeys[j];
+                    entries[k] = scratchEntries[j++];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,393 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.ban;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import org.neptunepowered.lib.ban.Ban;
+import org.neptunepowered.lib.ban.ImmutableBan;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A compact, versioned binary snapshot of the bans in a {@link BanIndex}.
+ *
+ * <p>The file starts with a header, followed by a table of the distinct
+ * strings (reasons, issuers and player names), the player ban records and
+ * the IP ban records, and ends with a CRC32 of everything before it. Records
+ * are fixed width, 44 bytes each, and refer to strings by their index:</p>
+ *
+ * <pre>
+ * player: long start, long expiration, int reason, int issuer, int name, long uuidMost, long uuidLeast
+ * ip:     long start, long expiration, int reason, int issuer, byte prefix, byte length, byte[16] address, short padding
+ * </pre>
+ *
+ * <p>Snapshots of the first version, whose records have no issuer and are
+ * 40 bytes each, can still be read.</p>
+ *
+ * <p>An expiration of -1 means the ban is indefinite, and a string index of
+ * -1 means there is no string. The UUID is zero if it is not known.</p>
+ *
+ * <p>A snapshot that has been read keeps only its strings on the heap. The
+ * records stay in the mapping of the file, and a ban is only created when
+ * it is read from the lists, so loading an index from a snapshot does not
+ * hold every ban twice.</p>
+ */
+public final class BanSnapshot {
+
+    private static final int MAGIC = 0x4e42414e; // NBAN
+    private static final short FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = 4 + 2 + 2 + 8 + 4 + 4 + 4;
+    private static final int RECORD_SIZE = 44;
+
+    // Only read with absolute gets, so the lists can be read from many threads
+    private final ByteBuffer records;
+    private final int recordSize;
+    private final boolean issued;
+    private final String[] strings;
+    private final int playerCount;
+    private final int ipCount;
+    private final long createdMillis;
+
+    private BanSnapshot(ByteBuffer records, boolean issued, String[] strings, int playerCount, int ipCount, long createdMillis) {
+        this.records = records;
+        this.recordSize = issued ? RECORD_SIZE : RECORD_SIZE - 4;
+        this.issued = issued;
+        this.strings = strings;
+        this.playerCount = playerCount;
+        this.ipCount = ipCount;
+        this.createdMillis = createdMillis;
+    }
+
+    /**
+     * Gets the player bans in the snapshot, each of which is created from
+     * its record when it is read.
+     *
+     * @return The player bans
+     */
+    public List<Ban.Player> getPlayerBans() {
+        return new AbstractList<Ban.Player>() {
+            @Override
+            public Ban.Player get(int index) {
+                checkElementIndex(index, playerCount);
+                return player(index);
+            }
+
+            @Override
+            public int size() {
+                return playerCount;
+            }
+        };
+    }
+
+    /**
+     * Gets the IP bans in the snapshot, each of which is created from its
+     * record when it is read.
+     *
+     * @return The IP bans
+     */
+    public List<Ban.Ip> getIpBans() {
+        return new AbstractList<Ban.Ip>() {
+            @Override
+            public Ban.Ip get(int index) {
+                checkElementIndex(index, ipCount);
+                return ip(index);
+            }
+
+            @Override
+            public int size() {
+                return ipCount;
+            }
+        };
+    }
+
+    /**
+     * Gets the time the snapshot was written.
+     *
+     * @return The time, in milliseconds since the epoch
+     */
+    public long getCreatedMillis() {
+        return createdMillis;
+    }
+
+    /**
+     * Writes a snapshot of the given index entries.
+     *
+     * <p>The snapshot is written to a temporary file first, which then
+     * replaces the file, so a crash never leaves a partial snapshot.</p>
+     *
+     * @param file The file to write to
+     * @param entries The entries
+     * @throws IOException If the snapshot could not be written
+     * @see BanIndex#writeSnapshot(File)
+     */
+    static void write(File file, List<IndexEntry<?>> entries) throws IOException {
+        List<IndexEntry<?>> players = new ArrayList<IndexEntry<?>>();
+        List<IndexEntry<?>> ips = new ArrayList<IndexEntry<?>>();
+        Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+        for (IndexEntry<?> entry : entries) {
+            intern(strings, entry.ban.getReason());
+            intern(strings, entry.ban.getIssuer().orNull());
+            if (entry.name != null) {
+                players.add(entry);
+                intern(strings, ((Ban.Player) entry.ban).getName());
+            } else {
+                ips.add(entry);
+            }
+        }
+
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create directory " + directory);
+        }
+        File temporary = new File(file.getPath() + ".tmp");
+        FileOutputStream fileOut = new FileOutputStream(temporary);
+        try {
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(fileOut, 1 << 16), crc));
+            out.writeInt(MAGIC);
+            out.writeShort(FORMAT_VERSION);
+            out.writeShort(0);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(strings.size());
+            out.writeInt(players.size());
+            out.writeInt(ips.size());
+            for (String string : strings.keySet()) {
+                byte[] bytes = string.getBytes(Charsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            for (IndexEntry<?> entry : players) {
+                Ban.Player ban = (Ban.Player) entry.ban;
+                writeCommon(out, ban, strings);
+                out.writeInt(strings.get(ban.getName()));
+                Optional<UUID> uniqueId = ban.getUniqueId();
+                out.writeLong(uniqueId.isPresent() ? uniqueId.get().getMostSignificantBits() : 0);
+                out.writeLong(uniqueId.isPresent() ? uniqueId.get().getLeastSignificantBits() : 0);
+            }
+            for (IndexEntry<?> entry : ips) {
+                writeCommon(out, entry.ban, strings);
+                byte[] address = entry.address;
+                out.writeByte(entry.prefixLength);
+                out.writeByte(address.length);
+                out.write(address);
+                out.write(new byte[16 - address.length + 2]);
+            }
+            out.flush();
+            // The checksum itself is not part of what it covers
+            new DataOutputStream(fileOut).writeLong(crc.getValue());
+            fileOut.getChannel().force(true);
+        } finally {
+            fileOut.close();
+        }
+        if (!temporary.renameTo(file)) {
+            if (!file.delete() || !temporary.renameTo(file)) {
+                throw new IOException("Could not replace " + file);
+            }
+        }
+    }
+
+    /**
+     * Reads a snapshot through a memory mapping of the file.
+     *
+     * @param file The file to read from
+     * @return The snapshot
+     * @throws IOException If the snapshot could not be read, or is corrupt
+     */
+    public static BanSnapshot read(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            if (size < HEADER_SIZE + 8 || size > Integer.MAX_VALUE) {
+                throw new IOException("Invalid ban snapshot size " + size);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            verifyChecksum(buffer, (int) size - 8);
+
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a ban snapshot");
+            }
+            short version = buffer.getShort();
+            if (version != 1 && version != FORMAT_VERSION) {
+                throw new IOException("Unsupported ban snapshot version " + version);
+            }
+            boolean issued = version >= 2;
+            buffer.getShort();
+            long created = buffer.getLong();
+            String[] strings = new String[buffer.getInt()];
+            int playerCount = buffer.getInt();
+            int ipCount = buffer.getInt();
+            // Local to the load, so that the strings are shared by its bans without being interned for good
+            Map<String, String> distinct = new HashMap<String, String>();
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                String string = new String(bytes, Charsets.UTF_8);
+                String existing = distinct.get(string);
+                if (existing == null) {
+                    distinct.put(string, string);
+                    existing = string;
+                }
+                strings[i] = existing;
+            }
+            int recordSize = issued ? RECORD_SIZE : RECORD_SIZE - 4;
+            if (buffer.remaining() - 8 != (long) (playerCount + ipCount) * recordSize) {
+                throw new IOException("Ban snapshot records are truncated");
+            }
+
+            ByteBuffer records = buffer.slice();
+            for (int i = 0; i < playerCount + ipCount; i++) {
+                if (!isValid(records, i * recordSize, issued, strings.length, i < playerCount)) {
+                    throw new IOException("Invalid ban snapshot record " + i);
+                }
+            }
+            return new BanSnapshot(records, issued, strings, playerCount, ipCount, created);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt ban snapshot " + file, e);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Checks a record can be created as a ban, so that reading the lists
+     * cannot fail once the snapshot has been read.
+     */
+    private static boolean isValid(ByteBuffer records, int offset, boolean issued, int stringCount, boolean player) {
+        if (records.getLong(offset + 8) < -1) {
+            return false;
+        }
+        int next = offset + 16;
+        int end = next + (issued ? 8 : 4);
+        for (; next < end; next += 4) {
+            int string = records.getInt(next);
+            if (string < -1 || string >= stringCount) {
+                return false;
+            }
+        }
+        if (player) {
+            int name = records.getInt(next);
+            return name >= 0 && name < stringCount;
+        }
+        int prefixLength = records.get(next) & 0xff;
+        int length = records.get(next + 1);
+        return (length == 4 || length == 16) && prefixLength <= length * 8;
+    }
+
+    private Ban.Player player(int index) {
+        int offset = index * recordSize;
+        long start = records.getLong(offset);
+        long expiration = records.getLong(offset + 8);
+        String reason = string(strings, records.getInt(offset + 16));
+        int next = offset + 20;
+        String issuer = null;
+        if (issued) {
+            issuer = string(strings, records.getInt(next));
+            next += 4;
+        }
+        String name = string(strings, records.getInt(next));
+        long uuidMost = records.getLong(next + 4);
+        long uuidLeast = records.getLong(next + 12);
+        UUID uniqueId = uuidMost == 0 && uuidLeast == 0 ? null : new UUID(uuidMost, uuidLeast);
+        return ImmutableBan.player(name, uniqueId, reason, issuer, start, expiration);
+    }
+
+    private Ban.Ip ip(int index) {
+        int offset = (playerCount + index) * recordSize;
+        long start = records.getLong(offset);
+        long expiration = records.getLong(offset + 8);
+        String reason = string(strings, records.getInt(offset + 16));
+        int next = offset + 20;
+        String issuer = null;
+        if (issued) {
+            issuer = string(strings, records.getInt(next));
+            next += 4;
+        }
+        int prefixLength = records.get(next) & 0xff;
+        byte[] address = new byte[records.get(next + 1)];
+        for (int i = 0; i < address.length; i++) {
+            address[i] = records.get(next + 2 + i);
+        }
+        try {
+            return ImmutableBan.ip(InetAddress.getByAddress(address), prefixLength, reason, issuer, start, expiration);
+        } catch (UnknownHostException e) {
+            // The length of every address was checked when the snapshot was read
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void verifyChecksum(ByteBuffer buffer, int length) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[1 << 16];
+        ByteBuffer view = buffer.duplicate();
+        view.position(0);
+        while (view.position() < length) {
+            int count = Math.min(chunk.length, length - view.position());
+            view.get(chunk, 0, count);
+            crc.update(chunk, 0, count);
+        }
+        if (view.getLong() != crc.getValue()) {
+            throw new IOException("Ban snapshot checksum mismatch");
+        }
+    }
+
+    private static void writeCommon(DataOutputStream out, Ban ban, Map<String, Integer> strings) throws IOException {
+        out.writeLong(ban.getStartMillis());
+        out.writeLong(ban.getExpirationMillis());
+        out.writeInt(ban.getReason() == null ? -1 : strings.get(ban.getReason()));
+        out.writeInt(ban.getIssuer().isPresent() ? strings.get(ban.getIssuer().get()) : -1);
+    }
+
+    private static void intern(Map<String, Integer> strings, String string) {
+        if (string != null && !strings.containsKey(string)) {
+            strings.put(string, strings.size());
+        }
+    }
+
+    private static String string(String[] strings, int index) {
+        return index < 0 ? null : strings[index];
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.ban;
+
+import net.canarymod.api.PlayerReference;
+import net.canarymod.bansystem.Ban;
+import net.canarymod.bansystem.BanType;
+
+import java.util.Collection;
+
+/**
+ * The backend bans are persisted to, which by default is Canary's own
+ * {@link net.canarymod.bansystem.BanManager}.
+ *
+ * <p>Besides the calls the ban manager has, stores take bans and pardons in
+ * batches, and can be read through a cursor, so that a store able to do
+ * better than one ban at a time gets the chance to. Stores that cannot
+ * should extend {@link AbstractBanStore}.</p>
+ *
+ * <p>Stores are called from many threads at once.</p>
+ */
+public interface BanStore {
+
+    /**
+     * Gets all the bans of a type.
+     *
+     * @param type The type of ban
+     * @return The bans
+     */
+    Ban[] getAllBans(BanType type);
+
+    /**
+     * Opens a cursor over the bans of a type, in the same order as
+     * {@link #getAllBans(BanType)} returns them.
+     *
+     * @param type The type of ban
+     * @param position The number of bans to skip
+     * @return The cursor
+     */
+    BanCursor openCursor(BanType type, int position);
+
+    /**
+     * Issues a ban.
+     *
+     * @param ban The ban
+     */
+    void issueBan(Ban ban);
+
+    /**
+     * Issues many bans at once.
+     *
+     * <p>If this fails part way, some of the bans may have been issued.</p>
+     *
+     * @param bans The bans
+     */
+    void issueBans(Collection<Ban> bans);
+
+    /**
+     * Removes all the bans on a player.
+     *
+     * @param player The player
+     */
+    void unban(PlayerReference player);
+
+    /**
+     * Removes the bans stored under a subject, which is either a player name
+     * or an IP address.
+     *
+     * @param subject The subject
+     */
+    void unban(String subject);
+
+    /**
+     * Removes the bans stored under many subjects at once.
+     *
+     * <p>If this fails part way, some of the bans may have been removed.</p>
+     *
+     * @param subjects The subjects
+     * @see #unban(String)
+     */
+    void unbanAll(Collection<String> subjects);
+}
@@ -0,0 +1,439 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.ban;
+
+import com.google.common.base.Charsets;
+import net.canarymod.api.PlayerReference;
+import net.canarymod.bansystem.Ban;
+import net.canarymod.bansystem.BanType;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link BanStore} that keeps the bans in memory, and logs every change to
+ * a local file that is replayed when the store is opened.
+ *
+ * <p>Each change is logged as one record, of its length, the change and a
+ * CRC32 of it, and a batch costs a single write. A call returns once its
+ * records are forced to disk, as the bans are reloaded from the store and a
+ * change it lost would be undone. As with the ban journal, callers that
+ * write while another is forcing the log share the next force. Once the log
+ * holds more than twice as many records as there are bans it is rewritten
+ * with just the bans.</p>
+ */
+public class FileBanStore extends MemoryBanStore implements Closeable {
+
+    private static final byte ISSUE = 1;
+    private static final byte UNBAN = 2;
+    private static final byte UNBAN_PLAYER = 3;
+    private static final int MIN_COMPACT_RECORDS = 1024;
+
+    private final File file;
+    private final Object syncLock = new Object();
+    private FileOutputStream out;
+    private long records = 0;
+    // The number of writes made, and how many of them are on disk
+    private long appended = 0;
+    private volatile long synced = 0;
+
+    private FileBanStore(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens a store, replaying any bans already logged to its file.
+     *
+     * @param file The file
+     * @return The store
+     * @throws IOException If the file could not be read or opened
+     */
+    public static FileBanStore open(File file) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create directory " + directory);
+        }
+        FileBanStore store = new FileBanStore(file);
+        synchronized (store) {
+            if (file.isFile()) {
+                store.replay();
+            }
+            store.out = new FileOutputStream(file, true);
+        }
+        return store;
+    }
+
+    @Override
+    public void issueBan(Ban ban) {
+        issueBans(Collections.singleton(ban));
+    }
+
+    @Override
+    public void issueBans(Collection<Ban> bans) {
+        long write;
+        synchronized (this) {
+            write = logIssues(bans);
+        }
+        sync(write);
+    }
+
+    private long logIssues(Collection<Ban> bans) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128 * bans.size());
+        ByteArrayOutputStream record = new ByteArrayOutputStream(128);
+        try {
+            for (Ban ban : bans) {
+                record.reset();
+                writeIssue(new DataOutputStream(record), ban);
+                frame(bytes, record);
+            }
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        long write = append(bytes, bans.size());
+        for (Ban ban : bans) {
+            put(ban);
+        }
+        compactIfNeeded();
+        return write;
+    }
+
+    @Override
+    public void unban(PlayerReference player) {
+        long write;
+        synchronized (this) {
+            write = logUnban(player);
+        }
+        sync(write);
+    }
+
+    private long logUnban(PlayerReference player) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        ByteArrayOutputStream record = new ByteArrayOutputStream(64);
+        try {
+            DataOutputStream data = new DataOutputStream(record);
+            data.writeByte(UNBAN_PLAYER);
+            writeString(data, player.getName());
+            writeString(data, player.getUUIDString());
+            frame(bytes, record);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        long write = append(bytes, 1);
+        removePlayer(player.getName(), player.getUUIDString());
+        compactIfNeeded();
+        return write;
+    }
+
+    @Override
+    public void unban(String subject) {
+        unbanAll(Collections.singleton(subject));
+    }
+
+    @Override
+    public void unbanAll(Collection<String> subjects) {
+        long write;
+        synchronized (this) {
+            write = logUnbans(subjects);
+        }
+        sync(write);
+    }
+
+    private long logUnbans(Collection<String> subjects) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 * subjects.size());
+        ByteArrayOutputStream record = new ByteArrayOutputStream(32);
+        try {
+            for (String subject : subjects) {
+                record.reset();
+                DataOutputStream data = new DataOutputStream(record);
+                data.writeByte(UNBAN);
+                writeString(data, subject);
+                frame(bytes, record);
+            }
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        long write = append(bytes, subjects.size());
+        for (String subject : subjects) {
+            remove(subject);
+        }
+        compactIfNeeded();
+        return write;
+    }
+
+    /**
+     * Closes the file, forcing what has been written to it to disk.
+     *
+     * @throws IOException If the file could not be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (out != null) {
+            try {
+                out.getFD().sync();
+                synced = appended;
+            } finally {
+                out.close();
+                out = null;
+            }
+        }
+    }
+
+    /**
+     * Writes records to the log, returning the number of the write to wait
+     * for with {@link #sync}.
+     */
+    private long append(ByteArrayOutputStream bytes, int count) {
+        if (out == null) {
+            throw new IllegalStateException("Ban store " + file + " is closed");
+        }
+        try {
+            bytes.writeTo(out);
+            out.flush();
+            records += count;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write to the ban store " + file, e);
+        }
+        return ++appended;
+    }
+
+    /**
+     * Waits until the given write, and all before it, are on disk, forcing
+     * the log unless another caller already has.
+     */
+    private void sync(long write) {
+        if (synced >= write) {
+            return;
+        }
+        synchronized (syncLock) {
+            // Whoever forced the log while we waited may have covered our write too
+            while (synced < write) {
+                FileChannel channel;
+                long target;
+                synchronized (this) {
+                    if (out == null) {
+                        throw new IllegalStateException("Ban store " + file + " is closed");
+                    }
+                    channel = out.getChannel();
+                    target = appended;
+                }
+                try {
+                    channel.force(false);
+                } catch (ClosedChannelException e) {
+                    // Replaced by a compaction, which forced it first, so check again
+                    continue;
+                } catch (IOException e) {
+                    throw new IllegalStateException("Failed to force the ban store " + file + " to disk", e);
+                }
+                synchronized (this) {
+                    synced = Math.max(synced, target);
+                }
+            }
+        }
+    }
+
+    private void compactIfNeeded() {
+        long live = size(BanType.UUID) + size(BanType.IP);
+        if (records < MIN_COMPACT_RECORDS || records <= live * 2) {
+            return;
+        }
+        File temporary = new File(file.getPath() + ".tmp");
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+            ByteArrayOutputStream record = new ByteArrayOutputStream(128);
+            FileOutputStream compacted = new FileOutputStream(temporary);
+            try {
+                for (BanType type : BanType.values()) {
+                    for (Ban ban : getAllBans(type)) {
+                        record.reset();
+                        writeIssue(new DataOutputStream(record), ban);
+                        frame(bytes, record);
+                        if (bytes.size() >= 1 << 16) {
+                            bytes.writeTo(compacted);
+                            bytes.reset();
+                        }
+                    }
+                }
+                bytes.writeTo(compacted);
+                compacted.getFD().sync();
+            } finally {
+                compacted.close();
+            }
+        } catch (IOException e) {
+            // Carry on appending to the old log, which is still complete
+            temporary.delete();
+            return;
+        }
+        try {
+            // Writes still waiting for a force are in both logs, so either one may end up in place
+            out.getFD().sync();
+            synced = appended;
+        } catch (IOException ignored) {
+            // Left to the force of the reopened log
+        }
+        try {
+            out.close();
+        } catch (IOException ignored) {
+            // Everything was flushed as it was written
+        }
+        if (temporary.renameTo(file) || (file.delete() && temporary.renameTo(file))) {
+            records = live;
+        }
+        try {
+            out = new FileOutputStream(file, true);
+        } catch (IOException e) {
+            out = null;
+        }
+    }
+
+    private void replay() throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+        long valid = 0;
+        try {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length < 1 || length > file.length()) {
+                    break;
+                }
+                byte[] record = new byte[length];
+                int crc;
+                try {
+                    in.readFully(record);
+                    crc = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                CRC32 check = new CRC32();
+                check.update(record);
+                if ((int) check.getValue() != crc) {
+                    break;
+                }
+                replay(new DataInputStream(new ByteArrayInputStream(record)));
+                records++;
+                valid += length + 8;
+            }
+        } finally {
+            in.close();
+        }
+        if (valid < file.length()) {
+            // Drop the torn tail, so that new records follow valid ones
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(valid);
+            } finally {
+                raf.close();
+            }
+        }
+    }
+
+    private void replay(DataInputStream record) throws IOException {
+        byte op = record.readByte();
+        switch (op) {
+            case ISSUE:
+                Ban ban = new Ban();
+                ban.setBanType(record.readBoolean() ? BanType.IP : BanType.UUID);
+                ban.setSubject(readString(record));
+                ban.setUUID(readString(record));
+                ban.setIp(readString(record));
+                ban.setBanningPlayer(readString(record));
+                ban.setReason(readString(record));
+                ban.setIssuedDate(record.readLong());
+                ban.setExpiration(record.readLong());
+                put(ban);
+                break;
+            case UNBAN:
+                remove(readString(record));
+                break;
+            case UNBAN_PLAYER:
+                removePlayer(readString(record), readString(record));
+                break;
+            default:
+                throw new IOException("Unknown ban store operation " + op);
+        }
+    }
+
+    private static void writeIssue(DataOutputStream record, Ban ban) throws IOException {
+        record.writeByte(ISSUE);
+        record.writeBoolean(ban.getBanType() == BanType.IP);
+        writeString(record, ban.getSubject());
+        writeString(record, ban.getUUID());
+        writeString(record, ban.getIp());
+        writeString(record, ban.getBanningPlayer());
+        writeString(record, ban.getReason());
+        record.writeLong(ban.getIssuedDate());
+        record.writeLong(ban.getExpiration());
+    }
+
+    /**
+     * Appends a record to a buffer, between its length and its CRC32.
+     */
+    private static void frame(ByteArrayOutputStream bytes, ByteArrayOutputStream record) throws IOException {
+        byte[] payload = record.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.writeInt((int) crc.getValue());
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = string.getBytes(Charsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.ban;
+
+import org.neptunepowered.lib.ban.Ban;
+
+/**
+ * An entry of the {@link BanIndex}, recording the versions of the index in
+ * which its ban was added and removed.
+ *
+ * <p>Entries written by a batch are stamped with the version of that batch,
+ * and only become visible, or stop being visible, once the index publishes
+ * that version. An entry that is replaced counts as removed in the version
+ * that replaced it.</p>
+ *
+ * <p>Player entries also record the UUID they are indexed by, and the
+ * normalised name of the player. Bans that do not record a UUID are indexed
+ * by one derived from the name. IP entries record the bytes and prefix
+ * length of the address they are indexed by. Entries of temporary bans hold
+ * the handle of their scheduled expiry.</p>
+ */
+final class IndexEntry<T extends Ban> {
+
+    final T ban;
+    final String name;
+    final long most;
+    final long least;
+    final boolean byName;
+    final byte[] address;
+    final int prefixLength;
+    final long added;
+    volatile long removed;
+    BanExpiryScheduler.Timeout timeout;
+
+    IndexEntry(T ban, String name, long most, long least, boolean byName, long added) {
+        this.ban = ban;
+        this.name = name;
+        this.most = most;
+        this.least = least;
+        this.byName = byName;
+        this.address = null;
+        this.prefixLength = 0;
+        this.added = added;
+    }
+
+    IndexEntry(T ban, byte[] address, int prefixLength, long added) {
+        this.ban = ban;
+        this.name = null;
+        this.most = 0;
+        this.least = 0;
+        this.byName = false;
+        this.address = address;
+        this.prefixLength = prefixLength;
+        this.added = added;
+    }
+
+    /**
+     * Gets whether the entry is part of the given version of the index.
+     */
+    boolean isVisible(long version) {
+        long removed = this.removed;
+        return added <= version && (removed == 0 || removed > version);
+    }
+
+    /**
+     * Gets whether the entry is part of the given version of the index, and
+     * its ban has not expired.
+     */
+    boolean isActive(long version, long now) {
+        return isVisible(version) && BanIndex.isActive(ban, now);
+    }
+}
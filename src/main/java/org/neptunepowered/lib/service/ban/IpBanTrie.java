@@ -0,0 +1,352 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.ban;
+
+import org.neptunepowered.lib.ban.Ban;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A path-compressed binary radix (Patricia) trie of IP bans, supporting
+ * longest-prefix matching over raw address bytes.
+ *
+ * <p>IPv4 addresses are stored as IPv4-mapped IPv6 addresses, so every key
+ * is 128 bits wide and a lookup visits at most 128 nodes, regardless of the
+ * number of bans. Nodes are held in parallel primitive arrays.</p>
+ *
+ * <p>Mutations are serialised, while lookups take no locks: a node is fully
+ * written before the volatile store that links it into the trie, and a grown
+ * node pool is only published once it has been copied.</p>
+ *
+ * <p>Removing a ban only clears its node, so once most nodes are dead the
+ * trie is rebuilt from the remaining bans into a new pool, which is
+ * published the same way.</p>
+ */
+public class IpBanTrie {
+
+    private static final int NONE = 0;
+    private static final int ROOT = 0;
+    private static final long IPV4_MAPPED = 0x0000ffff00000000L;
+    // Below this many nodes, dead ones are left alone
+    private static final int MIN_COMPACT_NODES = 1024;
+
+    private volatile Nodes nodes = new Nodes(64);
+    private int nodeCount = 1;
+    private int size = 0;
+
+    /**
+     * Adds, or replaces, the entry for an address prefix.
+     *
+     * @param address The raw address bytes, either 4 or 16 of them
+     * @param prefixLength The number of leading bits the ban covers
+     * @param ban The entry
+     */
+    synchronized void put(byte[] address, int prefixLength, IndexEntry<Ban.Ip> ban) {
+        int length = keyLength(address, prefixLength);
+        put(mask(high(address), 0, length), mask(low(address), 64, length), length, ban);
+    }
+
+    private void put(long hi, long lo, int length, IndexEntry<Ban.Ip> ban) {
+        Nodes n = nodes;
+        int node = ROOT;
+        while (true) {
+            if (n.length[node] == length) {
+                if (n.values.getAndSet(node, ban) == null) {
+                    size++;
+                }
+                return;
+            }
+            int slot = node * 2 + bit(hi, lo, n.length[node]);
+            int child = n.children.get(slot);
+            if (child == NONE) {
+                n = reserve(1);
+                n.children.set(slot, newNode(n, hi, lo, length, ban));
+                size++;
+                return;
+            }
+            int common = commonPrefix(hi, lo, n.hi[child], n.lo[child], Math.min(length, n.length[child]));
+            if (common == n.length[child]) {
+                node = child;
+                continue;
+            }
+
+            // Split the edge, the new branch node is only linked in once complete
+            n = reserve(2);
+            int branch = newNode(n, mask(hi, 0, common), mask(lo, 64, common), common, null);
+            n.children.set(branch * 2 + bit(n.hi[child], n.lo[child], common), child);
+            if (common == length) {
+                n.values.set(branch, ban);
+            } else {
+                n.children.set(branch * 2 + bit(hi, lo, common), newNode(n, hi, lo, length, ban));
+            }
+            n.children.set(slot, branch);
+            size++;
+            return;
+        }
+    }
+
+    /**
+     * Gets the entry for exactly the given address prefix.
+     *
+     * @param address The raw address bytes, either 4 or 16 of them
+     * @param prefixLength The number of leading bits the ban covers
+     * @return The entry, or null if there is none
+     */
+    IndexEntry<Ban.Ip> get(byte[] address, int prefixLength) {
+        Nodes n = nodes;
+        int node = find(n, address, prefixLength);
+        return node < 0 ? null : n.values.get(node);
+    }
+
+    /**
+     * Removes the entry for exactly the given address prefix, if it is still
+     * the expected one.
+     *
+     * @param address The raw address bytes, either 4 or 16 of them
+     * @param prefixLength The number of leading bits the ban covers
+     * @param expected The entry expected to be removed
+     * @return True if the entry was removed, false otherwise
+     */
+    synchronized boolean remove(byte[] address, int prefixLength, IndexEntry<Ban.Ip> expected) {
+        Nodes n = nodes;
+        int node = find(n, address, prefixLength);
+        if (node < 0 || !n.values.compareAndSet(node, expected, null)) {
+            return false;
+        }
+        size--;
+        // A trie of this many bans needs at most twice as many nodes
+        if (nodeCount > MIN_COMPACT_NODES && nodeCount > 4 * (size + 1)) {
+            compact();
+        }
+        return true;
+    }
+
+    /**
+     * Rebuilds the trie from its bans, dropping the nodes left by those
+     * removed. Lookups carry on in the old pool until the new one is
+     * published.
+     */
+    private void compact() {
+        Nodes n = nodes;
+        IpBanTrie rebuilt = new IpBanTrie();
+        for (int node = 0; node < nodeCount; node++) {
+            IndexEntry<Ban.Ip> entry = n.values.get(node);
+            if (entry != null) {
+                rebuilt.put(n.hi[node], n.lo[node], n.length[node], entry);
+            }
+        }
+        nodeCount = rebuilt.nodeCount;
+        size = rebuilt.size;
+        nodes = rebuilt.nodes;
+    }
+
+    /**
+     * Finds the node of exactly the given address prefix, or -1 if there is none.
+     */
+    private static int find(Nodes n, byte[] address, int prefixLength) {
+        int length = keyLength(address, prefixLength);
+        long hi = mask(high(address), 0, length);
+        long lo = mask(low(address), 64, length);
+
+        int node = ROOT;
+        while (n.length[node] < length) {
+            node = n.children.get(node * 2 + bit(hi, lo, n.length[node]));
+            if (node == NONE || commonPrefix(hi, lo, n.hi[node], n.lo[node], n.length[node]) != n.length[node]) {
+                return -1;
+            }
+        }
+        return n.length[node] == length ? node : -1;
+    }
+
+    /**
+     * Finds the most specific active ban covering an address.
+     *
+     * @param address The raw address bytes, either 4 or 16 of them
+     * @param version The version of the index to look in
+     * @param now The current time, in milliseconds since the epoch
+     * @return The most specific active ban, or null if the address is not banned
+     */
+    Ban.Ip match(byte[] address, long version, long now) {
+        long hi = high(address);
+        long lo = low(address);
+
+        Nodes n = nodes;
+        Ban.Ip best = active(n.values.get(ROOT), version, now);
+        int node = ROOT;
+        while (n.length[node] < 128) {
+            node = n.children.get(node * 2 + bit(hi, lo, n.length[node]));
+            if (node == NONE || commonPrefix(hi, lo, n.hi[node], n.lo[node], n.length[node]) != n.length[node]) {
+                break;
+            }
+            Ban.Ip ban = active(n.values.get(node), version, now);
+            if (ban != null) {
+                best = ban;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Gets all the entries in the trie.
+     *
+     * @return The entries
+     */
+    synchronized List<IndexEntry<Ban.Ip>> entries() {
+        Nodes n = nodes;
+        List<IndexEntry<Ban.Ip>> entries = new ArrayList<IndexEntry<Ban.Ip>>(size);
+        for (int node = 0; node < nodeCount; node++) {
+            IndexEntry<Ban.Ip> entry = n.values.get(node);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Removes all bans from the trie.
+     */
+    public synchronized void clear() {
+        nodes = new Nodes(64);
+        nodeCount = 1;
+        size = 0;
+    }
+
+    /**
+     * Gets the number of bans in the trie.
+     *
+     * @return The number of bans
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of nodes in the trie, including branch nodes.
+     *
+     * @return The number of nodes
+     */
+    public synchronized int getNodeCount() {
+        return nodeCount;
+    }
+
+    private static Ban.Ip active(IndexEntry<Ban.Ip> entry, long version, long now) {
+        return entry != null && entry.isActive(version, now) ? entry.ban : null;
+    }
+
+    private Nodes reserve(int count) {
+        Nodes n = nodes;
+        if (nodeCount + count <= n.hi.length) {
+            return n;
+        }
+        Nodes grown = new Nodes(n.hi.length * 2);
+        System.arraycopy(n.hi, 0, grown.hi, 0, nodeCount);
+        System.arraycopy(n.lo, 0, grown.lo, 0, nodeCount);
+        System.arraycopy(n.length, 0, grown.length, 0, nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            grown.children.set(i * 2, n.children.get(i * 2));
+            grown.children.set(i * 2 + 1, n.children.get(i * 2 + 1));
+            grown.values.set(i, n.values.get(i));
+        }
+        nodes = grown;
+        return grown;
+    }
+
+    private int newNode(Nodes n, long hi, long lo, int length, IndexEntry<Ban.Ip> ban) {
+        int node = nodeCount++;
+        n.hi[node] = hi;
+        n.lo[node] = lo;
+        n.length[node] = length;
+        n.values.set(node, ban);
+        return node;
+    }
+
+    static int keyLength(byte[] address, int prefixLength) {
+        int width = address.length * 8;
+        if (prefixLength < 0 || prefixLength > width) {
+            throw new IllegalArgumentException("Prefix length " + prefixLength + " out of range for a " + width + " bit address");
+        }
+        return address.length == 4 ? prefixLength + 96 : prefixLength;
+    }
+
+    static long high(byte[] address) {
+        return address.length == 4 ? 0 : toLong(address, 0);
+    }
+
+    static long low(byte[] address) {
+        if (address.length == 4) {
+            return IPV4_MAPPED | (toLong(address, 0) >>> 32);
+        }
+        return toLong(address, 8);
+    }
+
+    private static long toLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value <<= 8;
+            if (offset + i < bytes.length) {
+                value |= bytes[offset + i] & 0xff;
+            }
+        }
+        return value;
+    }
+
+    static long mask(long word, int offset, int length) {
+        int bits = length - offset;
+        if (bits <= 0) {
+            return 0;
+        }
+        return bits >= 64 ? word : word & (-1L << (64 - bits));
+    }
+
+    private static int bit(long hi, long lo, int index) {
+        return (int) (index < 64 ? (hi >>> (63 - index)) & 1 : (lo >>> (127 - index)) & 1);
+    }
+
+    private static int commonPrefix(long hi1, long lo1, long hi2, long lo2, int max) {
+        long diff = hi1 ^ hi2;
+        int common = diff != 0 ? Long.numberOfLeadingZeros(diff) : 64 + Long.numberOfLeadingZeros(lo1 ^ lo2);
+        return Math.min(common, max);
+    }
+
+    private static final class Nodes {
+
+        private final long[] hi;
+        private final long[] lo;
+        private final int[] length;
+        private final AtomicIntegerArray children;
+        private final AtomicReferenceArray<IndexEntry<Ban.Ip>> values;
+
+        private Nodes(int capacity) {
+            hi = new long[capacity];
+            lo = new long[capacity];
+            length = new int[capacity];
+            children = new AtomicIntegerArray(capacity * 2);
+            values = new AtomicReferenceArray<IndexEntry<Ban.Ip>>(capacity);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.ban;
+
+import net.canarymod.api.PlayerReference;
+import net.canarymod.bansystem.Ban;
+import net.canarymod.bansystem.BanType;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A {@link BanStore} that keeps the bans in memory only, so they are lost
+ * when the server stops.
+ *
+ * <p>Player bans are stored under their subject, ignoring case, and IP bans
+ * under their address. Issuing a ban replaces any ban under the same
+ * subject.</p>
+ *
+ * <p>Reads share an array of the bans, which is only copied again after a
+ * change, so cursors are cheap to open and paging through the bans does not
+ * copy them each time.</p>
+ */
+public class MemoryBanStore implements BanStore {
+
+    private final Map<String, Ban> players = new LinkedHashMap<String, Ban>();
+    private final Map<String, String> uniqueIds = new HashMap<String, String>();
+    private final Map<String, Ban> ips = new LinkedHashMap<String, Ban>();
+    private volatile Ban[] playerView = null;
+    private volatile Ban[] ipView = null;
+
+    @Override
+    public Ban[] getAllBans(BanType type) {
+        return view(type).clone();
+    }
+
+    @Override
+    public BanCursor openCursor(BanType type, int position) {
+        return new AbstractBanStore.ArrayBanCursor(view(type), position);
+    }
+
+    @Override
+    public synchronized void issueBan(Ban ban) {
+        put(ban);
+    }
+
+    @Override
+    public synchronized void issueBans(Collection<Ban> bans) {
+        for (Ban ban : bans) {
+            put(ban);
+        }
+    }
+
+    @Override
+    public synchronized void unban(PlayerReference player) {
+        removePlayer(player.getName(), player.getUUIDString());
+    }
+
+    @Override
+    public synchronized void unban(String subject) {
+        remove(subject);
+    }
+
+    @Override
+    public synchronized void unbanAll(Collection<String> subjects) {
+        for (String subject : subjects) {
+            remove(subject);
+        }
+    }
+
+    /**
+     * Gets the number of bans of a type in the store.
+     *
+     * @param type The type of ban
+     * @return The number of bans
+     */
+    public int size(BanType type) {
+        return view(type).length;
+    }
+
+    /**
+     * Adds a ban to the maps, replacing any ban under the same subject.
+     */
+    protected void put(Ban ban) {
+        if (ban.getBanType() == BanType.IP) {
+            ips.put(ban.getIp(), ban);
+            ipView = null;
+        } else {
+            String key = normalise(ban.getSubject());
+            removePlayer(key);
+            players.put(key, ban);
+            if (ban.getUUID() != null) {
+                uniqueIds.put(ban.getUUID(), key);
+            }
+            playerView = null;
+        }
+    }
+
+    /**
+     * Removes the bans on a player from the maps.
+     */
+    protected void removePlayer(String name, String uniqueId) {
+        String key = uniqueId == null ? null : uniqueIds.get(uniqueId);
+        if (key != null) {
+            // The player may have been banned under an older name
+            removePlayer(key);
+        }
+        removePlayer(normalise(name));
+    }
+
+    /**
+     * Removes the bans under a subject from the maps.
+     */
+    protected void remove(String subject) {
+        removePlayer(normalise(subject));
+        if (ips.remove(subject) != null) {
+            ipView = null;
+        }
+    }
+
+    private void removePlayer(String key) {
+        Ban ban = players.remove(key);
+        if (ban != null) {
+            if (ban.getUUID() != null && key.equals(uniqueIds.get(ban.getUUID()))) {
+                uniqueIds.remove(ban.getUUID());
+            }
+            playerView = null;
+        }
+    }
+
+    private Ban[] view(BanType type) {
+        Ban[] view = type == BanType.IP ? ipView : playerView;
+        if (view != null) {
+            return view;
+        }
+        synchronized (this) {
+            if (type == BanType.IP) {
+                if (ipView == null) {
+                    ipView = ips.values().toArray(new Ban[ips.size()]);
+                }
+                return ipView;
+            }
+            if (playerView == null) {
+                playerView = players.values().toArray(new Ban[players.size()]);
+            }
+            return playerView;
+        }
+    }
+
+    private static String normalise(String subject) {
+        return subject == null ? null : subject.toLowerCase(Locale.ENGLISH);
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.ban;
+
+import org.neptunepowered.lib.ban.Ban;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An open-addressing hash table of player ban entries, keyed by UUID.
+ *
+ * <p>The two halves of each UUID are stored inline in a {@code long[]}, next
+ * to the slot of its entry, so a lookup neither allocates nor follows a
+ * pointer until it has found its key. Collisions are resolved by linear
+ * probing, which keeps a lookup within a cache line or two.</p>
+ *
+ * <p>Lookups take no locks. Changes are made under the lock of the table,
+ * and never move a key once it has been written: a removed entry leaves a
+ * tombstone, which only the same key may reuse, and tombstones are dropped
+ * when the table is copied into a new one as it grows. The new table is
+ * published whole.</p>
+ */
+final class PlayerBanTable {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final IndexEntry<Ban.Player> TOMBSTONE = new IndexEntry<Ban.Player>(null, null, 0, 0, false, 0);
+
+    private volatile Slots slots = new Slots(MIN_CAPACITY);
+    private int size = 0;
+    private int tombstones = 0;
+
+    /**
+     * Gets the entry of a UUID.
+     *
+     * @return The entry, or null if there is none
+     */
+    IndexEntry<Ban.Player> get(long most, long least) {
+        Slots s = slots;
+        int mask = s.mask;
+        for (int slot = hash(most, least) & mask; ; slot = (slot + 1) & mask) {
+            // The entry is read first, as its write is what publishes the key
+            IndexEntry<Ban.Player> entry = s.entries.get(slot);
+            if (entry == null) {
+                return null;
+            }
+            if (s.keys[slot * 2] == most && s.keys[slot * 2 + 1] == least) {
+                return entry == TOMBSTONE ? null : entry;
+            }
+        }
+    }
+
+    /**
+     * Adds, or replaces, the entry of a UUID.
+     *
+     * @return The entry that was replaced, or null if there was none
+     */
+    synchronized IndexEntry<Ban.Player> put(long most, long least, IndexEntry<Ban.Player> entry) {
+        if ((size + tombstones + 1) * 4L > (slots.mask + 1) * 3L) {
+            resize();
+        }
+        Slots s = slots;
+        int slot = find(s, most, least);
+        IndexEntry<Ban.Player> previous = s.entries.get(slot);
+        if (previous == null) {
+            s.keys[slot * 2] = most;
+            s.keys[slot * 2 + 1] = least;
+        }
+        s.entries.set(slot, entry);
+        if (previous == null || previous == TOMBSTONE) {
+            if (previous == TOMBSTONE) {
+                tombstones--;
+            }
+            size++;
+            return null;
+        }
+        return previous;
+    }
+
+    /**
+     * Removes the entry of a UUID, if it is the expected one.
+     *
+     * @return True if the entry was removed, false otherwise
+     */
+    synchronized boolean remove(long most, long least, IndexEntry<Ban.Player> expected) {
+        Slots s = slots;
+        int slot = find(s, most, least);
+        if (expected == null || !s.entries.compareAndSet(slot, expected, TOMBSTONE)) {
+            return false;
+        }
+        size--;
+        tombstones++;
+        return true;
+    }
+
+    /**
+     * Gets all the entries in the table.
+     */
+    synchronized List<IndexEntry<Ban.Player>> entries() {
+        Slots s = slots;
+        List<IndexEntry<Ban.Player>> entries = new ArrayList<IndexEntry<Ban.Player>>(size);
+        for (int slot = 0; slot <= s.mask; slot++) {
+            IndexEntry<Ban.Player> entry = s.entries.get(slot);
+            if (entry != null && entry != TOMBSTONE) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Removes all the entries from the table.
+     */
+    synchronized void clear() {
+        slots = new Slots(MIN_CAPACITY);
+        size = 0;
+        tombstones = 0;
+    }
+
+    /**
+     * Gets the number of entries in the table.
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of slots in the table.
+     */
+    synchronized int capacity() {
+        return slots.mask + 1;
+    }
+
+    /**
+     * Finds the slot of a key, or the empty slot it would go in.
+     */
+    private static int find(Slots s, long most, long least) {
+        int mask = s.mask;
+        for (int slot = hash(most, least) & mask; ; slot = (slot + 1) & mask) {
+            if (s.entries.get(slot) == null || (s.keys[slot * 2] == most && s.keys[slot * 2 + 1] == least)) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Copies the entries into a table with room for twice as many, leaving the
+     * tombstones behind.
+     */
+    private void resize() {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3L < (size + 1) * 8L) {
+            capacity <<= 1;
+        }
+        Slots from = slots;
+        Slots to = new Slots(capacity);
+        for (int slot = 0; slot <= from.mask; slot++) {
+            IndexEntry<Ban.Player> entry = from.entries.get(slot);
+            if (entry != null && entry != TOMBSTONE) {
+                int target = find(to, from.keys[slot * 2], from.keys[slot * 2 + 1]);
+                to.keys[target * 2] = from.keys[slot * 2];
+                to.keys[target * 2 + 1] = from.keys[slot * 2 + 1];
+                to.entries.set(target, entry);
+            }
+        }
+        tombstones = 0;
+        slots = to;
+    }
+
+    private static int hash(long most, long least) {
+        long hash = most * 0x9e3779b97f4a7c15L + least;
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        return (int) (hash ^ (hash >>> 33));
+    }
+
+    private static final class Slots {
+
+        final long[] keys;
+        final AtomicReferenceArray<IndexEntry<Ban.Player>> entries;
+        final int mask;
+
+        Slots(int capacity) {
+            this.keys = new long[capacity * 2];
+            this.entries = new AtomicReferenceArray<IndexEntry<Ban.Player>>(capacity);
+            this.mask = capacity - 1;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.ban;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import net.canarymod.api.entity.living.humanoid.Player;
+import net.canarymod.hook.HookHandler;
+import net.canarymod.hook.player.ConnectionHook;
+import net.canarymod.hook.player.DisconnectionHook;
+import net.canarymod.plugin.PluginListener;
+import org.neptunepowered.lib.service.BanService;
+
+/**
+ * Invalidates players in the {@link PlayerReferenceCache} of a ban service
+ * when they join or leave, so a player is not resolved as offline while
+ * online, or under a name they have changed.
+ */
+public class PlayerCacheListener implements PluginListener {
+
+    private final BanService banService;
+
+    public PlayerCacheListener(BanService banService) {
+        this.banService = checkNotNull(banService, "banService");
+    }
+
+    @HookHandler
+    public void onConnection(ConnectionHook hook) {
+        invalidate(hook.getPlayer());
+    }
+
+    @HookHandler
+    public void onDisconnection(DisconnectionHook hook) {
+        invalidate(hook.getPlayer());
+    }
+
+    private void invalidate(Player player) {
+        banService.getPlayerCache().invalidate(player.getName(), player.getUUID());
+    }
+}
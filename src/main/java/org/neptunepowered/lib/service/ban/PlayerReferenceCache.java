@@ -0,0 +1,183 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.ban;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import net.canarymod.api.PlayerReference;
+import org.neptunepowered.lib.ban.PlayerResolver;
+
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of the players bans apply to, so listing bans does not
+ * look each player up from the server.
+ *
+ * <p>Players are cached by UUID, or by lower case name for bans from before
+ * UUIDs were recorded, and resolved to offline players when they are not
+ * online. The least recently used players are evicted once the maximum size
+ * is reached, and every player is looked up again after the time to live,
+ * so that a player going on or offline is eventually noticed. Players
+ * should be invalidated when they change name or their bans change.</p>
+ */
+public class PlayerReferenceCache implements PlayerResolver {
+
+    private final Cache<Object, PlayerReference> players;
+    // Counts invalidations, so a lookup that raced one is not kept
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Creates a cache.
+     *
+     * @param maximumSize The most players to hold
+     * @param ttl How long a player is held for before being looked up again
+     * @param unit The unit of the time to live
+     */
+    public PlayerReferenceCache(long maximumSize, long ttl, TimeUnit unit) {
+        checkArgument(maximumSize >= 0, "maximumSize must not be negative");
+        checkArgument(ttl > 0, "ttl must be positive");
+        this.players = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl, unit)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Resolves the player a ban applies to.
+     *
+     * @param name The name of the player
+     * @param uniqueId The UUID of the player, or null if it is not known
+     * @return The player, or null if they could not be found
+     */
+    @Override
+    public PlayerReference resolve(final String name, final UUID uniqueId) {
+        Object key = key(name, uniqueId);
+        final long generation = invalidations.get();
+        final boolean[] looked = new boolean[1];
+        PlayerReference player;
+        try {
+            player = players.get(key, new Callable<PlayerReference>() {
+                @Override
+                public PlayerReference call() {
+                    looked[0] = true;
+                    return lookup(name, uniqueId);
+                }
+            });
+        } catch (CacheLoader.InvalidCacheLoadException e) {
+            // Players who could not be found are looked up again next time
+            return null;
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        } catch (UncheckedExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+        if (looked[0] && invalidations.get() != generation) {
+            // The player may have been invalidated while being looked up, after which the cache does not drop the lookup
+            players.invalidate(key);
+        }
+        return player;
+    }
+
+    /**
+     * Invalidates a player, such as when their bans change or they join
+     * under a new name.
+     *
+     * @param name The name of the player
+     * @param uniqueId The UUID of the player, or null if it is not known
+     */
+    public void invalidate(String name, UUID uniqueId) {
+        invalidations.incrementAndGet();
+        if (uniqueId != null) {
+            players.invalidate(uniqueId);
+        }
+        if (name != null) {
+            players.invalidate(name.toLowerCase(Locale.ENGLISH));
+        }
+    }
+
+    /**
+     * Invalidates every player, so each is looked up again when next
+     * resolved.
+     */
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        players.invalidateAll();
+    }
+
+    /**
+     * Gets the number of players held, which may include some that have
+     * expired but not yet been cleaned up.
+     *
+     * @return The number of players
+     */
+    public long size() {
+        return players.size();
+    }
+
+    /**
+     * Gets the hits, misses, lookups and evictions of the cache.
+     *
+     * @return The statistics
+     */
+    public CacheStats getStats() {
+        return players.stats();
+    }
+
+    /**
+     * Gets the fraction of resolutions that did not need a lookup.
+     *
+     * @return The hit ratio, or 1 if nothing has been resolved
+     */
+    public double getHitRatio() {
+        return players.stats().hitRate();
+    }
+
+    /**
+     * Looks up a player from the server, as an offline player if they are
+     * not online.
+     *
+     * @param name The name of the player
+     * @param uniqueId The UUID of the player, or null if it is not known
+     * @return The player, or null if they could not be found
+     */
+    protected PlayerReference lookup(String name, UUID uniqueId) {
+        return PlayerResolver.SERVER.resolve(name, uniqueId);
+    }
+
+    private static Object key(String name, UUID uniqueId) {
+        return uniqueId != null ? uniqueId : name.toLowerCase(Locale.ENGLISH);
+    }
+}
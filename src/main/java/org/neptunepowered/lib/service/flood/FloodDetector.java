@@ -0,0 +1,332 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.flood;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import net.canarymod.logger.Logman;
+import org.neptunepowered.lib.ban.Ban;
+import org.neptunepowered.lib.ban.BanType;
+import org.neptunepowered.lib.factory.BanFactory;
+import org.neptunepowered.lib.service.AsyncBanService;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Detects connection floods, and bans the addresses and ranges they come
+ * from for a while.
+ *
+ * <p>Connections are counted over a sliding window, both for their address
+ * and for the range it is in, in tables of a fixed size, so that floods
+ * from spoofed or scattered addresses cannot exhaust memory. IPv6 addresses
+ * are counted by their /64, which is what is usually given to a single
+ * host.</p>
+ *
+ * <p>Once either rate crosses its threshold, a temporary ban is issued on
+ * the address or range, unless it is whitelisted, or was banned within the
+ * cooldown. Bans are issued through the {@link AsyncBanService}, so that
+ * connections are never held up waiting for them.</p>
+ */
+public class FloodDetector {
+
+    private static final Logman log = Logman.getLogman("Neptune");
+
+    // Marks IPv4 keys, which would otherwise be in ffff::/16, which is not assigned
+    private static final long IPV4 = 0xFFFF000000000000L;
+    // Keeps the arithmetic of the rate tables from overflowing
+    private static final long MAX_WINDOW_MILLIS = 24 * 60 * 60 * 1000;
+
+    private final BanFactory banFactory;
+    private final AsyncBanService banService;
+    private final RateTable addresses;
+    private final RateTable ranges;
+    private final List<Range> whitelist = new CopyOnWriteArrayList<Range>();
+    private final AtomicLong bans = new AtomicLong();
+    private final AtomicLong refused = new AtomicLong();
+    private volatile int addressThreshold = 20;
+    private volatile int rangeThreshold = 100;
+    private volatile int ipv4PrefixLength = 24;
+    private volatile int ipv6PrefixLength = 48;
+    private volatile long banMillis = 10 * 60 * 1000;
+    private volatile long cooldownMillis = 60 * 1000;
+    private volatile String reason = "Connection flood";
+
+    /**
+     * Creates a detector.
+     *
+     * @param banFactory The factory to build bans with
+     * @param banService The service to issue bans through
+     * @param capacity The number of addresses, and of ranges, to count
+     * @param windowMillis The length of the sliding window
+     */
+    public FloodDetector(BanFactory banFactory, AsyncBanService banService, int capacity, long windowMillis) {
+        checkArgument(capacity > 0, "capacity must be positive");
+        checkArgument(windowMillis > 0 && windowMillis <= MAX_WINDOW_MILLIS, "windowMillis must be positive, and at most a day");
+        this.banFactory = checkNotNull(banFactory, "banFactory");
+        this.banService = checkNotNull(banService, "banService");
+        int concurrency = Runtime.getRuntime().availableProcessors() * 4;
+        this.addresses = new RateTable(capacity, concurrency, windowMillis);
+        this.ranges = new RateTable(capacity, concurrency, windowMillis);
+    }
+
+    /**
+     * Sets the thresholds, in connections per window, above which an address
+     * or a range is banned.
+     *
+     * @param addressThreshold The threshold for a single address
+     * @param rangeThreshold The threshold for a range
+     */
+    public void setThresholds(int addressThreshold, int rangeThreshold) {
+        checkArgument(addressThreshold > 0 && rangeThreshold > 0, "thresholds must be positive");
+        this.addressThreshold = addressThreshold;
+        this.rangeThreshold = rangeThreshold;
+    }
+
+    /**
+     * Sets the prefix lengths of the ranges connections are counted for.
+     *
+     * @param ipv4PrefixLength The prefix length of IPv4 ranges
+     * @param ipv6PrefixLength The prefix length of IPv6 ranges, of at most 64
+     */
+    public void setPrefixLengths(int ipv4PrefixLength, int ipv6PrefixLength) {
+        checkArgument(ipv4PrefixLength >= 0 && ipv4PrefixLength <= 32, "ipv4PrefixLength must be between 0 and 32");
+        checkArgument(ipv6PrefixLength >= 0 && ipv6PrefixLength <= 64, "ipv6PrefixLength must be between 0 and 64");
+        this.ipv4PrefixLength = ipv4PrefixLength;
+        this.ipv6PrefixLength = ipv6PrefixLength;
+    }
+
+    /**
+     * Sets how long the bans issued last, and how long after a ban the same
+     * address or range is not banned again.
+     *
+     * @param banMillis The length of the bans
+     * @param cooldownMillis The cooldown
+     */
+    public void setBanDuration(long banMillis, long cooldownMillis) {
+        checkArgument(banMillis > 0, "banMillis must be positive");
+        checkArgument(cooldownMillis >= 0, "cooldownMillis must not be negative");
+        this.banMillis = banMillis;
+        this.cooldownMillis = cooldownMillis;
+    }
+
+    /**
+     * Sets the reason given for the bans issued.
+     *
+     * @param reason The reason
+     */
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+
+    /**
+     * Whitelists an address or range, which is never banned, nor is any
+     * range containing it.
+     *
+     * @param address The address
+     * @param prefixLength The prefix length of the range
+     */
+    public void addWhitelist(InetAddress address, int prefixLength) {
+        byte[] bytes = address.getAddress();
+        checkArgument(prefixLength >= 0 && prefixLength <= bytes.length * 8, "Invalid prefix length " + prefixLength);
+        whitelist.add(new Range(bytes, prefixLength));
+    }
+
+    /**
+     * Removes every whitelisted address and range.
+     */
+    public void clearWhitelist() {
+        whitelist.clear();
+    }
+
+    /**
+     * Counts a connection, banning its address or range if it is flooding.
+     *
+     * @param address The address the connection is from
+     * @return True if the connection is part of a flood and should be
+     *     refused, false otherwise
+     */
+    public boolean onConnection(InetAddress address) {
+        long now = System.currentTimeMillis();
+        byte[] bytes = address.getAddress();
+        long addressKey;
+        long rangeKey;
+        int prefixLength;
+        if (address instanceof Inet4Address) {
+            long bits = ((bytes[0] & 0xFFL) << 24) | ((bytes[1] & 0xFFL) << 16) | ((bytes[2] & 0xFFL) << 8) | (bytes[3] & 0xFFL);
+            prefixLength = ipv4PrefixLength;
+            addressKey = IPV4 | bits;
+            rangeKey = IPV4 | (bits & (0xFFFFFFFFL << (32 - prefixLength)) & 0xFFFFFFFFL);
+        } else {
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits = (bits << 8) | (bytes[i] & 0xFFL);
+            }
+            prefixLength = ipv6PrefixLength;
+            addressKey = bits;
+            rangeKey = prefixLength == 0 ? 0 : bits & (-1L << (64 - prefixLength));
+        }
+        boolean flood = false;
+        if (addresses.hit(addressKey, now, addressThreshold)) {
+            flood = flagged(addresses, addressKey, bytes, bytes.length == 4 ? 32 : 64, now);
+        }
+        if (ranges.hit(rangeKey, now, rangeThreshold)) {
+            flood |= flagged(ranges, rangeKey, bytes, prefixLength, now);
+        }
+        if (flood) {
+            refused.incrementAndGet();
+        }
+        return flood;
+    }
+
+    /**
+     * Handles an address or range crossing its threshold.
+     *
+     * @return True if it is not whitelisted
+     */
+    private boolean flagged(final RateTable table, final long key, byte[] address, int prefixLength, long now) {
+        if (isWhitelisted(address, prefixLength)) {
+            return false;
+        }
+        if (table.claim(key, now, cooldownMillis)) {
+            Ban ban;
+            try {
+                ban = banFactory.builder()
+                        .type(BanType.IP)
+                        .address(InetAddress.getByAddress(mask(address, prefixLength)))
+                        .prefixLength(prefixLength)
+                        .reason(reason)
+                        .startDate(new Date(now))
+                        .expirationDate(new Date(now + banMillis))
+                        .build();
+            } catch (UnknownHostException e) {
+                throw new AssertionError(e);
+            }
+            bans.incrementAndGet();
+            Futures.addCallback(banService.banAsync(ban), new FutureCallback<Void>() {
+                @Override
+                public void onSuccess(Void result) {
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    // Try again on the next connection
+                    table.release(key);
+                    log.warn("Failed to ban a flooding address", t);
+                }
+            });
+        }
+        return true;
+    }
+
+    private boolean isWhitelisted(byte[] address, int prefixLength) {
+        for (Range range : whitelist) {
+            if (range.overlaps(address, prefixLength)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the number of temporary bans issued.
+     *
+     * @return The number of bans
+     */
+    public long getBanCount() {
+        return bans.get();
+    }
+
+    /**
+     * Gets the number of connections found to be part of a flood.
+     *
+     * @return The number of connections
+     */
+    public long getRefusedCount() {
+        return refused.get();
+    }
+
+    /**
+     * Gets the number of addresses and ranges that stopped being counted to
+     * make room for others.
+     *
+     * @return The number of evictions
+     */
+    public long getEvictionCount() {
+        return addresses.getEvictionCount() + ranges.getEvictionCount();
+    }
+
+    private static byte[] mask(byte[] address, int prefixLength) {
+        byte[] masked = address.clone();
+        for (int i = 0; i < masked.length; i++) {
+            int bits = prefixLength - i * 8;
+            if (bits <= 0) {
+                masked[i] = 0;
+            } else if (bits < 8) {
+                masked[i] &= 0xFF << (8 - bits);
+            }
+        }
+        return masked;
+    }
+
+    /**
+     * A whitelisted address or range.
+     */
+    private static final class Range {
+
+        private final byte[] network;
+        private final int prefixLength;
+
+        private Range(byte[] address, int prefixLength) {
+            this.network = mask(address, prefixLength);
+            this.prefixLength = prefixLength;
+        }
+
+        /**
+         * Checks if this range and another overlap, which is when the shorter
+         * prefix contains the other.
+         */
+        private boolean overlaps(byte[] address, int prefixLength) {
+            if (address.length != network.length) {
+                return false;
+            }
+            byte[] shorter = mask(address, Math.min(prefixLength, this.prefixLength));
+            byte[] other = mask(network, Math.min(prefixLength, this.prefixLength));
+            for (int i = 0; i < shorter.length; i++) {
+                if (shorter[i] != other[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.flood;
+
+/**
+ * A fixed size table of sliding window rate counters, keyed by longs.
+ *
+ * <p>Each key is counted in the window it was last seen in and the one
+ * before, and the rate is estimated by weighting the count of the previous
+ * window by how much of it the sliding window still covers. Keys are looked
+ * for among a few neighbouring slots, and when none of them is free the one
+ * with the lowest rate is evicted, so a flood of distinct keys displaces
+ * other short-lived keys rather than those with a high rate, and the table
+ * never grows.</p>
+ *
+ * <p>The table is split into segments, each guarded by its own lock.</p>
+ */
+final class RateTable {
+
+    // The neighbouring slots looked for a key in
+    private static final int PROBES = 8;
+
+    private final Segment[] segments;
+    private final int segmentShift;
+    private final long windowMillis;
+
+    RateTable(int capacity, int concurrency, long windowMillis) {
+        int segmentCount = Integer.highestOneBit(Math.max(1, Math.min(concurrency, 1 << 16)) * 2 - 1);
+        int segmentCapacity = Integer.highestOneBit(Math.max(PROBES, capacity / segmentCount) * 2 - 1);
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+        this.segmentShift = 64 - Integer.numberOfTrailingZeros(segmentCount);
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Counts a hit on a key.
+     *
+     * @return True if the estimated number of hits on the key in the sliding
+     *     window ending now, including this one, is above the threshold
+     */
+    boolean hit(long key, long now, int threshold) {
+        long hash = hash(key);
+        long window = now / windowMillis;
+        return segment(hash).hit(key, (int) hash, window, now - window * windowMillis, windowMillis, threshold);
+    }
+
+    /**
+     * Claims a key to act on, unless it was claimed within the cooldown.
+     *
+     * @return True if the key was claimed
+     */
+    boolean claim(long key, long now, long cooldownMillis) {
+        long hash = hash(key);
+        return segment(hash).claim(key, (int) hash, now, cooldownMillis);
+    }
+
+    /**
+     * Releases the claim on a key, so that it can be claimed again.
+     */
+    void release(long key) {
+        long hash = hash(key);
+        segment(hash).release(key, (int) hash);
+    }
+
+    int getCapacity() {
+        return segments.length * segments[0].capacity();
+    }
+
+    long getEvictionCount() {
+        long evictions = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                evictions += segment.evictions;
+            }
+        }
+        return evictions;
+    }
+
+    private Segment segment(long hash) {
+        return segments.length == 1 ? segments[0] : segments[(int) (hash >>> segmentShift)];
+    }
+
+    private static long hash(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
+    }
+
+    /**
+     * A segment of the table. The slots are laid out together in a single
+     * array, so that a hit touches as few cache lines as possible.
+     */
+    private static final class Segment {
+
+        // The key, the window it was last hit in or 0 if the slot is free,
+        // the hits in that window and the one before, and when it was claimed
+        private static final int KEY = 0;
+        private static final int WINDOW = 1;
+        private static final int HITS = 2;
+        private static final int CLAIMED = 3;
+        private static final int STRIDE = 4;
+
+        private final long[] slots;
+        private final int mask;
+        private long evictions = 0;
+
+        private Segment(int capacity) {
+            this.slots = new long[capacity * STRIDE];
+            this.mask = capacity - 1;
+        }
+
+        private int capacity() {
+            return mask + 1;
+        }
+
+        private synchronized boolean hit(long key, int hash, long window, long elapsed, long windowMillis, int threshold) {
+            int slot = find(key, hash);
+            if (slot < 0) {
+                slot = evict(hash, window);
+                slots[slot + KEY] = key;
+                slots[slot + WINDOW] = window;
+                slots[slot + HITS] = 0;
+                slots[slot + CLAIMED] = 0;
+            }
+            long last = slots[slot + WINDOW];
+            long hits = slots[slot + HITS];
+            int current = (int) (hits >>> 32);
+            int previous = (int) hits;
+            if (window != last) {
+                previous = window == last + 1 ? current : 0;
+                current = 0;
+                slots[slot + WINDOW] = window;
+            }
+            if (current < Integer.MAX_VALUE) {
+                current++;
+            }
+            slots[slot + HITS] = ((long) current << 32) | (previous & 0xFFFFFFFFL);
+            // Scaled by the window, rather than dividing by it
+            return current * windowMillis + previous * (windowMillis - elapsed) > threshold * windowMillis;
+        }
+
+        private synchronized boolean claim(long key, int hash, long now, long cooldownMillis) {
+            int slot = find(key, hash);
+            if (slot < 0) {
+                return true;
+            }
+            long claimed = slots[slot + CLAIMED];
+            if (claimed != 0 && now - claimed < cooldownMillis) {
+                return false;
+            }
+            slots[slot + CLAIMED] = now;
+            return true;
+        }
+
+        private synchronized void release(long key, int hash) {
+            int slot = find(key, hash);
+            if (slot >= 0) {
+                slots[slot + CLAIMED] = 0;
+            }
+        }
+
+        private int find(long key, int hash) {
+            for (int i = 0; i < PROBES; i++) {
+                int slot = ((hash + i) & mask) * STRIDE;
+                if (slots[slot + KEY] == key && slots[slot + WINDOW] != 0) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Finds the slot to put a new key in, which is a free one if there
+         * is one, or else the one with the fewest recent hits.
+         */
+        private int evict(int hash, long window) {
+            int victim = -1;
+            long lowest = Long.MAX_VALUE;
+            for (int i = 0; i < PROBES; i++) {
+                int slot = ((hash + i) & mask) * STRIDE;
+                long last = slots[slot + WINDOW];
+                if (last == 0 || last < window - 1) {
+                    return slot;
+                }
+                long hits = slots[slot + HITS];
+                long recent = last == window ? (hits >>> 32) + (hits & 0xFFFFFFFFL) : hits >>> 32;
+                if (recent < lowest) {
+                    victim = slot;
+                    lowest = recent;
+                }
+            }
+            evictions++;
+            return victim;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.metrics;
+
+/**
+ * The calls made to the ban backend that are counted.
+ */
+public enum BackendCall {
+
+    /**
+     * Reading all the bans of a type
+     */
+    GET_ALL_BANS,
+
+    /**
+     * Opening a cursor over the bans of a type
+     */
+    OPEN_CURSOR,
+
+    /**
+     * Issuing a ban
+     */
+    ISSUE_BAN,
+
+    /**
+     * Issuing a batch of bans
+     */
+    ISSUE_BANS,
+
+    /**
+     * Removing a ban
+     */
+    UNBAN,
+
+    /**
+     * Removing a batch of bans
+     */
+    UNBAN_ALL
+}
@@ -0,0 +1,271 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.metrics;
+
+import net.canarymod.logger.Logman;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counts and times the operations of the ban service, and counts the calls
+ * it makes to its backend.
+ *
+ * <p>Operations are timed with a pair of calls around them:</p>
+ *
+ * <pre>
+ * long start = metrics.start();
+ * try {
+ *     ...
+ * } finally {
+ *     metrics.record(BanOperation.IS_BANNED, start);
+ * }
+ * </pre>
+ *
+ * <p>Recording neither locks nor allocates. While disabled, neither call
+ * reads the clock, leaving a single volatile read as the only cost.</p>
+ */
+public final class BanMetrics {
+
+    private static final Logman log = Logman.getLogman("Neptune");
+    private static final long DISABLED = Long.MIN_VALUE;
+    private static final BanOperation[] OPERATIONS = BanOperation.values();
+    private static final BackendCall[] BACKEND_CALLS = BackendCall.values();
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[OPERATIONS.length];
+    private final AtomicLongArray backendCalls = new AtomicLongArray(BACKEND_CALLS.length);
+    private volatile boolean enabled = true;
+    private ObjectName objectName;
+
+    public BanMetrics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Gets whether operations are being recorded.
+     *
+     * @return True if enabled, false otherwise
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets whether operations are recorded. What has been recorded so far is
+     * kept when disabled.
+     *
+     * @param enabled True to record, false otherwise
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Marks the start of an operation.
+     *
+     * @return The value to pass to {@link #record}
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : DISABLED;
+    }
+
+    /**
+     * Records an operation that has finished.
+     *
+     * @param operation The operation
+     * @param start The value returned by {@link #start()} when it started
+     */
+    public void record(BanOperation operation, long start) {
+        if (start != DISABLED) {
+            histograms[operation.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Counts a call made to the backend.
+     *
+     * @param call The kind of call
+     */
+    public void count(BackendCall call) {
+        if (enabled) {
+            backendCalls.incrementAndGet(call.ordinal());
+        }
+    }
+
+    /**
+     * Takes a snapshot of what has been recorded so far.
+     *
+     * @return The snapshot
+     */
+    public BanMetricsSnapshot snapshot() {
+        Map<BanOperation, LatencySnapshot> latencies = new EnumMap<BanOperation, LatencySnapshot>(BanOperation.class);
+        for (BanOperation operation : OPERATIONS) {
+            latencies.put(operation, histograms[operation.ordinal()].snapshot());
+        }
+        Map<BackendCall, Long> calls = new EnumMap<BackendCall, Long>(BackendCall.class);
+        for (BackendCall call : BACKEND_CALLS) {
+            calls.put(call, backendCalls.get(call.ordinal()));
+        }
+        return new BanMetricsSnapshot(latencies, calls, System.currentTimeMillis());
+    }
+
+    /**
+     * Clears what has been recorded so far.
+     */
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+        for (int i = 0; i < BACKEND_CALLS.length; i++) {
+            backendCalls.set(i, 0);
+        }
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, as
+     * {@code org.neptunepowered.lib:type=BanMetrics}. Failure to do so is
+     * logged rather than thrown, as the metrics work without it.
+     */
+    public synchronized void registerMBean() {
+        if (objectName != null) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName("org.neptunepowered.lib:type=BanMetrics");
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                // Left behind by an earlier instance of the plugin
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(new MXBean(), name);
+            objectName = name;
+        } catch (JMException e) {
+            log.warn("Failed to register the ban metrics with JMX", e);
+        }
+    }
+
+    /**
+     * Unregisters the metrics from the platform MBean server, if they were
+     * registered.
+     */
+    public synchronized void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            log.warn("Failed to unregister the ban metrics from JMX", e);
+        }
+        objectName = null;
+    }
+
+    private final class MXBean implements BanMetricsMXBean {
+
+        @Override
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            BanMetrics.this.enabled = enabled;
+        }
+
+        @Override
+        public Map<String, Long> getCounts() {
+            Map<String, Long> counts = new LinkedHashMap<String, Long>();
+            for (BanOperation operation : OPERATIONS) {
+                counts.put(operation.name(), histograms[operation.ordinal()].snapshot().getCount());
+            }
+            return counts;
+        }
+
+        @Override
+        public Map<String, Double> getMeanMicros() {
+            Map<String, Double> means = new LinkedHashMap<String, Double>();
+            for (BanOperation operation : OPERATIONS) {
+                means.put(operation.name(), histograms[operation.ordinal()].snapshot().getMean(TimeUnit.MICROSECONDS));
+            }
+            return means;
+        }
+
+        @Override
+        public Map<String, Double> getP50Micros() {
+            return percentiles(50);
+        }
+
+        @Override
+        public Map<String, Double> getP99Micros() {
+            return percentiles(99);
+        }
+
+        @Override
+        public Map<String, Double> getP999Micros() {
+            return percentiles(99.9);
+        }
+
+        @Override
+        public Map<String, Double> getMaxMicros() {
+            Map<String, Double> maxima = new LinkedHashMap<String, Double>();
+            for (BanOperation operation : OPERATIONS) {
+                maxima.put(operation.name(), histograms[operation.ordinal()].snapshot().getMax(TimeUnit.MICROSECONDS));
+            }
+            return maxima;
+        }
+
+        @Override
+        public Map<String, Long> getBackendCalls() {
+            Map<String, Long> calls = new LinkedHashMap<String, Long>();
+            for (BackendCall call : BACKEND_CALLS) {
+                calls.put(call.name(), backendCalls.get(call.ordinal()));
+            }
+            return calls;
+        }
+
+        @Override
+        public void reset() {
+            BanMetrics.this.reset();
+        }
+
+        private Map<String, Double> percentiles(double percentile) {
+            Map<String, Double> percentiles = new LinkedHashMap<String, Double>();
+            for (BanOperation operation : OPERATIONS) {
+                percentiles.put(operation.name(),
+                        histograms[operation.ordinal()].snapshot().getPercentile(percentile, TimeUnit.MICROSECONDS));
+            }
+            return percentiles;
+        }
+    }
+}
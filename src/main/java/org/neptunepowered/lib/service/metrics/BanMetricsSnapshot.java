@@ -0,0 +1,83 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.metrics;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+
+/**
+ * A point-in-time copy of the {@link BanMetrics}.
+ */
+public final class BanMetricsSnapshot {
+
+    private final Map<BanOperation, LatencySnapshot> latencies;
+    private final Map<BackendCall, Long> backendCalls;
+    private final long takenMillis;
+
+    BanMetricsSnapshot(Map<BanOperation, LatencySnapshot> latencies, Map<BackendCall, Long> backendCalls, long takenMillis) {
+        this.latencies = ImmutableMap.copyOf(latencies);
+        this.backendCalls = ImmutableMap.copyOf(backendCalls);
+        this.takenMillis = takenMillis;
+    }
+
+    /**
+     * Gets the latencies of an operation.
+     *
+     * @param operation The operation
+     * @return The latencies
+     */
+    public LatencySnapshot getLatency(BanOperation operation) {
+        return latencies.get(operation);
+    }
+
+    /**
+     * Gets the number of times an operation was performed.
+     *
+     * @param operation The operation
+     * @return The number of times
+     */
+    public long getCount(BanOperation operation) {
+        return latencies.get(operation).getCount();
+    }
+
+    /**
+     * Gets the number of calls made to the backend.
+     *
+     * @param call The kind of call
+     * @return The number of calls
+     */
+    public long getBackendCalls(BackendCall call) {
+        return backendCalls.get(call);
+    }
+
+    /**
+     * Gets when this snapshot was taken.
+     *
+     * @return The time, in milliseconds since the epoch
+     */
+    public long getTakenMillis() {
+        return takenMillis;
+    }
+}
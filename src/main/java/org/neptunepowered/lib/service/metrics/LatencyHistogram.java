@@ -0,0 +1,133 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies, in nanoseconds, which can be recorded to from
+ * many threads without locking or allocating.
+ *
+ * <p>Values are counted in log-linear buckets: each power of two is split
+ * into 16 buckets of equal width, so that any value is reported to within
+ * about 6% of what was recorded, whatever its magnitude.</p>
+ *
+ * <p>As with a {@link StripedCounter}, each thread records to one of several
+ * stripes, which are only merged when a snapshot is taken, so threads that
+ * record at once do not contend. Each stripe takes about 8 KiB.</p>
+ */
+public final class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 4;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    // Each stripe holds the bucket counts, then the count, sum and maximum, with padding either side
+    private static final int PADDING = 16;
+    private static final int COUNT = PADDING + BUCKETS;
+    private static final int SUM = COUNT + 1;
+    private static final int MAX = COUNT + 2;
+    private static final int STRIPE_LENGTH = MAX + 1 + PADDING;
+
+    private final AtomicLongArray[] stripes = new AtomicLongArray[StripedCounter.STRIPES];
+
+    public LatencyHistogram() {
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new AtomicLongArray(STRIPE_LENGTH);
+        }
+    }
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos The latency, in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        AtomicLongArray stripe = stripes[StripedCounter.stripe()];
+        stripe.incrementAndGet(PADDING + bucket(nanos));
+        stripe.incrementAndGet(COUNT);
+        stripe.addAndGet(SUM, nanos);
+        long current;
+        while (nanos > (current = stripe.get(MAX)) && !stripe.compareAndSet(MAX, current, nanos)) {
+            // Lost the race to another thread of the stripe, try again with its maximum
+        }
+    }
+
+    /**
+     * Takes a snapshot of the latencies recorded so far. Recording carries on
+     * meanwhile, so the snapshot may not be exactly consistent.
+     *
+     * @return The snapshot
+     */
+    public LatencySnapshot snapshot() {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        long sum = 0;
+        long max = 0;
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] += stripe.get(PADDING + i);
+            }
+            count += stripe.get(COUNT);
+            sum += stripe.get(SUM);
+            max = Math.max(max, stripe.get(MAX));
+        }
+        return new LatencySnapshot(snapshot, count, sum, max);
+    }
+
+    /**
+     * Clears the recorded latencies.
+     */
+    public void reset() {
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = PADDING; i <= MAX; i++) {
+                stripe.set(i, 0);
+            }
+        }
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    /**
+     * Gets the highest value counted in a bucket.
+     */
+    static long highestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A point-in-time copy of a {@link LatencyHistogram}.
+ */
+public final class LatencySnapshot {
+
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long max;
+
+    LatencySnapshot(long[] counts, long count, long sum, long max) {
+        this.counts = counts;
+        this.count = count;
+        this.sum = sum;
+        this.max = max;
+    }
+
+    /**
+     * Combines this snapshot with another, as if every latency in both had
+     * been recorded to one histogram.
+     *
+     * @param other The other snapshot
+     * @return The combined snapshot
+     */
+    public LatencySnapshot merge(LatencySnapshot other) {
+        long[] merged = new long[counts.length];
+        for (int i = 0; i < merged.length; i++) {
+            merged[i] = counts[i] + other.counts[i];
+        }
+        return new LatencySnapshot(merged, count + other.count, sum + other.sum, Math.max(max, other.max));
+    }
+
+    /**
+     * Gets the number of latencies recorded.
+     *
+     * @return The number of latencies
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the mean latency.
+     *
+     * @param unit The unit to return the latency in
+     * @return The mean latency, or 0 if none were recorded
+     */
+    public double getMean(TimeUnit unit) {
+        return count == 0 ? 0 : (double) sum / count / unit.toNanos(1);
+    }
+
+    /**
+     * Gets the highest latency recorded.
+     *
+     * @param unit The unit to return the latency in
+     * @return The highest latency
+     */
+    public double getMax(TimeUnit unit) {
+        return (double) max / unit.toNanos(1);
+    }
+
+    /**
+     * Gets the latency that the given percentage of latencies were at or
+     * below.
+     *
+     * @param percentile The percentile, between 0 and 100
+     * @param unit The unit to return the latency in
+     * @return The latency, or 0 if none were recorded
+     */
+    public double getPercentile(double percentile, TimeUnit unit) {
+        long total = 0;
+        for (long bucketCount : counts) {
+            total += bucketCount;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return (double) Math.min(LatencyHistogram.highestValue(i), max) / unit.toNanos(1);
+            }
+        }
+        return getMax(unit);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.metrics;
+
+import net.canarymod.api.PlayerReference;
+import net.canarymod.bansystem.Ban;
+import net.canarymod.bansystem.BanType;
+import org.neptunepowered.lib.service.ban.BanCursor;
+import org.neptunepowered.lib.service.ban.BanStore;
+
+import java.util.Collection;
+
+/**
+ * A {@link BanStore} that counts the calls made to another.
+ */
+public final class MeteredBanStore implements BanStore {
+
+    private final BanStore store;
+    private final BanMetrics metrics;
+
+    public MeteredBanStore(BanStore store, BanMetrics metrics) {
+        this.store = store;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Gets the store the calls are made to.
+     *
+     * @return The store
+     */
+    public BanStore getStore() {
+        return store;
+    }
+
+    @Override
+    public Ban[] getAllBans(BanType type) {
+        metrics.count(BackendCall.GET_ALL_BANS);
+        return store.getAllBans(type);
+    }
+
+    @Override
+    public BanCursor openCursor(BanType type, int position) {
+        metrics.count(BackendCall.OPEN_CURSOR);
+        return store.openCursor(type, position);
+    }
+
+    @Override
+    public void issueBan(Ban ban) {
+        metrics.count(BackendCall.ISSUE_BAN);
+        store.issueBan(ban);
+    }
+
+    @Override
+    public void issueBans(Collection<Ban> bans) {
+        metrics.count(BackendCall.ISSUE_BANS);
+        store.issueBans(bans);
+    }
+
+    @Override
+    public void unban(PlayerReference player) {
+        metrics.count(BackendCall.UNBAN);
+        store.unban(player);
+    }
+
+    @Override
+    public void unban(String subject) {
+        metrics.count(BackendCall.UNBAN);
+        store.unban(subject);
+    }
+
+    @Override
+    public void unbanAll(Collection<String> subjects) {
+        metrics.count(BackendCall.UNBAN_ALL);
+        store.unbanAll(subjects);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter which many threads can add to at once without contending.
+ *
+ * <p>Each thread adds to one of several stripes, picked by its id and kept
+ * on cache lines of their own, and the stripes are summed when the counter
+ * is read. Reads are therefore slower than with a single atomic, and may
+ * miss additions made while they sum.</p>
+ */
+public final class StripedCounter {
+
+    /**
+     * The number of stripes, a power of two.
+     */
+    static final int STRIPES = Math.min(Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1), 16);
+    // Longs between stripes, so that no two share a cache line or its prefetched neighbour
+    private static final int SPACING = 16;
+
+    private final AtomicLongArray stripes = new AtomicLongArray((STRIPES + 1) * SPACING);
+
+    /**
+     * Adds one to the count.
+     */
+    public void increment() {
+        add(1);
+    }
+
+    /**
+     * Adds to the count.
+     *
+     * @param delta The amount to add
+     */
+    public void add(long delta) {
+        stripes.addAndGet((stripe() + 1) * SPACING, delta);
+    }
+
+    /**
+     * Gets the count.
+     *
+     * @return The sum of the stripes
+     */
+    public long get() {
+        long sum = 0;
+        for (int i = 1; i <= STRIPES; i++) {
+            sum += stripes.get(i * SPACING);
+        }
+        return sum;
+    }
+
+    /**
+     * Sets the count to zero. Additions made meanwhile may be lost.
+     */
+    public void reset() {
+        for (int i = 1; i <= STRIPES; i++) {
+            stripes.set(i * SPACING, 0);
+        }
+    }
+
+    /**
+     * Gets the stripe the current thread adds to.
+     */
+    static int stripe() {
+        long id = Thread.currentThread().getId();
+        // Ids are handed out in order, spread them in case they come in strides
+        int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.replication;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The most recent deltas made on this server, kept so that a server that
+ * missed some can be sent just those rather than every ban.
+ *
+ * <p>The log is a ring of a fixed number of deltas, numbered by their
+ * sequence. Not thread-safe, the replicator guards it.</p>
+ */
+final class BanChangeLog {
+
+    private final BanDelta[] deltas;
+    private long sequence = 0;
+
+    BanChangeLog(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive, but was " + capacity);
+        }
+        this.deltas = new BanDelta[capacity];
+    }
+
+    /**
+     * Gets the sequence of the latest delta, or 0 if there has been none.
+     */
+    long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets the sequence the next delta appended will have.
+     */
+    long nextSequence() {
+        return sequence + 1;
+    }
+
+    void append(BanDelta delta) {
+        if (delta.getSequence() != sequence + 1) {
+            throw new IllegalArgumentException("Expected sequence " + (sequence + 1) + ", but was " + delta.getSequence());
+        }
+        sequence = delta.getSequence();
+        deltas[(int) (sequence % deltas.length)] = delta;
+    }
+
+    /**
+     * Gets the deltas after a sequence.
+     *
+     * @param after The sequence
+     * @return The deltas, oldest first, or null if some have already been
+     *     dropped from the log
+     */
+    List<BanDelta> since(long after) {
+        if (after < sequence - deltas.length || after < 0) {
+            return null;
+        }
+        List<BanDelta> since = new ArrayList<BanDelta>((int) Math.max(0, sequence - after));
+        for (long next = after + 1; next <= sequence; next++) {
+            since.add(deltas[(int) (next % deltas.length)]);
+        }
+        return since;
+    }
+}
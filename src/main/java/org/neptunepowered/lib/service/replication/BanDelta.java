@@ -0,0 +1,234 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.replication;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Optional;
+import com.google.common.net.InetAddresses;
+import org.neptunepowered.lib.ban.Ban;
+import org.neptunepowered.lib.ban.BanType;
+import org.neptunepowered.lib.ban.ImmutableBan;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.UUID;
+
+/**
+ * A ban or pardon made on one server, as sent to the others.
+ *
+ * <p>Each server numbers the deltas it makes with a sequence, so the others
+ * can tell when they have missed some. Deltas also carry a version, from a
+ * clock that never goes backwards on any server and runs ahead of every
+ * version it has seen, so that when two servers change the same ban the
+ * later change wins everywhere. Ties are broken by the server.</p>
+ */
+public final class BanDelta {
+
+    private final String origin;
+    private final long sequence;
+    private final long version;
+    private final Ban ban;
+    private final boolean pardon;
+    private final String key;
+
+    BanDelta(String origin, long sequence, long version, Ban ban, boolean pardon) {
+        this.origin = origin;
+        this.sequence = sequence;
+        this.version = version;
+        this.ban = ban;
+        this.pardon = pardon;
+        this.key = key(ban);
+    }
+
+    /**
+     * Gets the server the change was made on.
+     *
+     * @return The id of the server
+     */
+    public String getOrigin() {
+        return origin;
+    }
+
+    /**
+     * Gets the position of the change among those made on its server.
+     *
+     * @return The sequence, starting at 1
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets the version of the change, which orders it against changes to the
+     * same ban made on other servers.
+     *
+     * @return The version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the ban that was made, or that was pardoned.
+     *
+     * @return The ban
+     */
+    public Ban getBan() {
+        return ban;
+    }
+
+    /**
+     * Gets whether the change was a pardon.
+     *
+     * @return True if the ban was pardoned, false if it was made
+     */
+    public boolean isPardon() {
+        return pardon;
+    }
+
+    /**
+     * Gets the key of the ban the change is to, which is the same for every
+     * change to the same player or address.
+     */
+    String getKey() {
+        return key;
+    }
+
+    /**
+     * Gets whether this change was made after another to the same ban.
+     */
+    boolean isNewerThan(BanDelta other) {
+        if (version != other.version) {
+            return version > other.version;
+        }
+        return origin.compareTo(other.origin) > 0;
+    }
+
+    /**
+     * Writes the delta, for transports that send it over the network.
+     *
+     * @param out The output
+     * @throws IOException If it could not be written
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeUTF(origin);
+        out.writeLong(sequence);
+        out.writeLong(version);
+        out.writeBoolean(pardon);
+        out.writeLong(ban.getStartMillis());
+        out.writeLong(ban.getExpirationMillis());
+        writeString(out, ban.getReason());
+        writeString(out, ban.getIssuer().orNull());
+        if (ban instanceof Ban.Ip) {
+            Ban.Ip ipBan = (Ban.Ip) ban;
+            byte[] address = ipBan.getAddress().getAddress();
+            out.writeByte(address.length);
+            out.write(address);
+            out.writeByte(ipBan.getPrefixLength());
+        } else {
+            Ban.Player playerBan = (Ban.Player) ban;
+            out.writeByte(0);
+            out.writeUTF(playerBan.getName());
+            Optional<UUID> uniqueId = playerBan.getUniqueId();
+            out.writeBoolean(uniqueId.isPresent());
+            if (uniqueId.isPresent()) {
+                out.writeLong(uniqueId.get().getMostSignificantBits());
+                out.writeLong(uniqueId.get().getLeastSignificantBits());
+            }
+        }
+    }
+
+    /**
+     * Reads a delta written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in The input
+     * @return The delta
+     * @throws IOException If it could not be read
+     */
+    public static BanDelta readFrom(DataInput in) throws IOException {
+        String origin = in.readUTF();
+        long sequence = in.readLong();
+        long version = in.readLong();
+        boolean pardon = in.readBoolean();
+        long start = in.readLong();
+        long expiration = in.readLong();
+        String reason = readString(in);
+        String issuer = readString(in);
+        int addressLength = in.readUnsignedByte();
+        Ban ban;
+        if (addressLength > 0) {
+            byte[] address = new byte[addressLength];
+            in.readFully(address);
+            int prefixLength = in.readUnsignedByte();
+            ban = ImmutableBan.ip(InetAddress.getByAddress(address), prefixLength, reason, issuer, start, expiration);
+        } else {
+            String name = in.readUTF();
+            UUID uniqueId = in.readBoolean() ? new UUID(in.readLong(), in.readLong()) : null;
+            ban = ImmutableBan.player(name, uniqueId, reason, issuer, start, expiration);
+        }
+        return new BanDelta(origin, sequence, version, ban, pardon);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("origin", origin)
+                .add("sequence", sequence)
+                .add("version", version)
+                .add("pardon", pardon)
+                .add("ban", ban)
+                .toString();
+    }
+
+    /**
+     * Gets the key of a ban. Player bans that do not record a UUID are keyed
+     * by the UUID an offline mode server gives the player, as in the index.
+     */
+    static String key(Ban ban) {
+        if (ban.getBanType() == BanType.IP) {
+            Ban.Ip ipBan = (Ban.Ip) ban;
+            return InetAddresses.toAddrString(ipBan.getAddress()) + "/" + ipBan.getPrefixLength();
+        }
+        Ban.Player playerBan = (Ban.Player) ban;
+        Optional<UUID> uniqueId = playerBan.getUniqueId();
+        if (uniqueId.isPresent()) {
+            return uniqueId.get().toString();
+        }
+        return UUID.nameUUIDFromBytes(("OfflinePlayer:" + playerBan.getName()).getBytes(Charsets.UTF_8)).toString();
+    }
+
+    private static void writeString(DataOutput out, String string) throws IOException {
+        out.writeBoolean(string != null);
+        if (string != null) {
+            out.writeUTF(string);
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
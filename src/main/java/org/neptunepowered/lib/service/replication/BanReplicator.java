@@ -0,0 +1,442 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.replication;
+
+import com.google.common.collect.ImmutableMap;
+import net.canarymod.logger.Logman;
+import org.neptunepowered.lib.ban.Ban;
+import org.neptunepowered.lib.ban.BanType;
+import org.neptunepowered.lib.ban.ImmutableBan;
+import org.neptunepowered.lib.service.BanService;
+import org.neptunepowered.lib.service.ban.BanBatcher;
+import org.neptunepowered.lib.service.ban.BanIndex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Replicates the bans and pardons made through a {@link BanService} to the
+ * other servers, and applies theirs, so that a ban reaches every server in
+ * the time it takes to send it rather than the next time they poll the
+ * database.
+ *
+ * <p>Every change committed on this server is given the next sequence and
+ * a version, kept in a {@link BanChangeLog}, and published. Changes from
+ * other servers are applied if their version is later than that of the
+ * last change to the same ban, so applying a change twice, or out of order,
+ * does nothing. Servers that notice a gap in the sequence of another, from
+ * its deltas or its heartbeats, ask it to send what they missed, which it
+ * does from its log, or with a snapshot of every ban if the log no longer
+ * goes back far enough.</p>
+ *
+ * <p>Local changes are applied to the index and published while holding
+ * the replicator's lock, as are changes from other servers, so the index
+ * always ends up with the change with the latest version. Changes from
+ * other servers also take the locks of their players and addresses in the
+ * service first, as local changes do, so neither can come between the
+ * other being written to the store and applied to the index.</p>
+ */
+public final class BanReplicator implements ReplicationTransport.Receiver {
+
+    private static final Logman log = Logman.getLogman("Neptune");
+
+    private final BanService service;
+    private final ReplicationTransport transport;
+    private final String nodeId;
+    private final BanChangeLog changeLog;
+    private final Map<String, BanDelta> latest = new HashMap<String, BanDelta>();
+    private final Map<String, Peer> peers = new HashMap<String, Peer>();
+    private final Object lock = new Object();
+    private long clock = 0;
+    private long resyncs = 0;
+    private long snapshots = 0;
+    private volatile boolean writeThrough = false;
+    private volatile long resyncTimeoutMillis = 5000;
+
+    /**
+     * Creates a replicator.
+     *
+     * @param service The service to replicate the bans of
+     * @param transport The transport to the other servers
+     * @param nodeId The id of this server, which must be unique among them
+     *     and change each time the server starts
+     * @param logCapacity The number of changes to keep for servers that
+     *     missed them
+     */
+    public BanReplicator(BanService service, ReplicationTransport transport, String nodeId, int logCapacity) {
+        this.service = service;
+        this.transport = transport;
+        this.nodeId = nodeId;
+        this.changeLog = new BanChangeLog(logCapacity);
+    }
+
+    /**
+     * Starts replicating, from now on.
+     */
+    public void start() {
+        transport.start(nodeId, this);
+        service.setReplicator(this);
+    }
+
+    /**
+     * Stops replicating.
+     */
+    public void stop() {
+        service.setReplicator(null);
+        transport.stop();
+    }
+
+    /**
+     * Sets whether changes from other servers are also written to the store
+     * of this one. That is only wanted if the servers do not share a store.
+     *
+     * @param writeThrough True to write changes to the store
+     */
+    public void setWriteThrough(boolean writeThrough) {
+        this.writeThrough = writeThrough;
+    }
+
+    /**
+     * Sets how long to wait for a reply before asking another server again
+     * for the changes this one missed.
+     *
+     * @param resyncTimeoutMillis The time, in milliseconds
+     */
+    public void setResyncTimeout(long resyncTimeoutMillis) {
+        this.resyncTimeoutMillis = resyncTimeoutMillis;
+    }
+
+    /**
+     * Gets the id of this server.
+     *
+     * @return The id
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Gets the sequence of the latest change made on this server.
+     *
+     * @return The sequence
+     */
+    public long getSequence() {
+        synchronized (lock) {
+            return changeLog.getSequence();
+        }
+    }
+
+    /**
+     * Gets, for each other server, the sequence up to which every change it
+     * made has been applied here.
+     *
+     * @return The sequences, by server
+     */
+    public Map<String, Long> getPeerSequences() {
+        synchronized (lock) {
+            Map<String, Long> sequences = new LinkedHashMap<String, Long>();
+            for (Map.Entry<String, Peer> entry : peers.entrySet()) {
+                sequences.put(entry.getKey(), entry.getValue().sequence);
+            }
+            return ImmutableMap.copyOf(sequences);
+        }
+    }
+
+    /**
+     * Gets the number of times this server asked another for changes it
+     * missed.
+     *
+     * @return The number of requests
+     */
+    public long getResyncCount() {
+        synchronized (lock) {
+            return resyncs;
+        }
+    }
+
+    /**
+     * Gets the number of snapshots this server sent to others that had
+     * fallen too far behind.
+     *
+     * @return The number of snapshots
+     */
+    public long getSnapshotCount() {
+        synchronized (lock) {
+            return snapshots;
+        }
+    }
+
+    /**
+     * Applies a ban or pardon made on this server to the index, and
+     * publishes it.
+     *
+     * @param batch The changes to the index
+     * @param ban The ban, or the ban that was pardoned
+     * @param pardon True if the ban was pardoned
+     * @return The version of the index the batch was applied in
+     */
+    public long commit(BanIndex.Batch batch, Ban ban, boolean pardon) {
+        return commit(batch, Collections.singletonList(ban), Collections.singletonList(pardon));
+    }
+
+    /**
+     * Applies bans and pardons made on this server to the index, and
+     * publishes them.
+     *
+     * @param batch The changes to the index
+     * @param mutations The bans and pardons, in the order they were made
+     * @return The version of the index the batch was applied in
+     */
+    public long commit(BanIndex.Batch batch, List<BanBatcher.Mutation> mutations) {
+        List<Ban> bans = new ArrayList<Ban>(mutations.size());
+        List<Boolean> pardons = new ArrayList<Boolean>(mutations.size());
+        for (BanBatcher.Mutation mutation : mutations) {
+            bans.add(mutation.getBan());
+            pardons.add(mutation.isPardon());
+        }
+        return commit(batch, bans, pardons);
+    }
+
+    private long commit(BanIndex.Batch batch, List<Ban> bans, List<Boolean> pardons) {
+        synchronized (lock) {
+            long version = service.getIndex().apply(batch);
+            List<BanDelta> deltas = new ArrayList<BanDelta>(bans.size());
+            for (int i = 0; i < bans.size(); i++) {
+                clock = Math.max(System.currentTimeMillis(), clock + 1);
+                BanDelta delta = new BanDelta(nodeId, changeLog.nextSequence(), clock, immutable(bans.get(i)), pardons.get(i));
+                changeLog.append(delta);
+                latest.put(delta.getKey(), delta);
+                deltas.add(delta);
+            }
+            if (!deltas.isEmpty()) {
+                try {
+                    transport.publish(changeLog.getSequence(), deltas);
+                } catch (RuntimeException e) {
+                    // The others will notice the gap, and ask for the changes
+                    log.warn("Failed to publish ban changes", e);
+                }
+            }
+            return version;
+        }
+    }
+
+    /**
+     * Tells the other servers the sequence of the latest change made here,
+     * so they notice if they missed it. Called periodically.
+     */
+    public void heartbeat() {
+        synchronized (lock) {
+            if (changeLog.getSequence() > 0) {
+                try {
+                    transport.publish(changeLog.getSequence(), Collections.<BanDelta>emptyList());
+                } catch (RuntimeException e) {
+                    log.warn("Failed to publish a ban heartbeat", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets about pardons, and expired bans, older than the given age.
+     * Called periodically.
+     *
+     * <p>A change to a ban that arrives after its pardon has been forgotten
+     * is applied even if it was made before the pardon, so the age should be
+     * well beyond how far behind a server can fall.</p>
+     *
+     * @param maxAgeMillis The age, in milliseconds
+     */
+    public void prune(long maxAgeMillis) {
+        long now = System.currentTimeMillis();
+        synchronized (lock) {
+            Iterator<BanDelta> it = latest.values().iterator();
+            while (it.hasNext()) {
+                BanDelta delta = it.next();
+                long expiration = delta.getBan().getExpirationMillis();
+                if (delta.isPardon() ? delta.getVersion() < now - maxAgeMillis : expiration != -1 && expiration < now - maxAgeMillis) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onDeltas(String origin, long sequence, List<BanDelta> deltas) {
+        long after = -1;
+        List<Lock> locks = service.lockSubjects(bans(deltas));
+        try {
+            synchronized (lock) {
+                Peer peer = peer(origin);
+                Map<String, BanDelta> winners = new LinkedHashMap<String, BanDelta>();
+                for (BanDelta delta : deltas) {
+                    if (delta.getSequence() <= peer.sequence) {
+                        continue;
+                    }
+                    if (delta.getSequence() == peer.sequence + 1) {
+                        peer.sequence++;
+                    }
+                    merge(delta, winners);
+                }
+                apply(winners);
+                if (sequence > peer.sequence) {
+                    after = requestResync(peer);
+                } else {
+                    peer.requestedMillis = 0;
+                }
+            }
+        } finally {
+            service.unlockSubjects(locks);
+        }
+        if (after >= 0) {
+            try {
+                transport.requestResync(origin, after);
+            } catch (RuntimeException e) {
+                log.warn("Failed to ask " + origin + " for the ban changes missed", e);
+            }
+        }
+    }
+
+    @Override
+    public void onResyncRequest(String peer, long after) {
+        synchronized (lock) {
+            List<BanDelta> deltas = changeLog.since(after);
+            try {
+                if (deltas != null) {
+                    transport.send(peer, changeLog.getSequence(), deltas);
+                } else {
+                    snapshots++;
+                    transport.sendSnapshot(peer, changeLog.getSequence(), new ArrayList<BanDelta>(latest.values()));
+                }
+            } catch (RuntimeException e) {
+                log.warn("Failed to send " + peer + " the ban changes it missed", e);
+            }
+        }
+    }
+
+    @Override
+    public void onSnapshot(String origin, long sequence, List<BanDelta> state) {
+        List<Lock> locks = service.lockSubjects(bans(state));
+        try {
+            synchronized (lock) {
+                Map<String, BanDelta> winners = new LinkedHashMap<String, BanDelta>();
+                for (BanDelta delta : state) {
+                    merge(delta, winners);
+                }
+                apply(winners);
+                Peer peer = peer(origin);
+                peer.sequence = Math.max(peer.sequence, sequence);
+                peer.requestedMillis = 0;
+            }
+        } finally {
+            service.unlockSubjects(locks);
+        }
+    }
+
+    private static List<Ban> bans(List<BanDelta> deltas) {
+        List<Ban> bans = new ArrayList<Ban>(deltas.size());
+        for (BanDelta delta : deltas) {
+            bans.add(delta.getBan());
+        }
+        return bans;
+    }
+
+    private Peer peer(String origin) {
+        Peer peer = peers.get(origin);
+        if (peer == null) {
+            peer = new Peer();
+            peers.put(origin, peer);
+        }
+        return peer;
+    }
+
+    /**
+     * Gets the sequence to ask a server for changes after, or -1 if it was
+     * asked too recently to ask again.
+     */
+    private long requestResync(Peer peer) {
+        long now = System.currentTimeMillis();
+        if (peer.requestedMillis != 0 && now - peer.requestedMillis < resyncTimeoutMillis) {
+            return -1;
+        }
+        peer.requestedMillis = now;
+        resyncs++;
+        return peer.sequence;
+    }
+
+    private void merge(BanDelta delta, Map<String, BanDelta> winners) {
+        clock = Math.max(clock, delta.getVersion());
+        BanDelta current = latest.get(delta.getKey());
+        if (current == null || delta.isNewerThan(current)) {
+            latest.put(delta.getKey(), delta);
+            winners.put(delta.getKey(), delta);
+        }
+    }
+
+    private void apply(Map<String, BanDelta> winners) {
+        if (winners.isEmpty()) {
+            return;
+        }
+        List<Ban> bans = new ArrayList<Ban>();
+        List<Ban> pardons = new ArrayList<Ban>();
+        for (BanDelta delta : winners.values()) {
+            (delta.isPardon() ? pardons : bans).add(delta.getBan());
+        }
+        try {
+            service.applyReplicated(bans, pardons, writeThrough);
+        } catch (RuntimeException e) {
+            log.warn("Failed to apply replicated ban changes", e);
+        }
+    }
+
+    private static Ban immutable(Ban ban) {
+        if (ban instanceof ImmutableBan) {
+            return ban;
+        }
+        String reason = ban.getReason();
+        String issuer = ban.getIssuer().orNull();
+        long start = ban.getStartMillis();
+        long expiration = ban.getExpirationMillis();
+        if (ban.getBanType() == BanType.IP) {
+            Ban.Ip ipBan = (Ban.Ip) ban;
+            return ImmutableBan.ip(ipBan.getAddress(), ipBan.getPrefixLength(), reason, issuer, start, expiration);
+        }
+        Ban.Player playerBan = (Ban.Player) ban;
+        return ImmutableBan.player(playerBan.getName(), playerBan.getUniqueId().orNull(), reason, issuer, start, expiration);
+    }
+
+    /**
+     * What is known of another server.
+     */
+    private static final class Peer {
+
+        private long sequence = 0;
+        private long requestedMillis = 0;
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.replication;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ReplicationTransport} between servers in the same process, for
+ * tests and benchmarks.
+ *
+ * <p>Transports connected to the same hub deliver to each other, each on
+ * its own thread so that messages are delivered in order but never on the
+ * thread that sent them. A transport can be disconnected, to simulate a
+ * server that misses deltas.</p>
+ */
+public final class LoopbackTransport implements ReplicationTransport {
+
+    private final ConcurrentMap<String, LoopbackTransport> hub;
+    private String nodeId;
+    private ExecutorService executor;
+    private Receiver receiver;
+    private volatile boolean connected = true;
+
+    /**
+     * Creates a transport connected to the given hub.
+     *
+     * @param hub The hub, shared between the transports that deliver to each
+     *     other
+     * @see #newHub()
+     */
+    public LoopbackTransport(ConcurrentMap<String, LoopbackTransport> hub) {
+        this.hub = hub;
+    }
+
+    /**
+     * Creates a hub for transports to connect to.
+     *
+     * @return The hub
+     */
+    public static ConcurrentMap<String, LoopbackTransport> newHub() {
+        return new ConcurrentHashMap<String, LoopbackTransport>();
+    }
+
+    /**
+     * Sets whether this transport is connected. While it is not, it neither
+     * sends nor receives anything.
+     *
+     * @param connected True to connect, false to disconnect
+     */
+    public void setConnected(boolean connected) {
+        this.connected = connected;
+    }
+
+    @Override
+    public synchronized void start(String nodeId, Receiver receiver) {
+        this.nodeId = nodeId;
+        this.receiver = receiver;
+        this.executor = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat("Neptune Loopback " + nodeId).setDaemon(true).build());
+        hub.put(nodeId, this);
+    }
+
+    @Override
+    public void publish(long sequence, List<BanDelta> deltas) {
+        if (!connected) {
+            return;
+        }
+        List<BanDelta> copy = ImmutableList.copyOf(deltas);
+        for (LoopbackTransport peer : hub.values()) {
+            if (peer != this) {
+                peer.deliverDeltas(nodeId, sequence, copy);
+            }
+        }
+    }
+
+    @Override
+    public void send(String peer, long sequence, List<BanDelta> deltas) {
+        LoopbackTransport transport = hub.get(peer);
+        if (transport != null && connected) {
+            transport.deliverDeltas(nodeId, sequence, ImmutableList.copyOf(deltas));
+        }
+    }
+
+    @Override
+    public void sendSnapshot(String peer, final long sequence, List<BanDelta> state) {
+        final LoopbackTransport transport = hub.get(peer);
+        if (transport != null && connected) {
+            final String origin = nodeId;
+            final List<BanDelta> copy = ImmutableList.copyOf(state);
+            transport.deliver(new Runnable() {
+                @Override
+                public void run() {
+                    transport.receiver.onSnapshot(origin, sequence, copy);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void requestResync(String peer, final long after) {
+        final LoopbackTransport transport = hub.get(peer);
+        if (transport != null && connected) {
+            final String from = nodeId;
+            transport.deliver(new Runnable() {
+                @Override
+                public void run() {
+                    transport.receiver.onResyncRequest(from, after);
+                }
+            });
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        hub.remove(nodeId, this);
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executor = null;
+        }
+    }
+
+    private void deliverDeltas(final String origin, final long sequence, final List<BanDelta> deltas) {
+        if (!connected) {
+            return;
+        }
+        deliver(new Runnable() {
+            @Override
+            public void run() {
+                receiver.onDeltas(origin, sequence, deltas);
+            }
+        });
+    }
+
+    private synchronized void deliver(Runnable message) {
+        if (connected && executor != null) {
+            executor.execute(message);
+        }
+    }
+}
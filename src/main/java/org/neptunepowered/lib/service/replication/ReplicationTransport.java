@@ -0,0 +1,123 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.replication;
+
+import java.util.List;
+
+/**
+ * Carries deltas between the servers replicating bans with each other.
+ *
+ * <p>Messages from one server must be delivered to each other server in the
+ * order they were sent, but may be lost. Servers notice when they have
+ * missed deltas, and ask for them again. None of the calls may block on the
+ * network, as they are made while bans are being committed, so transports
+ * should queue what they send.</p>
+ *
+ * @see LoopbackTransport
+ */
+public interface ReplicationTransport {
+
+    /**
+     * Starts delivering messages to this server.
+     *
+     * @param nodeId The id of this server, which is unique among them and
+     *     changes each time the server starts
+     * @param receiver Where to deliver messages to
+     */
+    void start(String nodeId, Receiver receiver);
+
+    /**
+     * Sends deltas made on this server to every other server.
+     *
+     * @param sequence The sequence of the latest delta made on this server,
+     *     which may be later than any of the deltas
+     * @param deltas The deltas, oldest first, which may be empty
+     */
+    void publish(long sequence, List<BanDelta> deltas);
+
+    /**
+     * Sends deltas made on this server to one other server, in reply to
+     * {@link Receiver#onResyncRequest(String, long)}.
+     *
+     * @param peer The server to send to
+     * @param sequence The sequence of the latest delta made on this server
+     * @param deltas The deltas, oldest first
+     */
+    void send(String peer, long sequence, List<BanDelta> deltas);
+
+    /**
+     * Sends every ban this server knows of to another server, when it has
+     * fallen too far behind to be sent the deltas it missed.
+     *
+     * @param peer The server to send to
+     * @param sequence The sequence of the latest delta made on this server
+     * @param state The latest delta for each ban, including pardons
+     */
+    void sendSnapshot(String peer, long sequence, List<BanDelta> state);
+
+    /**
+     * Asks another server to send the deltas it made after a sequence.
+     *
+     * @param peer The server to ask
+     * @param after The sequence of the last delta from it that was received
+     */
+    void requestResync(String peer, long after);
+
+    /**
+     * Stops delivering messages to this server.
+     */
+    void stop();
+
+    /**
+     * Receives messages from the other servers.
+     */
+    interface Receiver {
+
+        /**
+         * Called with deltas made on another server.
+         *
+         * @param origin The server
+         * @param sequence The sequence of the latest delta made on it
+         * @param deltas The deltas, oldest first
+         */
+        void onDeltas(String origin, long sequence, List<BanDelta> deltas);
+
+        /**
+         * Called when another server asks for the deltas made on this one.
+         *
+         * @param peer The server
+         * @param after The sequence of the last delta it received
+         */
+        void onResyncRequest(String peer, long after);
+
+        /**
+         * Called with every ban another server knows of.
+         *
+         * @param origin The server
+         * @param sequence The sequence of the latest delta made on it
+         * @param state The latest delta for each ban
+         */
+        void onSnapshot(String origin, long sequence, List<BanDelta> state);
+    }
+}
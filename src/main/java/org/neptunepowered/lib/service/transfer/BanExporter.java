@@ -0,0 +1,124 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.transfer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Charsets;
+import org.neptunepowered.lib.ban.Ban;
+import org.neptunepowered.lib.service.BanQuery;
+import org.neptunepowered.lib.service.BanService;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+
+/**
+ * Exports the active bans of a {@link BanService} to a ban list, writing
+ * them as they are read from the backend rather than collecting them first.
+ */
+public class BanExporter {
+
+    private final BanService banService;
+    private int batchSize = 1000;
+    private BanTransferListener listener = null;
+
+    public BanExporter(BanService banService) {
+        this.banService = checkNotNull(banService, "banService");
+    }
+
+    /**
+     * Sets the number of bans written between notifying the listener.
+     *
+     * @param batchSize The batch size
+     * @return This exporter, for chaining
+     */
+    public BanExporter batchSize(int batchSize) {
+        checkArgument(batchSize > 0, "batchSize must be positive");
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Sets the listener notified after each batch.
+     *
+     * @param listener The listener, or null for none
+     * @return This exporter, for chaining
+     */
+    public BanExporter listener(BanTransferListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Exports the active bans the format can hold, replacing the list only
+     * once all of them have been written.
+     *
+     * @param format The format of the list
+     * @param file The list
+     * @return How the export went
+     * @throws IOException If the list could not be written
+     */
+    public TransferProgress export(BanFormat format, File file) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create directory " + directory);
+        }
+        BanQuery query = banService.query().active(true);
+        if (format.getType() != null) {
+            query.type(format.getType());
+        }
+        File temporary = new File(file.getPath() + ".tmp");
+        BanRecordWriter writer = format.openWriter(new OutputStreamWriter(
+                new BufferedOutputStream(new FileOutputStream(temporary), 1 << 16), Charsets.UTF_8));
+        long exported = 0;
+        try {
+            for (Ban ban : query) {
+                writer.write(ban);
+                if (++exported % batchSize == 0) {
+                    notify(new TransferProgress(exported, exported, 0, 0, 0));
+                }
+            }
+        } finally {
+            writer.close();
+        }
+        if (!temporary.renameTo(file)) {
+            if (!file.delete() || !temporary.renameTo(file)) {
+                throw new IOException("Could not replace " + file);
+            }
+        }
+        TransferProgress progress = new TransferProgress(exported, exported, 0, 0, 0);
+        notify(progress);
+        return progress;
+    }
+
+    private void notify(TransferProgress progress) {
+        if (listener != null) {
+            listener.onProgress(progress);
+        }
+    }
+}
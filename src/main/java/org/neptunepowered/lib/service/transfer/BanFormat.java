@@ -0,0 +1,75 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.transfer;
+
+import org.neptunepowered.lib.ban.BanType;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Represents the formats ban lists can be imported from and exported to.
+ */
+public enum BanFormat {
+
+    /**
+     * The vanilla server's {@code banned-players.json}.
+     */
+    VANILLA_PLAYERS(BanType.PLAYER),
+
+    /**
+     * The vanilla server's {@code banned-ips.json}.
+     */
+    VANILLA_IPS(BanType.IP),
+
+    /**
+     * A CSV file with a header row, holding both player and IP bans, with
+     * the columns {@code type,name,uuid,ip,reason,source,created,expires}.
+     */
+    CSV(null);
+
+    private final BanType type;
+
+    BanFormat(BanType type) {
+        this.type = type;
+    }
+
+    /**
+     * Gets the type of the bans this format holds.
+     *
+     * @return The type, or null if it holds either
+     */
+    public BanType getType() {
+        return type;
+    }
+
+    BanRecordReader openReader(Reader in) {
+        return this == CSV ? new CsvBanReader(in) : new VanillaBanReader(in, this == VANILLA_IPS);
+    }
+
+    BanRecordWriter openWriter(Writer out) throws IOException {
+        return this == CSV ? new CsvBanWriter(out) : new VanillaBanWriter(out);
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.transfer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Charsets;
+import org.neptunepowered.lib.ban.Ban;
+import org.neptunepowered.lib.service.BanService;
+import org.neptunepowered.lib.service.ban.BanResult;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Imports a ban list into a {@link BanService}, reading it a record at a
+ * time and adding the bans in batches, so that lists of any size can be
+ * imported in constant memory.
+ *
+ * <p>If a checkpoint file is given, it is updated after each batch, and an
+ * import of the same, unchanged, list that was interrupted resumes after the
+ * last batch added. The checkpoint is deleted once the import completes.</p>
+ */
+public class BanImporter {
+
+    private final BanService banService;
+    private int batchSize = 1000;
+    private File checkpoint = null;
+    private BanTransferListener listener = null;
+
+    public BanImporter(BanService banService) {
+        this.banService = checkNotNull(banService, "banService");
+    }
+
+    /**
+     * Sets the number of bans added at a time.
+     *
+     * @param batchSize The batch size
+     * @return This importer, for chaining
+     */
+    public BanImporter batchSize(int batchSize) {
+        checkArgument(batchSize > 0, "batchSize must be positive");
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Sets the file to keep track of how far the import has got in.
+     *
+     * @param checkpoint The checkpoint file, or null for none
+     * @return This importer, for chaining
+     */
+    public BanImporter checkpoint(File checkpoint) {
+        this.checkpoint = checkpoint;
+        return this;
+    }
+
+    /**
+     * Sets the listener notified after each batch.
+     *
+     * @param listener The listener, or null for none
+     * @return This importer, for chaining
+     */
+    public BanImporter listener(BanTransferListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Imports the bans in a ban list that have not expired.
+     *
+     * @param format The format of the list
+     * @param file The list
+     * @return How the import went
+     * @throws IOException If the list could not be read, or is malformed
+     */
+    public TransferProgress run(BanFormat format, File file) throws IOException {
+        Properties source = describe(file);
+        long resumedFrom = readCheckpoint(source);
+        InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16);
+        BanRecordReader reader = format.openReader(new InputStreamReader(in, Charsets.UTF_8));
+        try {
+            reader.skip(resumedFrom);
+            List<Ban> batch = new ArrayList<Ban>(batchSize);
+            long imported = 0;
+            long expired = 0;
+            long failed = 0;
+            TransferProgress progress;
+            while (true) {
+                Ban ban = reader.next();
+                if (ban != null) {
+                    if (!ban.isIndefinite() && ban.getExpirationMillis() <= System.currentTimeMillis()) {
+                        expired++;
+                        continue;
+                    }
+                    batch.add(ban);
+                    if (batch.size() < batchSize) {
+                        continue;
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    for (BanResult result : banService.banAll(batch)) {
+                        if (result.isSuccess()) {
+                            imported++;
+                        } else {
+                            failed++;
+                        }
+                    }
+                    batch.clear();
+                }
+                progress = new TransferProgress(reader.getRecordCount(), imported, reader.getInvalidCount() + expired, failed, resumedFrom);
+                if (ban == null) {
+                    break;
+                }
+                writeCheckpoint(source, progress.getRecords());
+                notify(progress);
+            }
+            notify(progress);
+            if (checkpoint != null && checkpoint.exists() && !checkpoint.delete()) {
+                throw new IOException("Could not delete " + checkpoint);
+            }
+            return progress;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void notify(TransferProgress progress) {
+        if (listener != null) {
+            listener.onProgress(progress);
+        }
+    }
+
+    /**
+     * Describes the list being imported, so that a checkpoint is only used to
+     * resume an import of the same list.
+     */
+    private static Properties describe(File file) throws IOException {
+        if (!file.isFile()) {
+            throw new IOException("No such file " + file);
+        }
+        Properties source = new Properties();
+        source.setProperty("source", file.getCanonicalPath());
+        source.setProperty("length", Long.toString(file.length()));
+        source.setProperty("modified", Long.toString(file.lastModified()));
+        return source;
+    }
+
+    private long readCheckpoint(Properties source) throws IOException {
+        if (checkpoint == null || !checkpoint.isFile()) {
+            return 0;
+        }
+        Properties saved = new Properties();
+        InputStream in = new FileInputStream(checkpoint);
+        try {
+            saved.load(in);
+        } finally {
+            in.close();
+        }
+        for (String key : source.stringPropertyNames()) {
+            if (!source.getProperty(key).equals(saved.getProperty(key))) {
+                // The checkpoint is of another list, or the list has changed since
+                return 0;
+            }
+        }
+        try {
+            return Math.max(0, Long.parseLong(saved.getProperty("records", "0")));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private void writeCheckpoint(Properties source, long records) throws IOException {
+        if (checkpoint == null) {
+            return;
+        }
+        File directory = checkpoint.getAbsoluteFile().getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create directory " + directory);
+        }
+        Properties saved = new Properties();
+        saved.putAll(source);
+        saved.setProperty("records", Long.toString(records));
+        File temporary = new File(checkpoint.getPath() + ".tmp");
+        OutputStream out = new FileOutputStream(temporary);
+        try {
+            saved.store(out, "Ban import checkpoint");
+        } finally {
+            out.close();
+        }
+        if (!temporary.renameTo(checkpoint)) {
+            if (!checkpoint.delete() || !temporary.renameTo(checkpoint)) {
+                throw new IOException("Could not replace " + checkpoint);
+            }
+        }
+    }
+}
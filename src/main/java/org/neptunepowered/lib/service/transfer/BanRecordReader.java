@@ -0,0 +1,63 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.transfer;
+
+import org.neptunepowered.lib.ban.Ban;
+
+import java.io.IOException;
+
+/**
+ * Reads bans one record at a time from a ban list.
+ */
+interface BanRecordReader {
+
+    /**
+     * Reads the next valid ban, skipping over records that are not.
+     *
+     * @return The ban, or null at the end of the list
+     * @throws IOException If the list could not be read, or is malformed
+     */
+    Ban next() throws IOException;
+
+    /**
+     * Skips over records without reading them into bans.
+     *
+     * @param records The number of records to skip
+     * @throws IOException If the list could not be read, or is malformed
+     */
+    void skip(long records) throws IOException;
+
+    /**
+     * Gets the number of records read or skipped so far, whether they were
+     * valid bans or not.
+     */
+    long getRecordCount();
+
+    /**
+     * Gets the number of records read that were not valid bans.
+     */
+    long getInvalidCount();
+
+    void close() throws IOException;
+}
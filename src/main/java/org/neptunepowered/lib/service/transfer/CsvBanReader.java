@@ -0,0 +1,208 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.transfer;
+
+import org.neptunepowered.lib.ban.Ban;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reads a CSV ban list, as written by {@link CsvBanWriter} or exported from
+ * another ban plugin, one row at a time.
+ *
+ * <p>The first row names the columns, which may be in any order, and any of
+ * which may be missing. A row with an address is an IP ban, otherwise it is
+ * a player ban.</p>
+ */
+final class CsvBanReader implements BanRecordReader {
+
+    private static final int TYPE = 0;
+    private static final int NAME = 1;
+    private static final int UUID = 2;
+    private static final int IP = 3;
+    private static final int REASON = 4;
+    private static final int SOURCE = 5;
+    private static final int CREATED = 6;
+    private static final int EXPIRES = 7;
+
+    private final Reader in;
+    private final RecordMapper mapper = new RecordMapper();
+    private final List<String> row = new ArrayList<String>();
+    private final StringBuilder field = new StringBuilder();
+    private int[] columns = null;
+    private int pushback = -2;
+    private long records = 0;
+    private long invalid = 0;
+
+    CsvBanReader(Reader in) {
+        this.in = in;
+    }
+
+    @Override
+    public Ban next() throws IOException {
+        readHeader();
+        while (readRow()) {
+            records++;
+            Ban ban = map();
+            if (ban != null) {
+                return ban;
+            }
+            invalid++;
+        }
+        return null;
+    }
+
+    @Override
+    public void skip(long records) throws IOException {
+        readHeader();
+        for (long i = 0; i < records && readRow(); i++) {
+            this.records++;
+        }
+    }
+
+    @Override
+    public long getRecordCount() {
+        return records;
+    }
+
+    @Override
+    public long getInvalidCount() {
+        return invalid;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void readHeader() throws IOException {
+        if (columns != null) {
+            return;
+        }
+        if (!readRow()) {
+            throw new IOException("Missing the header row");
+        }
+        columns = new int[] {-1, -1, -1, -1, -1, -1, -1, -1};
+        for (int i = 0; i < row.size(); i++) {
+            String name = row.get(i).trim().toLowerCase(Locale.ENGLISH);
+            int column = name.equals("type") ? TYPE
+                    : name.equals("name") ? NAME
+                    : name.equals("uuid") ? UUID
+                    : name.equals("ip") ? IP
+                    : name.equals("reason") ? REASON
+                    : name.equals("source") ? SOURCE
+                    : name.equals("created") ? CREATED
+                    : name.equals("expires") ? EXPIRES
+                    : -1;
+            if (column != -1 && columns[column] == -1) {
+                columns[column] = i;
+            }
+        }
+    }
+
+    private Ban map() {
+        String ip = column(IP);
+        String type = column(TYPE);
+        if (ip != null || (type != null && type.equalsIgnoreCase("ip"))) {
+            return mapper.ip(ip, column(REASON), column(SOURCE), column(CREATED), column(EXPIRES));
+        }
+        return mapper.player(column(NAME), column(UUID), column(REASON), column(SOURCE), column(CREATED), column(EXPIRES));
+    }
+
+    private String column(int column) {
+        int index = columns[column];
+        if (index == -1 || index >= row.size()) {
+            return null;
+        }
+        String value = row.get(index);
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Reads the next non-blank row into {@link #row}.
+     *
+     * @return False at the end of the list
+     */
+    private boolean readRow() throws IOException {
+        row.clear();
+        field.setLength(0);
+        boolean quoted = false;
+        boolean blank = true;
+        while (true) {
+            int c = read();
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Unterminated quoted field on record " + (records + 1));
+                } else if (c != '"') {
+                    field.append((char) c);
+                } else if (peek() == '"') {
+                    field.append('"');
+                    read();
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+                blank = false;
+            } else if (c == ',') {
+                row.add(field.toString());
+                field.setLength(0);
+                blank = false;
+            } else if (c == '\r' || c == '\n' || c == -1) {
+                if (c == '\r' && peek() == '\n') {
+                    read();
+                }
+                if (!blank || field.length() > 0) {
+                    row.add(field.toString());
+                    return true;
+                }
+                if (c == -1) {
+                    return false;
+                }
+            } else {
+                field.append((char) c);
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (pushback != -2) {
+            int c = pushback;
+            pushback = -2;
+            return c;
+        }
+        return in.read();
+    }
+
+    private int peek() throws IOException {
+        if (pushback == -2) {
+            pushback = in.read();
+        }
+        return pushback;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.transfer;
+
+import org.neptunepowered.lib.ban.Ban;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes a CSV ban list, one row at a time.
+ */
+final class CsvBanWriter implements BanRecordWriter {
+
+    private final Writer out;
+    private final RecordMapper mapper = new RecordMapper();
+
+    CsvBanWriter(Writer out) throws IOException {
+        this.out = out;
+        out.write("type,name,uuid,ip,reason,source,created,expires\r\n");
+    }
+
+    @Override
+    public void write(Ban ban) throws IOException {
+        if (ban instanceof Ban.Ip) {
+            out.write("ip,,,");
+            writeField(mapper.ip((Ban.Ip) ban));
+        } else {
+            Ban.Player playerBan = (Ban.Player) ban;
+            out.write("player,");
+            writeField(playerBan.getName());
+            out.write(',');
+            writeField(mapper.uniqueId(playerBan));
+            out.write(',');
+        }
+        out.write(',');
+        writeField(ban.getReason());
+        out.write(',');
+        writeField(mapper.source(ban));
+        out.write(',');
+        writeField(mapper.formatTime(ban.getStartMillis()));
+        out.write(',');
+        writeField(mapper.formatTime(ban.getExpirationMillis()));
+        out.write("\r\n");
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeField(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quote) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.write('"');
+            }
+            out.write(c);
+        }
+        out.write('"');
+    }
+}
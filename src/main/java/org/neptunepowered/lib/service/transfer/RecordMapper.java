@@ -0,0 +1,188 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.transfer;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.net.InetAddresses;
+import org.neptunepowered.lib.ban.Ban;
+import org.neptunepowered.lib.ban.ImmutableBan;
+
+import java.net.InetAddress;
+import java.text.DateFormat;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Maps the fields of a ban list record to and from a ban. Not thread-safe,
+ * each reader and writer has its own.
+ */
+final class RecordMapper {
+
+    /**
+     * The source written for bans whose issuer is not known.
+     */
+    static final String UNKNOWN_SOURCE = "(Unknown)";
+
+    private static final String FOREVER = "forever";
+
+    /**
+     * Returned by {@link #parseTime} for times that could not be parsed.
+     */
+    static final long INVALID_TIME = Long.MIN_VALUE;
+
+    // The format the vanilla server writes times in
+    private final DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss Z", Locale.ENGLISH);
+
+    /**
+     * Creates a player ban.
+     *
+     * @return The ban, or null if the fields do not make one
+     */
+    Ban player(String name, String uniqueId, String reason, String source, String created, String expires) {
+        UUID parsedUniqueId = null;
+        if (uniqueId != null) {
+            try {
+                parsedUniqueId = UUID.fromString(uniqueId);
+            } catch (IllegalArgumentException e) {
+                // Fall back to the name
+            }
+        }
+        if (name == null) {
+            return null;
+        }
+        long start = parseTime(created, System.currentTimeMillis());
+        long expiration = parseTime(expires, -1);
+        if (start == INVALID_TIME || expiration == INVALID_TIME) {
+            return null;
+        }
+        return ImmutableBan.player(name, parsedUniqueId, reason, issuer(source), start, expiration);
+    }
+
+    /**
+     * Creates an IP ban, from an address literal that may be followed by a
+     * prefix length.
+     *
+     * @return The ban, or null if the fields do not make one
+     */
+    Ban ip(String ip, String reason, String source, String created, String expires) {
+        if (ip == null) {
+            return null;
+        }
+        int slash = ip.indexOf('/');
+        String literal = slash < 0 ? ip : ip.substring(0, slash);
+        if (!InetAddresses.isInetAddress(literal)) {
+            return null;
+        }
+        InetAddress address = InetAddresses.forString(literal);
+        int width = address.getAddress().length * 8;
+        int prefixLength = width;
+        if (slash >= 0) {
+            try {
+                prefixLength = Integer.parseInt(ip.substring(slash + 1));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (prefixLength < 0 || prefixLength > width) {
+                return null;
+            }
+        }
+        long start = parseTime(created, System.currentTimeMillis());
+        long expiration = parseTime(expires, -1);
+        if (start == INVALID_TIME || expiration == INVALID_TIME) {
+            return null;
+        }
+        return ImmutableBan.ip(address, prefixLength, reason, issuer(source), start, expiration);
+    }
+
+    String source(Ban ban) {
+        return ban.getIssuer().or(UNKNOWN_SOURCE);
+    }
+
+    private static String issuer(String source) {
+        return source == null || source.equals(UNKNOWN_SOURCE) ? null : source;
+    }
+
+    String ip(Ban.Ip ban) {
+        String address = InetAddresses.toAddrString(ban.getAddress());
+        if (ban.getPrefixLength() == ban.getAddress().getAddress().length * 8) {
+            return address;
+        }
+        return address + "/" + ban.getPrefixLength();
+    }
+
+    /**
+     * Gets the UUID to write for a player ban, which for bans that do not
+     * record one is the UUID an offline mode server gives the player.
+     */
+    String uniqueId(Ban.Player ban) {
+        Optional<UUID> uniqueId = ban.getUniqueId();
+        if (uniqueId.isPresent()) {
+            return uniqueId.get().toString();
+        }
+        return UUID.nameUUIDFromBytes(("OfflinePlayer:" + ban.getName()).getBytes(Charsets.UTF_8)).toString();
+    }
+
+    /**
+     * Parses a time, written either as the vanilla server does or as
+     * milliseconds since the epoch.
+     *
+     * @return The time, the given value if there is none, or
+     *     {@link #INVALID_TIME} if it could not be parsed
+     */
+    long parseTime(String time, long absent) {
+        if (time == null || time.equalsIgnoreCase(FOREVER)) {
+            return absent;
+        }
+        if (isDigits(time)) {
+            return Long.parseLong(time);
+        }
+        ParsePosition position = new ParsePosition(0);
+        Date date = dateFormat.parse(time, position);
+        // A time followed by anything else is not one the server wrote
+        if (date == null || position.getIndex() != time.length()) {
+            return INVALID_TIME;
+        }
+        return date.getTime();
+    }
+
+    String formatTime(long time) {
+        return time == -1 ? FOREVER : dateFormat.format(new Date(time));
+    }
+
+    private static boolean isDigits(String string) {
+        if (string.isEmpty() || string.length() > 18) {
+            return false;
+        }
+        for (int i = 0; i < string.length(); i++) {
+            if (string.charAt(i) < '0' || string.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
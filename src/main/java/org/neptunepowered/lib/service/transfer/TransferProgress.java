@@ -0,0 +1,96 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.transfer;
+
+/**
+ * Represents how far an import or export has got.
+ */
+public class TransferProgress {
+
+    private final long records;
+    private final long transferred;
+    private final long skipped;
+    private final long failed;
+    private final long resumedFrom;
+
+    TransferProgress(long records, long transferred, long skipped, long failed, long resumedFrom) {
+        this.records = records;
+        this.transferred = transferred;
+        this.skipped = skipped;
+        this.failed = failed;
+        this.resumedFrom = resumedFrom;
+    }
+
+    /**
+     * Gets the number of records read or written so far, including those
+     * skipped over when resuming.
+     *
+     * @return The number of records
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * Gets the number of bans imported or exported so far.
+     *
+     * @return The number of bans
+     */
+    public long getTransferred() {
+        return transferred;
+    }
+
+    /**
+     * Gets the number of records skipped so far, either because they were
+     * not valid bans or because the bans have expired.
+     *
+     * @return The number of records
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Gets the number of bans that could not be added so far.
+     *
+     * @return The number of bans
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * Gets the record an import was resumed from.
+     *
+     * @return The number of records already imported, or 0
+     */
+    public long getResumedFrom() {
+        return resumedFrom;
+    }
+
+    @Override
+    public String toString() {
+        return records + " records, " + transferred + " transferred, " + skipped + " skipped, " + failed + " failed";
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.transfer;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.neptunepowered.lib.ban.Ban;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads the ban lists of the vanilla server, {@code banned-players.json}
+ * and {@code banned-ips.json}, one object at a time.
+ */
+final class VanillaBanReader implements BanRecordReader {
+
+    private final JsonReader json;
+    private final boolean ips;
+    private final RecordMapper mapper = new RecordMapper();
+    private boolean started = false;
+    private long records = 0;
+    private long invalid = 0;
+
+    VanillaBanReader(Reader in, boolean ips) {
+        this.json = new JsonReader(in);
+        this.ips = ips;
+    }
+
+    @Override
+    public Ban next() throws IOException {
+        start();
+        while (json.hasNext()) {
+            records++;
+            Ban ban = read();
+            if (ban != null) {
+                return ban;
+            }
+            invalid++;
+        }
+        return null;
+    }
+
+    @Override
+    public void skip(long records) throws IOException {
+        start();
+        for (long i = 0; i < records && json.hasNext(); i++) {
+            json.skipValue();
+            this.records++;
+        }
+    }
+
+    @Override
+    public long getRecordCount() {
+        return records;
+    }
+
+    @Override
+    public long getInvalidCount() {
+        return invalid;
+    }
+
+    @Override
+    public void close() throws IOException {
+        json.close();
+    }
+
+    private void start() throws IOException {
+        if (!started) {
+            json.beginArray();
+            started = true;
+        }
+    }
+
+    private Ban read() throws IOException {
+        if (json.peek() != JsonToken.BEGIN_OBJECT) {
+            json.skipValue();
+            return null;
+        }
+        String uniqueId = null;
+        String name = null;
+        String ip = null;
+        String source = null;
+        String created = null;
+        String expires = null;
+        String reason = null;
+        json.beginObject();
+        while (json.hasNext()) {
+            String field = json.nextName();
+            JsonToken token = json.peek();
+            if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
+                json.skipValue();
+            } else if (field.equals("uuid")) {
+                uniqueId = json.nextString();
+            } else if (field.equals("name")) {
+                name = json.nextString();
+            } else if (field.equals("ip")) {
+                ip = json.nextString();
+            } else if (field.equals("source")) {
+                source = json.nextString();
+            } else if (field.equals("created")) {
+                created = json.nextString();
+            } else if (field.equals("expires")) {
+                expires = json.nextString();
+            } else if (field.equals("reason")) {
+                reason = json.nextString();
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+        return ips ? mapper.ip(ip, reason, source, created, expires) : mapper.player(name, uniqueId, reason, source, created, expires);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.transfer;
+
+import com.google.gson.stream.JsonWriter;
+import org.neptunepowered.lib.ban.Ban;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes the ban lists of the vanilla server, one object at a time.
+ */
+final class VanillaBanWriter implements BanRecordWriter {
+
+    private final JsonWriter json;
+    private final RecordMapper mapper = new RecordMapper();
+
+    VanillaBanWriter(Writer out) throws IOException {
+        this.json = new JsonWriter(out);
+        json.setIndent("  ");
+        json.beginArray();
+    }
+
+    @Override
+    public void write(Ban ban) throws IOException {
+        json.beginObject();
+        if (ban instanceof Ban.Ip) {
+            json.name("ip").value(mapper.ip((Ban.Ip) ban));
+        } else {
+            Ban.Player playerBan = (Ban.Player) ban;
+            json.name("uuid").value(mapper.uniqueId(playerBan));
+            json.name("name").value(playerBan.getName());
+        }
+        json.name("created").value(mapper.formatTime(ban.getStartMillis()));
+        json.name("source").value(mapper.source(ban));
+        json.name("expires").value(mapper.formatTime(ban.getExpirationMillis()));
+        json.name("reason").value(ban.getReason());
+        json.endObject();
+    }
+
+    @Override
+    public void close() throws IOException {
+        json.endArray();
+        json.close();
+    }
+}
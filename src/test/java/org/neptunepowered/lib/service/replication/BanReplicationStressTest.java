@@ -0,0 +1,204 @@
+/*
+ * This file is part of NeptuneLib, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Jamie Mansfield <https://github.com/jamierocks>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.neptunepowered.lib.service.replication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neptunepowered.lib.ban.Ban;
+import org.neptunepowered.lib.ban.ImmutableBan;
+import org.neptunepowered.lib.service.BanService;
+import org.neptunepowered.lib.service.ban.MemoryBanStore;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bans and pardons the same few players from many threads on two servers
+ * replicating to each other, writing through to separate stores, and checks
+ * that each server's index ends up agreeing with its store, and with the
+ * other server.
+ *
+ * <p>The stores pause after each write, so that changes from the other
+ * server arrive between a change being written to the store and applied to
+ * the index, if nothing stops them.</p>
+ */
+public class BanReplicationStressTest {
+
+    private static final int PLAYERS = 4;
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 20;
+    private static final int OPERATIONS = 100;
+
+    private final String[] names = new String[PLAYERS];
+    private final UUID[] uniqueIds = new UUID[PLAYERS];
+    private BanService[] services;
+    private BanReplicator[] replicators;
+
+    @Before
+    public void setUp() {
+        for (int i = 0; i < PLAYERS; i++) {
+            names[i] = "player" + i;
+            uniqueIds[i] = UUID.randomUUID();
+        }
+        ConcurrentMap<String, LoopbackTransport> hub = LoopbackTransport.newHub();
+        services = new BanService[2];
+        replicators = new BanReplicator[2];
+        for (int i = 0; i < services.length; i++) {
+            services[i] = new BanService();
+            services[i].setStore(new SlowBanStore());
+            services[i].reload();
+            replicators[i] = new BanReplicator(services[i], new LoopbackTransport(hub), "node" + i, 1 << 16);
+            replicators[i].setWriteThrough(true);
+            replicators[i].start();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (BanReplicator replicator : replicators) {
+            replicator.stop();
+        }
+    }
+
+    @Test
+    public void storesAndIndexesAgree() throws Exception {
+        // The state is only checked once the servers are quiet, so check after each of many short rounds
+        for (int round = 0; round < ROUNDS; round++) {
+            runRound(round);
+            awaitReplication();
+            assertConsistent();
+        }
+    }
+
+    private void runRound(int round) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < THREADS; t++) {
+            final Random random = new Random(round * THREADS + t);
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < OPERATIONS; i++) {
+                            BanService service = services[random.nextInt(services.length)];
+                            int player = random.nextInt(PLAYERS);
+                            Ban ban = ImmutableBan.player(names[player], uniqueIds[player], "stress", System.currentTimeMillis(), -1);
+                            if (random.nextBoolean()) {
+                                service.ban(ban);
+                            } else {
+                                service.pardon(ban);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+
+    private void assertConsistent() {
+        for (BanService service : services) {
+            Set<String> stored = new HashSet<String>();
+            for (net.canarymod.bansystem.Ban ban : service.getStore().getAllBans(net.canarymod.bansystem.BanType.UUID)) {
+                stored.add(ban.getSubject().toLowerCase(Locale.ENGLISH));
+            }
+            for (int i = 0; i < PLAYERS; i++) {
+                assertEquals("Store and index disagree on " + names[i], stored.contains(names[i]),
+                        service.getIndex().isPlayerBanned(uniqueIds[i], names[i]));
+            }
+        }
+        for (int i = 0; i < PLAYERS; i++) {
+            assertEquals("Servers disagree on " + names[i], services[0].getIndex().isPlayerBanned(uniqueIds[i], names[i]),
+                    services[1].getIndex().isPlayerBanned(uniqueIds[i], names[i]));
+        }
+    }
+
+    private static final class SlowBanStore extends MemoryBanStore {
+
+        @Override
+        public void issueBan(net.canarymod.bansystem.Ban ban) {
+            super.issueBan(ban);
+            pause();
+        }
+
+        @Override
+        public void unban(String subject) {
+            super.unban(subject);
+            pause();
+        }
+
+        private static void pause() {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(200));
+        }
+    }
+
+    /**
+     * Waits until each server has applied every change made on the other.
+     */
+    private void awaitReplication() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (true) {
+            boolean caughtUp = true;
+            for (int i = 0; i < replicators.length; i++) {
+                BanReplicator other = replicators[1 - i];
+                Long seen = replicators[i].getPeerSequences().get(other.getNodeId());
+                if (other.getSequence() > 0 && (seen == null || seen < other.getSequence())) {
+                    caughtUp = false;
+                    other.heartbeat();
+                }
+            }
+            if (caughtUp) {
+                return;
+            }
+            assertTrue("Timed out waiting for replication", System.nanoTime() < deadline);
+            Thread.sleep(50);
+        }
+    }
+}